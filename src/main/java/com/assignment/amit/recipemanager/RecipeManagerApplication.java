@@ -2,8 +2,10 @@ package com.assignment.amit.recipemanager;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class RecipeManagerApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,49 @@
+package com.assignment.amit.recipemanager.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Read-through on an async cache with the load run by the calling thread.
+ * The cache only stores a pending future under its lock, the first caller completes it with the loaded value and
+ * concurrent callers for the same key wait on it, so a key is still loaded once.
+ * A failed load is removed from the cache by Caffeine and its exception is rethrown to every waiting caller.
+ */
+final class CacheLoads {
+
+    private CacheLoads() {
+    }
+
+    static <K, V> V get(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> value = cache.get(key, (k, executor) -> pending);
+        if (value == pending) {
+            try {
+                pending.complete(loader.apply(key));
+            } catch (RuntimeException ex) {
+                pending.completeExceptionally(ex);
+            }
+        }
+        try {
+            return value.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the value of a completed load, null when the load is missing, pending or failed.
+     */
+    static <V> V getIfDone(CompletableFuture<V> value) {
+        if (value == null || !value.isDone() || value.isCompletedExceptionally()) {
+            return null;
+        }
+        return value.join();
+    }
+}
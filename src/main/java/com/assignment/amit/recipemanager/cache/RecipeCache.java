@@ -0,0 +1,82 @@
+package com.assignment.amit.recipemanager.cache;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.model.CacheStatistics;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of recipes keyed by recipe name.
+ * Eviction is frequency aware (W-TinyLFU), so a scan over rarely read recipes does not flush the popular ones.
+ * Cached recipes are immutable records, a hit hands out the cached instance as is.
+ * Recipes are loaded by the calling thread outside the locks of the cache, so a virtual thread waiting on the
+ * database does not pin its carrier thread.
+ */
+@Component
+@Profile("!reactive")
+public class RecipeCache implements MeterBinder {
+    private final AsyncCache<String, Recipe> cache;
+
+    public RecipeCache(RecipeProperties properties) {
+        RecipeProperties.Cache config = properties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached recipe, or loads it with the loader and caches it.
+     * Concurrent misses on the same name share a single load, exceptions raised by the loader are not cached.
+     */
+    public Recipe get(String recipeName, Function<String, Recipe> loader) {
+        return CacheLoads.get(cache, recipeName, loader);
+    }
+
+    /**
+     * Returns the cached recipe without loading it, null when it is not cached.
+     */
+    public Recipe getIfPresent(String recipeName) {
+        return CacheLoads.getIfDone(cache.getIfPresent(recipeName));
+    }
+
+    /**
+     * Removes the recipe, must be called after the write to the database so an in-flight load can not
+     * put the old value back.
+     */
+    public void invalidate(String recipeName) {
+        cache.synchronous().invalidate(recipeName);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Publishes the counters of the cache as the cache.* metrics of the recipes cache.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache.synchronous(), "recipes", Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * Returns the counters, after running the pending evictions so the size is accurate.
+     */
+    public CacheStatistics statistics() {
+        cache.synchronous().cleanUp();
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.synchronous().estimatedSize());
+    }
+}
@@ -0,0 +1,113 @@
+package com.assignment.amit.recipemanager.cache;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.model.CacheStatistics;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the pages returned for filter queries, keyed by the normalized filter and the write version.
+ * Every write to the recipes bumps the version, which makes all the pages cached before it unreachable without
+ * scanning the cache, they are then evicted by size or age. The cache is bounded by the estimated memory used
+ * by the cached pages rather than by their number, since one page can hold anything from 0 to the max page size.
+ * Pages are loaded by the calling thread outside the locks of the cache, see {@link RecipeCache}.
+ */
+@Component
+@Profile("!reactive")
+public class RecipeQueryCache implements MeterBinder {
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 8;
+
+    private final AsyncCache<QueryKey, RecipePage> cache;
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    public RecipeQueryCache(RecipeProperties properties) {
+        RecipeProperties.QueryCache config = properties.getQueryCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumWeight().toBytes())
+                .weigher((QueryKey key, RecipePage page) -> estimateSize(key, page))
+                .expireAfterWrite(config.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached page for the normalized filter, or loads it with the loader and caches it under the
+     * version read before loading, so a page loaded while a write is running is never served after the write.
+     */
+    public RecipePage get(List<String> normalizedFilter, String cursor, int limit, Supplier<RecipePage> loader) {
+        QueryKey key = new QueryKey(normalizedFilter, cursor, limit, writeVersion.get());
+        return CacheLoads.get(cache, key, k -> loader.get());
+    }
+
+    /**
+     * Invalidates all the cached pages, must be called after every write to the recipes.
+     */
+    public void bumpVersion() {
+        writeVersion.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        bumpVersion();
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Publishes the counters of the cache as the cache.* metrics of the recipe-pages cache.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache.synchronous(), "recipe-pages", Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * Returns the counters, after running the pending evictions so the size is accurate.
+     */
+    public CacheStatistics statistics() {
+        cache.synchronous().cleanUp();
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.synchronous().estimatedSize());
+    }
+
+    private static int estimateSize(QueryKey key, RecipePage page) {
+        long size = OBJECT_OVERHEAD + sizeOf(key.cursor()) + sizeOf(page.next());
+        for (String filter : key.normalizedFilter()) {
+            size += REFERENCE_SIZE + sizeOf(filter);
+        }
+        for (Recipe recipe : page.recipes()) {
+            size += REFERENCE_SIZE + OBJECT_OVERHEAD + sizeOf(recipe.recipeName()) + sizeOf(recipe.instructions())
+                    + sizeOf(recipe.isVegetarian());
+            if (Objects.nonNull(recipe.ingredients())) {
+                for (Ingredient ingredient : recipe.ingredients()) {
+                    size += REFERENCE_SIZE + OBJECT_OVERHEAD + sizeOf(ingredient.name());
+                }
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(String value) {
+        return Objects.isNull(value) ? 0 : OBJECT_OVERHEAD + value.length();
+    }
+
+    private record QueryKey(List<String> normalizedFilter,
+                            String cursor,
+                            int limit,
+                            long version) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.assignment.amit.recipemanager.config;
+
+import com.assignment.amit.recipemanager.controller.RecipeProtobufHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Adds protocol buffers to the formats of the recipe apis. It goes after the json, smile and cbor converters so
+ * json stays the format of the clients accepting any.
+ */
+@Configuration
+@Profile("!reactive")
+public class MessageConverterConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new RecipeProtobufHttpMessageConverter());
+    }
+}
@@ -0,0 +1,20 @@
+package com.assignment.amit.recipemanager.config;
+
+import com.assignment.amit.recipemanager.metrics.MongoDocumentMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adds the document counts of the mongo commands to the metrics.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoDocumentMetricsCustomizer(MeterRegistry registry) {
+        MongoDocumentMetrics documentMetrics = new MongoDocumentMetrics(registry);
+        return builder -> builder.addCommandListener(documentMetrics);
+    }
+}
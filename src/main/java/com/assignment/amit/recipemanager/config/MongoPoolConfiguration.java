@@ -0,0 +1,27 @@
+package com.assignment.amit.recipemanager.config;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the admission to the database connection pool.
+ * With virtual threads every request gets its own thread, so the pool rather than the servlet container limits
+ * the number of concurrent queries. Requests beyond the pool size wait up to the max wait time and then fail,
+ * instead of queueing without bound in the driver.
+ */
+@Configuration
+public class MongoPoolConfiguration {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(RecipeProperties properties) {
+        RecipeProperties.MongoPool config = properties.getMongoPool();
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(config.getMaxSize())
+                .minSize(config.getMinSize())
+                .maxConnecting(config.getMaxConnecting())
+                .maxWaitTime(config.getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,20 @@
+package com.assignment.amit.recipemanager.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Serves the reactive profile from Netty. Tomcat is on the classpath for the default profile and would otherwise
+ * be picked for the reactive one too.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfiguration {
+
+    @Bean
+    public NettyReactiveWebServerFactory reactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,241 @@
+package com.assignment.amit.recipemanager.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Tunables of the recipe manager, bound from the {@code recipe.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "recipe")
+public class RecipeProperties {
+    private final Pagination pagination = new Pagination();
+    private final Streaming streaming = new Streaming();
+    private final Batch batch = new Batch();
+    private final Cache cache = new Cache();
+    private final QueryCache queryCache = new QueryCache();
+    private final Search search = new Search();
+    private final Filter filter = new Filter();
+    private final Facets facets = new Facets();
+    private final IngredientIndex ingredientIndex = new IngredientIndex();
+    private final Replica replica = new Replica();
+    private final QueryAdvisor queryAdvisor = new QueryAdvisor();
+    private final MongoPool mongoPool = new MongoPool();
+    private final SlowRequests slowRequests = new SlowRequests();
+    private final Logging logging = new Logging();
+
+    @Data
+    public static class Pagination {
+        /**
+         * Page size used when the client does not pass a limit.
+         */
+        private int defaultPageSize = 100;
+        /**
+         * Upper bound for the page size, larger limits are capped to it.
+         */
+        private int maxPageSize = 1000;
+    }
+
+    @Data
+    public static class Streaming {
+        /**
+         * Number of documents the mongo cursor fetches per round trip while streaming.
+         */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Number of recipes sent to mongo in one bulk write.
+         */
+        private int chunkSize = 1000;
+        /**
+         * Maximum number of recipes accepted in one batch request.
+         */
+        private int maxSize = 10000;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * Maximum number of recipes kept in the recipe cache.
+         */
+        private long maximumSize = 10000;
+        /**
+         * Time after which a cached recipe is read again from the database.
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class QueryCache {
+        /**
+         * Estimated memory the cached filter results can use.
+         */
+        private DataSize maximumWeight = DataSize.ofMegabytes(64);
+        /**
+         * Time after which a cached filter result is read again from the database, bounds how long writes made
+         * by other instances take to show up.
+         */
+        private Duration timeToLive = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Search {
+        /**
+         * Whether the instructions filter is a regular expression, otherwise it is a text search like q.
+         * A regular expression can not use an index and scans the whole collection.
+         */
+        private boolean regexEnabled = false;
+        /**
+         * Time after which the database aborts a query filtering instructions with a regular expression.
+         */
+        private Duration regexTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Filter {
+        /**
+         * Maximum number of filter shapes whose compiled query is kept, other shapes, and the shapes with keys that
+         * are not recipe fields, are compiled on each request.
+         */
+        private int maxCompiledShapes = 1000;
+    }
+
+    @Data
+    public static class Facets {
+        /**
+         * Number of top ingredients counted when the client does not pass top.
+         */
+        private int defaultTopIngredients = 10;
+        /**
+         * Upper bound for the number of top ingredients, larger values are capped to it.
+         */
+        private int maxTopIngredients = 100;
+    }
+
+    @Data
+    public static class IngredientIndex {
+        /**
+         * Whether ingredient filters are answered from the in-memory ingredient index.
+         */
+        private boolean enabled = false;
+        /**
+         * Maximum number of matching ids sent to the database when the filter has other conditions, larger
+         * matches are filtered by the database alone.
+         */
+        private int maxCandidates = 10000;
+        /**
+         * Interval at which the index is reloaded from the database, bounds how long writes made by other
+         * instances take to show up.
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * Whether each instance keeps a copy of all the recipes in memory, kept current by a change stream, and
+         * serves the recipe reads from it. Change streams need a replica set.
+         */
+        private boolean enabled = false;
+        /**
+         * Maximum time since the copy was last known current for reads to be served from it, reads go to the
+         * database while the change stream lags more.
+         */
+        private Duration maxStaleness = Duration.ofSeconds(2);
+        /**
+         * Time the database holds a change stream fetch waiting for changes, an idle copy is known current at
+         * this interval so it must stay below the maximum staleness.
+         */
+        private Duration maxAwaitTime = Duration.ofMillis(500);
+        /**
+         * Maximum number of changes per fetch, only a fetch returning less tells the copy is current.
+         */
+        private int batchSize = 1000;
+        /**
+         * Delay before the change stream is opened again after a failure.
+         */
+        private Duration retryInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class QueryAdvisor {
+        /**
+         * Whether the latency of the filter queries is recorded by query shape.
+         */
+        private boolean enabled = true;
+        /**
+         * Latency above which a filter query is counted as slow.
+         */
+        private Duration slowQueryThreshold = Duration.ofMillis(100);
+        /**
+         * Maximum number of query shapes recorded, queries of other shapes are ignored.
+         */
+        private int maxShapes = 500;
+    }
+
+    @Data
+    public static class MongoPool {
+        /**
+         * Maximum number of connections to the database, requests beyond it wait for a free connection.
+         */
+        private int maxSize = 100;
+        /**
+         * Number of connections kept open when the application is idle.
+         */
+        private int minSize = 0;
+        /**
+         * Maximum number of connections being opened at the same time.
+         */
+        private int maxConnecting = 2;
+        /**
+         * How long a request waits for a free connection before failing, bounds the queue of blocked requests.
+         */
+        private Duration maxWaitTime = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class SlowRequests {
+        /**
+         * Whether the recipe read requests slower than the threshold are kept with their query and time split.
+         */
+        private boolean enabled = true;
+        /**
+         * Duration above which a request is kept as slow.
+         */
+        private Duration threshold = Duration.ofSeconds(1);
+        /**
+         * Number of slow requests kept, the oldest ones are overwritten.
+         */
+        private int capacity = 100;
+        /**
+         * Time the database may spend running a slow query again to explain it, the explain fails beyond it.
+         */
+        private Duration explainMaxTime = Duration.ofSeconds(1);
+        /**
+         * Number of values of each list kept in the slowest query of a slow request, the longer lists are cut.
+         */
+        private int maxExplainedValues = 100;
+    }
+
+    @Data
+    public static class Logging {
+        /**
+         * Share of the requests whose debug and info lines are logged, warnings and errors are always logged.
+         */
+        private double sampleRate = 0.01;
+        /**
+         * Number of log events buffered for the background writer, events are dropped when it is full.
+         */
+        private int ringBufferSize = 8192;
+        /**
+         * Maximum number of warnings and errors of the same message logged per second, the others are dropped.
+         */
+        private int maxErrorsPerSecond = 10;
+    }
+}
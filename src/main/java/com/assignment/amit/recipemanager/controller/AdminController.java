@@ -0,0 +1,76 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.cache.RecipeCache;
+import com.assignment.amit.recipemanager.cache.RecipeQueryCache;
+import com.assignment.amit.recipemanager.index.QueryAdvisor;
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import com.assignment.amit.recipemanager.model.CacheStatistics;
+import com.assignment.amit.recipemanager.model.QueryShapeReport;
+import com.assignment.amit.recipemanager.model.SlowRequestReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+@Profile("!reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+    private final RecipeCache recipeCache;
+    private final RecipeQueryCache recipeQueryCache;
+    private final QueryAdvisor queryAdvisor;
+    private final SlowRequestTracer slowRequestTracer;
+
+    /**
+     * Api to retrieve the hit, miss and eviction counters of the recipe cache.
+     *
+     * @return ResponseEntity<CacheStatistics>
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStatistics> getCacheStatistics() {
+        log.debug("Request received for the cache statistics");
+        return ResponseEntity.ok(recipeCache.statistics());
+    }
+
+    /**
+     * Api to retrieve the hit, miss and eviction counters of the filter result cache.
+     *
+     * @return ResponseEntity<CacheStatistics>
+     */
+    @GetMapping("/query-cache")
+    public ResponseEntity<CacheStatistics> getQueryCacheStatistics() {
+        log.debug("Request received for the query cache statistics");
+        return ResponseEntity.ok(recipeQueryCache.statistics());
+    }
+
+    /**
+     * Api to retrieve the latency and query plan of the filter queries by shape, with the index suggested for
+     * the shapes scanning the whole collection.
+     *
+     * @return ResponseEntity<List<QueryShapeReport>>
+     */
+    @GetMapping("/query-advisor")
+    public ResponseEntity<List<QueryShapeReport>> getQueryAdvice() {
+        log.debug("Request received for the query advisor report");
+        return ResponseEntity.ok(queryAdvisor.report());
+    }
+
+    /**
+     * Api to retrieve the last recipe read requests slower than the threshold, with the shape and plan of their
+     * slowest query, the documents it examined and the time spent in the database, mapping and serialization.
+     *
+     * @return ResponseEntity<List<SlowRequestReport>>
+     */
+    @GetMapping("/slow-requests")
+    public ResponseEntity<List<SlowRequestReport>> getSlowRequests() {
+        log.debug("Request received for the slow requests");
+        return ResponseEntity.ok(slowRequestTracer.report());
+    }
+}
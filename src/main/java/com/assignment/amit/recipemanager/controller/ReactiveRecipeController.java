@@ -0,0 +1,279 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeCount;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.service.ReactiveRecipeService;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The /recipes api of the reactive profile, same paths, parameters, bodies and status codes as the
+ * {@link RecipeController} of the default profile.
+ */
+@RestController
+@RequestMapping("/recipes")
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveRecipeController {
+    private static final String CURSOR_PARAM = "cursor";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String FIELDS_PARAM = "fields";
+    private static final String TOP_PARAM = "top";
+    private final ReactiveRecipeService recipeService;
+
+    /**
+     * Api to handles the recipe create request from user
+     *
+     * @param recipe recipe to be created
+     * @return ResponseEntity<Recipe>
+     */
+    @PostMapping()
+    public Mono<ResponseEntity<Recipe>> addRecipe(@RequestBody Recipe recipe) {
+        log.debug("Request received to add the recipe.");
+        return recipeService.addRecipe(recipe)
+                .map(storedRecipe -> new ResponseEntity<>(storedRecipe, HttpStatus.CREATED))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to handle the create request for a batch of recipes, e.g. from the catalog sync.
+     *
+     * @param recipes recipes to be created
+     * @return ResponseEntity<List<RecipeBatchResult>> with the outcome for each recipe
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<RecipeBatchResult>>> addRecipes(@RequestBody List<Recipe> recipes) {
+        log.debug("Request received to add a batch of {} recipes.", recipes.size());
+        return recipeService.addRecipes(recipes).collectList()
+                .map(ResponseEntity::ok)
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to handle request from user to search specific recipe based on filter.
+     * Results are paginated, the cursor for the next page is returned in the X-Next-Cursor header.
+     * The page has an entity tag, a request with a matching If-None-Match gets 304 without the body.
+     *
+     * @param cursor    continuation token of the previous page
+     * @param limit     number of recipes in the page
+     * @param fields    comma separated recipe fields to return, all of them when missing
+     * @param filterMap criteria filter
+     * @return ResponseEntity<List<Recipe>>
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<Recipe>>> getRecipesByFilter(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(required = false) String fields,
+                                                                 @RequestParam Map<String, String> filterMap) {
+        log.debug("Request received to fetch all the recipes by filter criteria");
+        return recipeService.getRecipesWithFilter(withoutPagingParams(filterMap), cursor, limit, fields)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(recipeService.eTag(page, fields))
+                            .varyBy(HttpHeaders.ACCEPT);
+                    if (Objects.nonNull(page.next())) {
+                        response.header(RecipeController.NEXT_CURSOR_HEADER, page.next());
+                    }
+                    return response.body(page.recipes());
+                })
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to stream all the recipes matching the filter as newline delimited json.
+     * Recipes are read from the database as fast as the client reads them, a slow client slows down the
+     * database cursor instead of filling the memory.
+     *
+     * @param fields    comma separated recipe fields to return, all of them when missing
+     * @param filterMap criteria filter
+     * @return Flux<Recipe>
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Recipe> streamRecipesByFilter(@RequestParam(required = false) String fields,
+                                              @RequestParam Map<String, String> filterMap) {
+        log.debug("Request received to stream all the recipes by filter criteria");
+        return recipeService.streamRecipesWithFilter(withoutPagingParams(filterMap), fields)
+                .doOnError(ex -> log.error("Error While streaming recipes ", ex));
+    }
+
+    /**
+     * Api to delete all the recipes matching the filter.
+     *
+     * @param filterMap criteria filter
+     * @return ResponseEntity<RecipeCount> with the number of recipes deleted
+     */
+    @DeleteMapping
+    public Mono<ResponseEntity<RecipeCount>> deleteRecipesByFilter(@RequestParam Map<String, String> filterMap) {
+        log.debug("Request received to delete the recipes by filter criteria");
+        return recipeService.deleteRecipesWithFilter(filterMap)
+                .map(deleted -> ResponseEntity.ok(new RecipeCount(deleted)))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to update all the recipes matching the filter.
+     *
+     * @param filterMap criteria filter
+     * @param recipe    recipe object containing field to be updated
+     * @return ResponseEntity<RecipeCount> with the number of recipes updated
+     */
+    @PatchMapping
+    public Mono<ResponseEntity<RecipeCount>> updateRecipesByFilter(@RequestParam Map<String, String> filterMap,
+                                                                   @RequestBody Recipe recipe) {
+        log.debug("Request received to update the recipes by filter criteria");
+        return recipeService.updateRecipesWithFilter(filterMap, recipe)
+                .map(updated -> ResponseEntity.ok(new RecipeCount(updated)))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to count the recipes matching the filter by vegetarian flag, by servings and for the top ingredients.
+     *
+     * @param top       number of top ingredients
+     * @param filterMap criteria filter
+     * @return ResponseEntity<RecipeFacets>
+     */
+    @GetMapping("/facets")
+    public Mono<ResponseEntity<RecipeFacets>> getRecipeFacets(@RequestParam(required = false) Integer top,
+                                                              @RequestParam Map<String, String> filterMap) {
+        log.debug("Request received for the facets of the recipes by filter criteria");
+        Map<String, String> criteria = new HashMap<>(filterMap);
+        criteria.remove(TOP_PARAM);
+        return recipeService.getRecipeFacets(criteria, top)
+                .map(ResponseEntity::ok)
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to handle request to retrieve a recipe.
+     * A request with an If-None-Match matching the entity tag of the recipe gets 304, checked from the version
+     * alone without reading the recipe.
+     *
+     * @param recipeName  recipeName
+     * @param fields      comma separated recipe fields to return, all of them when missing
+     * @param ifNoneMatch entity tags of the representations the client already has
+     * @return ResponseEntity<Recipe>
+     */
+    @GetMapping("/{recipeName}")
+    public Mono<ResponseEntity<Recipe>> getRecipe(@PathVariable String recipeName,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.debug("Requesting for recipe name={}", recipeName);
+        Mono<ResponseEntity<Recipe>> recipe = Mono.defer(() -> recipeService.getRecipe(recipeName, fields))
+                .map(found -> ResponseEntity.ok().eTag(recipeService.eTag(found, fields)).varyBy(HttpHeaders.ACCEPT).body(found));
+        if (Objects.isNull(ifNoneMatch)) {
+            return recipe.onErrorMap(ReactiveRecipeController::toResponseError);
+        }
+        return recipeService.getRecipeETag(recipeName, fields)
+                .flatMap(eTag -> RecipeUtil.matchesETag(ifNoneMatch, eTag)
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).<Recipe>build())
+                        : recipe)
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to handle the updated request for specific recipe.
+     *
+     * @param recipeName recipe name to be updated
+     * @param recipe     recipe object containing field to be updated
+     * @return updated recipe
+     */
+    @PutMapping("/{recipeName}")
+    public Mono<ResponseEntity<Recipe>> updateRecipe(@PathVariable String recipeName, @RequestBody Recipe recipe) {
+        log.debug("Requesting update for recipe name={}", recipeName);
+        return recipeService.updateRecipe(recipeName, recipe)
+                .map(updated -> ResponseEntity.ok().eTag(recipeService.eTag(updated, null)).body(updated))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to update a specific recipe only if it was not modified since the client read it.
+     * The If-Match header carries the entity tag of the recipe read, a recipe modified since then is not updated
+     * and gets 412, a request without If-Match gets 428.
+     *
+     * @param recipeName recipe name to be updated
+     * @param ifMatch    entity tag of the recipe the update applies to
+     * @param recipe     recipe object containing field to be updated
+     * @return updated recipe, with its new entity tag
+     */
+    @PatchMapping("/{recipeName}")
+    public Mono<ResponseEntity<Recipe>> patchRecipe(@PathVariable String recipeName,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                    @RequestBody Recipe recipe) {
+        log.debug("Requesting conditional update for recipe name={}", recipeName);
+        if (Objects.isNull(ifMatch)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, "If-Match Required"));
+        }
+        return recipeService.updateRecipe(recipeName, recipe, ifMatch)
+                .map(updated -> ResponseEntity.ok().eTag(recipeService.eTag(updated, null)).body(updated))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    /**
+     * Api to delete recipe
+     *
+     * @param recipeName name of recipe
+     * @return ResponseEntity<Recipe>
+     */
+    @DeleteMapping("/{recipeName}")
+    public Mono<ResponseEntity<Recipe>> deleteRecipe(@PathVariable String recipeName) {
+        log.debug("Requesting for recipe id={}", recipeName);
+        return recipeService.deleteRecipe(recipeName)
+                .then(Mono.just(new ResponseEntity<Recipe>(HttpStatus.OK)))
+                .onErrorMap(ReactiveRecipeController::toResponseError);
+    }
+
+    private Map<String, String> withoutPagingParams(Map<String, String> filterMap) {
+        Map<String, String> criteria = new HashMap<>(filterMap);
+        criteria.remove(CURSOR_PARAM);
+        criteria.remove(LIMIT_PARAM);
+        criteria.remove(FIELDS_PARAM);
+        return criteria;
+    }
+
+    /**
+     * Maps the errors of the service to the responses of the {@link RecipeController}: invalid requests,
+     * conflicts and failed preconditions keep their status, a missing recipe is a 404 and anything else an internal error.
+     */
+    private static Throwable toResponseError(Throwable ex) {
+        if (ex instanceof InvalidRequestException) {
+            log.error("Invalid request {}", ex.getMessage());
+            return ex;
+        }
+        if (ex instanceof PreconditionFailedException) {
+            log.debug("Recipe not updated, {}", ex.getMessage());
+            return ex;
+        }
+        if (ex instanceof RecipeAlreadyExistException || ex instanceof ResponseStatusException) {
+            log.error("Error While processing request {}", ex.getMessage());
+            return ex;
+        }
+        if (ex instanceof RecipeNotFoundException) {
+            log.error("Recipe Not found in the system, {}", ex.getMessage());
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipe Not Found");
+        }
+        log.error("Error While processing request ", ex);
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+    }
+}
@@ -1,25 +1,50 @@
 package com.assignment.amit.recipemanager.controller;
 
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
 import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
 import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
 import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeCount;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
 import com.assignment.amit.recipemanager.service.RecipeService;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/recipes")
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Slf4j
 public class RecipeController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String CURSOR_PARAM = "cursor";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String FIELDS_PARAM = "fields";
+    private static final String TOP_PARAM = "top";
     private final RecipeService recipeService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Api to handles the recipe create request from user
@@ -33,7 +58,27 @@ public class RecipeController {
         try {
             return new ResponseEntity<Recipe>(recipeService.addRecipe(recipe), HttpStatus.CREATED);
         } catch (RecipeAlreadyExistException ex) {
+            log.error("Recipe already exist in the system with name = {}", recipe.recipeName());
+            throw ex;
+        } catch (RuntimeException ex) {
             log.error("Error While processing request ", ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+        }
+    }
+
+    /**
+     * Api to handle the create request for a batch of recipes, e.g. from the catalog sync.
+     *
+     * @param recipes recipes to be created
+     * @return ResponseEntity<List<RecipeBatchResult>> with the outcome for each recipe
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<RecipeBatchResult>> addRecipes(@RequestBody List<Recipe> recipes) {
+        log.debug("Request received to add a batch of {} recipes.", recipes.size());
+        try {
+            return ResponseEntity.ok(recipeService.addRecipes(recipes));
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
             throw ex;
         } catch (RuntimeException ex) {
             log.error("Error While processing request ", ex);
@@ -42,34 +87,166 @@ public class RecipeController {
     }
 
     /**
-     * Api to handle request from user to search specific recipe based on filter
+     * Api to handle request from user to search specific recipe based on filter.
+     * Results are paginated, the cursor for the next page is returned in the X-Next-Cursor header.
+     * The page has an entity tag, a request with a matching If-None-Match gets 304 without the body.
      *
+     * @param cursor    continuation token of the previous page
+     * @param limit     number of recipes in the page
+     * @param fields    comma separated recipe fields to return, all of them when missing
      * @param filterMap criteria filter
-     * @return ResponseEntity<Recipe>
+     * @return ResponseEntity<List<Recipe>>
      */
     @GetMapping
-    public List<Recipe> getRecipesByFilter(@RequestParam Map<String, String> filterMap) {
+    public ResponseEntity<List<Recipe>> getRecipesByFilter(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) String fields,
+                                                           @RequestParam Map<String, String> filterMap) {
         log.debug("Request received to fetch all the recipes by filter criteria");
         try {
-            return recipeService.getAllRecipesWithFiler(filterMap);
+            RecipePage page = recipeService.getRecipesWithFilter(withoutPagingParams(filterMap), cursor, limit, fields);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(recipeService.eTag(page, fields))
+                    .varyBy(HttpHeaders.ACCEPT);
+            if (Objects.nonNull(page.next())) {
+                response.header(NEXT_CURSOR_HEADER, page.next());
+            }
+            return response.body(page.recipes());
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.error("Error While processing request ", ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+        }
+
+    }
+
+    /**
+     * Api to stream all the recipes matching the filter as newline delimited json.
+     * Recipes are written as soon as they are read from the database, so the memory used does not depend on the
+     * size of the result and a slow client slows down the database cursor.
+     *
+     * @param fields    comma separated recipe fields to return, all of them when missing
+     * @param filterMap criteria filter
+     * @return ResponseEntity<StreamingResponseBody>
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecipesByFilter(@RequestParam(required = false) String fields,
+                                                                       @RequestParam Map<String, String> filterMap) {
+        log.debug("Request received to stream all the recipes by filter criteria");
+        Map<String, String> criteria = withoutPagingParams(filterMap);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                recipeService.streamRecipesWithFilter(criteria, fields, new NdjsonWriter(generator));
+            } catch (RuntimeException ex) {
+                log.error("Error While streaming recipes ", ex);
+                throw ex;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Api to delete all the recipes matching the filter.
+     *
+     * @param filterMap criteria filter
+     * @return ResponseEntity<RecipeCount> with the number of recipes deleted
+     */
+    @DeleteMapping
+    public ResponseEntity<RecipeCount> deleteRecipesByFilter(@RequestParam Map<String, String> filterMap) {
+        log.debug("Request received to delete the recipes by filter criteria");
+        try {
+            return ResponseEntity.ok(new RecipeCount(recipeService.deleteRecipesWithFilter(filterMap)));
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.error("Error While processing request ", ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+        }
+    }
+
+    /**
+     * Api to update all the recipes matching the filter.
+     *
+     * @param filterMap criteria filter
+     * @param recipe    recipe object containing field to be updated
+     * @return ResponseEntity<RecipeCount> with the number of recipes updated
+     */
+    @PatchMapping
+    public ResponseEntity<RecipeCount> updateRecipesByFilter(@RequestParam Map<String, String> filterMap,
+                                                             @RequestBody Recipe recipe) {
+        log.debug("Request received to update the recipes by filter criteria");
+        try {
+            return ResponseEntity.ok(new RecipeCount(recipeService.updateRecipesWithFilter(filterMap, recipe)));
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
+            throw ex;
         } catch (RuntimeException ex) {
             log.error("Error While processing request ", ex);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
         }
+    }
 
+    /**
+     * Api to count the recipes matching the filter by vegetarian flag, by servings and for the top ingredients.
+     *
+     * @param top       number of top ingredients
+     * @param filterMap criteria filter
+     * @return ResponseEntity<RecipeFacets>
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<RecipeFacets> getRecipeFacets(@RequestParam(required = false) Integer top,
+                                                        @RequestParam Map<String, String> filterMap) {
+        log.debug("Request received for the facets of the recipes by filter criteria");
+        Map<String, String> criteria = new HashMap<>(filterMap);
+        criteria.remove(TOP_PARAM);
+        try {
+            return ResponseEntity.ok(recipeService.getRecipeFacets(criteria, top));
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.error("Error While processing request ", ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+        }
+    }
+
+    private Map<String, String> withoutPagingParams(Map<String, String> filterMap) {
+        Map<String, String> criteria = new HashMap<>(filterMap);
+        criteria.remove(CURSOR_PARAM);
+        criteria.remove(LIMIT_PARAM);
+        criteria.remove(FIELDS_PARAM);
+        return criteria;
     }
 
     /**
      * Api to handle request to retrieve a recipe.
+     * A request with an If-None-Match matching the entity tag of the recipe gets 304, checked from the version
+     * alone without reading the recipe.
      *
-     * @param recipeName recipeName
+     * @param recipeName  recipeName
+     * @param fields      comma separated recipe fields to return, all of them when missing
+     * @param ifNoneMatch entity tags of the representations the client already has
      * @return ResponseEntity<Recipe>
      */
     @GetMapping("/{recipeName}")
-    public ResponseEntity<Recipe> getRecipe(@PathVariable String recipeName) {
+    public ResponseEntity<Recipe> getRecipe(@PathVariable String recipeName,
+                                            @RequestParam(required = false) String fields,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("Requesting for recipe name={}", recipeName);
         try {
-            return ResponseEntity.ok(recipeService.getRecipe(recipeName));
+            if (Objects.nonNull(ifNoneMatch)) {
+                String eTag = recipeService.getRecipeETag(recipeName, fields);
+                if (RecipeUtil.matchesETag(ifNoneMatch, eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+                }
+            }
+            Recipe recipe = recipeService.getRecipe(recipeName, fields);
+            return ResponseEntity.ok().eTag(recipeService.eTag(recipe, fields)).varyBy(HttpHeaders.ACCEPT).body(recipe);
+        } catch (InvalidRequestException ex) {
+            log.error("Invalid request {}", ex.getMessage());
+            throw ex;
         } catch (RecipeNotFoundException recipeNotFound) {
             log.error("Recipe Not found in the system with recipeName = {}", recipeName);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipe Not Found");
@@ -90,7 +267,44 @@ public class RecipeController {
     public ResponseEntity<Recipe> updateRecipe(@PathVariable String recipeName, @RequestBody Recipe recipe) {
         log.debug("Requesting update for recipe name={}", recipeName);
         try {
-            return ResponseEntity.ok(recipeService.updateRecipe(recipeName, recipe));
+            Recipe updated = recipeService.updateRecipe(recipeName, recipe);
+            return ResponseEntity.ok().eTag(recipeService.eTag(updated, null)).body(updated);
+        } catch (RecipeAlreadyExistException ex) {
+            log.error("Recipe already exist in the system with name = {}", recipe.recipeName());
+            throw ex;
+        } catch (RecipeNotFoundException recipeNotFound) {
+            log.error("Recipe Not found in the system with name = {}", recipeName);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipe Not Found");
+        } catch (RuntimeException ex) {
+            log.error("Error While processing request ", ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Error");
+        }
+    }
+
+    /**
+     * Api to update a specific recipe only if it was not modified since the client read it.
+     * The If-Match header carries the entity tag of the recipe read, a recipe modified since then is not updated
+     * and gets 412, a request without If-Match gets 428.
+     *
+     * @param recipeName recipe name to be updated
+     * @param ifMatch    entity tag of the recipe the update applies to
+     * @param recipe     recipe object containing field to be updated
+     * @return updated recipe, with its new entity tag
+     */
+    @PatchMapping("/{recipeName}")
+    public ResponseEntity<Recipe> patchRecipe(@PathVariable String recipeName,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestBody Recipe recipe) {
+        log.debug("Requesting conditional update for recipe name={}", recipeName);
+        if (Objects.isNull(ifMatch)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, "If-Match Required");
+        }
+        try {
+            Recipe updated = recipeService.updateRecipe(recipeName, recipe, ifMatch);
+            return ResponseEntity.ok().eTag(recipeService.eTag(updated, null)).body(updated);
+        } catch (RecipeAlreadyExistException | PreconditionFailedException ex) {
+            log.debug("Recipe {} not updated, {}", recipeName, ex.getMessage());
+            throw ex;
         } catch (RecipeNotFoundException recipeNotFound) {
             log.error("Recipe Not found in the system with name = {}", recipeName);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipe Not Found");
@@ -120,4 +334,28 @@ public class RecipeController {
         }
         return new ResponseEntity<>(HttpStatus.OK);
     }
+
+    /**
+     * Writes every recipe on its own line, the first one is flushed straight away so the client gets
+     * the first byte without waiting for the response buffer to fill.
+     */
+    @RequiredArgsConstructor
+    private static class NdjsonWriter implements Consumer<Recipe> {
+        private final JsonGenerator generator;
+        private boolean flushed;
+
+        @Override
+        public void accept(Recipe recipe) {
+            try {
+                generator.writeObject(recipe);
+                generator.writeRaw('\n');
+                if (!flushed) {
+                    generator.flush();
+                    flushed = true;
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
 }
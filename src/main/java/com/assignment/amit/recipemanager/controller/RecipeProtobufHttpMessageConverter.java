@@ -0,0 +1,94 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.util.RecipeProtobuf;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads and writes a recipe, or a list of recipes, as protocol buffers when the client asks for
+ * application/x-protobuf. The schema is proto/recipe.proto.
+ */
+public class RecipeProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+    static final String MESSAGE_HEADER = "X-Protobuf-Message";
+    static final String SCHEMA_HEADER = "X-Protobuf-Schema";
+
+    public RecipeProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Recipe.class == clazz;
+    }
+
+    /**
+     * The media types are asked for the class of the body, a list is known to hold recipes from its generic type
+     * only, which {@link #canWrite(Type, Class, MediaType)} checks.
+     */
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || List.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return (type == Recipe.class || isRecipeList(type)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type == null ? supports(clazz) : type == Recipe.class || isRecipeList(type)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return isRecipeList(type) ? readRecipes(inputMessage) : readInternal(Recipe.class, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return RecipeProtobuf.readRecipe(inputMessage.getBody());
+        } catch (IOException ex) {
+            throw new HttpMessageNotReadableException("Invalid protobuf recipe: " + ex.getMessage(), ex, inputMessage);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (body instanceof List<?> recipes) {
+            outputMessage.getHeaders().set(MESSAGE_HEADER, "recipemanager.RecipeList");
+            outputMessage.getHeaders().set(SCHEMA_HEADER, "recipe.proto");
+            RecipeProtobuf.writeRecipes((List<Recipe>) recipes, outputMessage.getBody());
+        } else {
+            outputMessage.getHeaders().set(MESSAGE_HEADER, "recipemanager.Recipe");
+            outputMessage.getHeaders().set(SCHEMA_HEADER, "recipe.proto");
+            RecipeProtobuf.writeRecipe((Recipe) body, outputMessage.getBody());
+        }
+    }
+
+    private List<Recipe> readRecipes(HttpInputMessage inputMessage) throws IOException {
+        try {
+            return RecipeProtobuf.readRecipes(inputMessage.getBody());
+        } catch (IOException ex) {
+            throw new HttpMessageNotReadableException("Invalid protobuf recipes: " + ex.getMessage(), ex, inputMessage);
+        }
+    }
+
+    private static boolean isRecipeList(Type type) {
+        return type instanceof ParameterizedType parameterized && parameterized.getRawType() == List.class
+                && parameterized.getActualTypeArguments()[0] == Recipe.class;
+    }
+}
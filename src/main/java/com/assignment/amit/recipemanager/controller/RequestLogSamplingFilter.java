@@ -0,0 +1,43 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.logging.RequestSamplingTurboFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples the requests whose debug and info lines are logged, see {@link RequestSamplingTurboFilter}.
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLogSamplingFilter extends OncePerRequestFilter {
+    private final double sampleRate;
+
+    public RequestLogSamplingFilter(RecipeProperties properties) {
+        this.sampleRate = properties.getLogging().getSampleRate();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+        MDC.put(RequestSamplingTurboFilter.SAMPLED_KEY, String.valueOf(sampled));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(RequestSamplingTurboFilter.SAMPLED_KEY);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Marks the start of the serialization of the response body, for the {@link SlowRequestTracer}.
+ */
+@ControllerAdvice
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class SlowRequestBodyAdvice implements ResponseBodyAdvice<Object> {
+    private final SlowRequestTracer slowRequestTracer;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        slowRequestTracer.startSerialization();
+        return body;
+    }
+}
@@ -0,0 +1,61 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Traces the recipe read requests with the {@link SlowRequestTracer}. Streamed responses are written by another
+ * thread and are not traced.
+ */
+@Component
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class SlowRequestFilter extends OncePerRequestFilter {
+    private final SlowRequestTracer slowRequestTracer;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod()) || !request.getRequestURI().startsWith("/recipes");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        slowRequestTracer.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                slowRequestTracer.discard();
+            } else {
+                slowRequestTracer.finish(response.getStatus(), () -> describe(request));
+            }
+        }
+    }
+
+    /**
+     * Method, path pattern and parameter names of the request, so the recipe names and filter values are left out.
+     */
+    static String describe(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = Objects.nonNull(pattern) ? pattern.toString() : request.getRequestURI();
+        String parameters = request.getParameterMap().keySet().stream()
+                .sorted()
+                .map(name -> name + "=?")
+                .collect(Collectors.joining("&"));
+        return request.getMethod() + " " + path + (parameters.isEmpty() ? "" : "?" + parameters);
+    }
+}
@@ -2,14 +2,24 @@ package com.assignment.amit.recipemanager.entity;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
 import java.util.Set;
 
 
+/**
+ * The compound indexes put the filtered fields first and _id last, so a filtered page is a range scan on the
+ * index in cursor order.
+ */
 @Document
+@CompoundIndex(name = "ingredients_id", def = "{'ingredients.name': 1, '_id': 1}")
+@CompoundIndex(name = "servings_id", def = "{'servings': 1, '_id': 1}")
+@CompoundIndex(name = "isVegetarian_servings_id", def = "{'isVegetarian': 1, 'servings': 1, '_id': 1}")
 @AllArgsConstructor
 @Data
 public class RecipeEntity {
@@ -17,10 +27,16 @@ public class RecipeEntity {
 	private String id;
 	@Indexed(unique = true)
 	private String recipeName;
-	private int servings;
+	private Integer servings;
 	private List<IngredientEntity> ingredients;
+	@TextIndexed
 	private String instructions;
 	private String isVegetarian;
+	/**
+	 * Incremented by every update, with the id it identifies the content of the recipe for the entity tags.
+	 */
+	@Version
+	private Long version;
 	//private String createdBy;
 
 }
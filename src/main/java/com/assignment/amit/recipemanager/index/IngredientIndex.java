@@ -0,0 +1,310 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.IngredientEntity;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.query.FilterCondition;
+import com.assignment.amit.recipemanager.query.FilterOperator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index from ingredient name to the compressed bitmap of the recipes using it.
+ * Recipes are numbered with ordinals in id order as they are loaded, so the ingredient conditions of a filter are
+ * answered with bitmap algebra and only the ids of the matching recipes are sent to the database.
+ * <p>
+ * The index is loaded at startup and kept up to date by the writes of {@link com.assignment.amit.recipemanager.service.RecipeService}.
+ * Writes by filter can not tell which recipes changed, they trigger a reload in the background during which the
+ * index answers nothing and queries go to the database. Writes made by other instances show up at the periodic
+ * reload.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class IngredientIndex {
+    private static final String INGREDIENT_NAME = "ingredients.name";
+    private static final Set<FilterOperator> INDEXED_OPERATORS = EnumSet.of(FilterOperator.EQ, FilterOperator.NE, FilterOperator.IN, FilterOperator.NIN);
+
+    private final MongoTemplate mongoTemplate;
+    private final RecipeProperties.IngredientIndex config;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ingredient-index-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Postings postings = new Postings();
+    private List<Consumer<Postings>> pendingWrites;
+    private volatile boolean ready;
+
+    public IngredientIndex(MongoTemplate mongoTemplate, RecipeProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = properties.getIngredientIndex();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (config.isEnabled()) {
+            long refreshInterval = config.getRefreshInterval().toMillis();
+            loader.scheduleWithFixedDelay(this::load, 0, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * Whether the index is loaded and can answer queries.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexes the recipe, replacing what was indexed before for the same id.
+     */
+    public void put(RecipeEntity recipe) {
+        if (!config.isEnabled() || Objects.isNull(recipe.getId())) {
+            return;
+        }
+        ObjectId id = new ObjectId(recipe.getId());
+        Set<String> ingredientNames = new HashSet<>();
+        if (Objects.nonNull(recipe.getIngredients())) {
+            recipe.getIngredients().stream().map(IngredientEntity::getName).filter(Objects::nonNull).forEach(ingredientNames::add);
+        }
+        write(postings -> postings.put(id, recipe.getRecipeName(), ingredientNames));
+    }
+
+    /**
+     * Removes the recipe with the given name from the index.
+     */
+    public void remove(String recipeName) {
+        if (config.isEnabled()) {
+            write(postings -> postings.remove(recipeName));
+        }
+    }
+
+    /**
+     * Stops answering queries and reloads the index in the background, for writes that can not tell which
+     * recipes they changed.
+     */
+    public void reload() {
+        if (config.isEnabled()) {
+            ready = false;
+            loader.execute(this::load);
+        }
+    }
+
+    /**
+     * Evaluates the ingredient name conditions of a filter, all of them must hold, and returns the smallest ids of
+     * the matching recipes in ascending order. Equalities and in include the recipes using any of the names,
+     * differences and not in exclude them. The ordinals are resolved to ids under the same lock, so a reload
+     * swapping the postings in between can not map them to other recipes.
+     *
+     * @param conditions ingredient name conditions
+     * @param after      only ids greater than this one are returned, null for no lower bound
+     * @param max        maximum number of ids returned
+     * @return the ids, empty when the index is not ready or can not evaluate an operator
+     */
+    public Optional<List<ObjectId>> match(Collection<FilterCondition> conditions, ObjectId after, int max) {
+        if (!ready || conditions.stream().anyMatch(condition -> !INDEXED_OPERATORS.contains(condition.operator()))) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = postings.all;
+            for (FilterCondition condition : conditions) {
+                RoaringBitmap anyOf = RoaringBitmap.or(condition.values().stream()
+                        .map(name -> postings.byIngredient.getOrDefault(String.valueOf(name), new RoaringBitmap())).iterator());
+                boolean exclude = condition.operator() == FilterOperator.NE || condition.operator() == FilterOperator.NIN;
+                matches = exclude ? RoaringBitmap.andNot(matches, anyOf) : RoaringBitmap.and(matches, anyOf);
+            }
+            return Optional.of(postings.sorted ? idsInOrdinalOrder(matches, after, max) : smallestIds(matches, after, max));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordinals are in id order, the ids after the cursor are the next ordinals of the bitmap.
+     */
+    private List<ObjectId> idsInOrdinalOrder(RoaringBitmap matches, ObjectId after, int max) {
+        List<ObjectId> ids = new ArrayList<>(Math.min(max, matches.getCardinality()));
+        PeekableIntIterator ordinals = matches.getIntIterator();
+        if (Objects.nonNull(after)) {
+            int position = Collections.binarySearch(postings.ids, after);
+            ordinals.advanceIfNeeded(position >= 0 ? position + 1 : -position - 1);
+        }
+        while (ordinals.hasNext() && ids.size() < max) {
+            ids.add(postings.ids.get(ordinals.next()));
+        }
+        return ids;
+    }
+
+    private List<ObjectId> smallestIds(RoaringBitmap matches, ObjectId after, int max) {
+        PriorityQueue<ObjectId> smallest = new PriorityQueue<>(Comparator.reverseOrder());
+        matches.forEach((int ordinal) -> {
+            ObjectId id = postings.ids.get(ordinal);
+            if (Objects.isNull(after) || id.compareTo(after) > 0) {
+                smallest.add(id);
+                if (smallest.size() > max) {
+                    smallest.poll();
+                }
+            }
+        });
+        List<ObjectId> ids = new ArrayList<>(smallest);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private void write(Consumer<Postings> write) {
+        lock.writeLock().lock();
+        try {
+            write.accept(postings);
+            if (Objects.nonNull(pendingWrites)) {
+                pendingWrites.add(write);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the index from the database, the writes made while loading are replayed on the loaded index.
+     */
+    void load() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Postings loaded = new Postings();
+        try {
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+            query.fields().include("_id", "recipeName", INGREDIENT_NAME);
+            String collectionName = mongoTemplate.getCollectionName(RecipeEntity.class);
+            try (Stream<Document> recipes = mongoTemplate.stream(query, Document.class, collectionName)) {
+                recipes.forEach(recipe -> loaded.put(recipe.getObjectId("_id"), recipe.getString("recipeName"), ingredientNames(recipe)));
+            }
+        } catch (RuntimeException ex) {
+            log.error("Error While loading the ingredient index ", ex);
+            lock.writeLock().lock();
+            try {
+                pendingWrites = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingWrites.forEach(write -> write.accept(loaded));
+            pendingWrites = null;
+            postings = loaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Ingredient index loaded with {} recipes and {} ingredients", loaded.all.getCardinality(), loaded.byIngredient.size());
+    }
+
+    private static Set<String> ingredientNames(Document recipe) {
+        Set<String> ingredientNames = new HashSet<>();
+        List<Document> ingredients = recipe.getList("ingredients", Document.class);
+        if (Objects.nonNull(ingredients)) {
+            ingredients.stream().map(ingredient -> ingredient.getString("name")).filter(Objects::nonNull).forEach(ingredientNames::add);
+        }
+        return ingredientNames;
+    }
+
+    /**
+     * Postings of the index, ordinals are never reused so ids stay sorted as long as recipes are added in id order.
+     */
+    private static class Postings {
+        private final Map<String, RoaringBitmap> byIngredient = new HashMap<>();
+        private final Map<ObjectId, Integer> ordinalById = new HashMap<>();
+        private final Map<String, Integer> ordinalByName = new HashMap<>();
+        private final List<ObjectId> ids = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Set<String>> ingredients = new ArrayList<>();
+        private final RoaringBitmap all = new RoaringBitmap();
+        private boolean sorted = true;
+
+        void put(ObjectId id, String name, Set<String> ingredientNames) {
+            Integer ordinal = ordinalById.get(id);
+            if (Objects.isNull(ordinal)) {
+                ordinal = ids.size();
+                sorted = sorted && (ids.isEmpty() || ids.get(ordinal - 1).compareTo(id) < 0);
+                ids.add(id);
+                names.add(name);
+                ingredients.add(Set.of());
+                ordinalById.put(id, ordinal);
+            } else {
+                unindex(ordinal);
+            }
+            names.set(ordinal, name);
+            ordinalByName.put(name, ordinal);
+            ingredients.set(ordinal, ingredientNames);
+            for (String ingredientName : ingredientNames) {
+                byIngredient.computeIfAbsent(ingredientName, key -> new RoaringBitmap()).add(ordinal);
+            }
+            all.add(ordinal);
+        }
+
+        void remove(String name) {
+            Integer ordinal = ordinalByName.get(name);
+            if (Objects.nonNull(ordinal)) {
+                unindex(ordinal);
+                ordinalById.remove(ids.get(ordinal));
+            }
+        }
+
+        private void unindex(int ordinal) {
+            for (String ingredientName : ingredients.get(ordinal)) {
+                RoaringBitmap recipes = byIngredient.get(ingredientName);
+                recipes.remove(ordinal);
+                if (recipes.isEmpty()) {
+                    byIngredient.remove(ingredientName);
+                }
+            }
+            ingredients.set(ordinal, Set.of());
+            ordinalByName.remove(names.get(ordinal), ordinal);
+            all.remove(ordinal);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.QueryShapeReport;
+import com.assignment.amit.recipemanager.query.CompiledQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Records the latency of the filter queries by query shape, the filter with its values left out, and reports
+ * the plan the database chooses for each shape. Shapes answered with a collection scan get a suggested index,
+ * built with the equality fields first, then the sort fields, then the range fields.
+ * <p>
+ * Queries are recorded under the shape of the {@link CompiledQuery} the filter compiler built, the filter is only
+ * rendered the first time a shape is seen. Recording a known shape only updates counters, the plans are explained
+ * when the report is requested, once per shape.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class QueryAdvisor {
+    private static final Set<String> RANGE_OPERATORS = Set.of("$gt", "$gte", "$lt", "$lte", "$ne", "$nin", "$regex", "$not", "$exists");
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final MongoTemplate mongoTemplate;
+    private final RecipeProperties.QueryAdvisor config;
+    private final Map<String, ShapeStatistics> shapes = new ConcurrentHashMap<>();
+    // statistics by shape of the compiled query, filter parameters resolving to the same field share their statistics
+    private final Map<String, ShapeStatistics> compiledShapes = new ConcurrentHashMap<>();
+
+    public QueryAdvisor(MongoTemplate mongoTemplate, RecipeProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = properties.getQueryAdvisor();
+    }
+
+    /**
+     * Records the latency of a filter query under its shape. Only the queries compiled from a filter are recorded.
+     *
+     * @param query   query sent to the database
+     * @param elapsed time the database took to answer it
+     */
+    public void record(Query query, Duration elapsed) {
+        if (!config.isEnabled() || !(query instanceof CompiledQuery compiledQuery)) {
+            return;
+        }
+        ShapeStatistics statistics = compiledShapes.get(compiledQuery.shape());
+        if (Objects.isNull(statistics)) {
+            if (compiledShapes.size() >= config.getMaxShapes()) {
+                return;
+            }
+            Document filter = query.getQueryObject();
+            Document sort = query.getSortObject();
+            statistics = shapes.computeIfAbsent(shape(filter, sort), shape -> new ShapeStatistics(shape, filter, sort, query.getLimit()));
+            compiledShapes.putIfAbsent(compiledQuery.shape(), statistics);
+        }
+        boolean slow = elapsed.compareTo(config.getSlowQueryThreshold()) > 0;
+        statistics.record(elapsed.toNanos(), slow);
+        if (slow) {
+            log.debug("Slow query shape={} took {} ms", statistics.shape, elapsed.toMillis());
+        }
+    }
+
+    /**
+     * Reports the recorded shapes, the ones the database spent the most time on first.
+     */
+    public List<QueryShapeReport> report() {
+        return shapes.values().stream()
+                .map(this::report)
+                .sorted(Comparator.comparingDouble((QueryShapeReport report) -> report.averageMillis() * report.count()).reversed())
+                .toList();
+    }
+
+    /**
+     * Number of query shapes recorded.
+     */
+    public int shapeCount() {
+        return shapes.size();
+    }
+
+    /**
+     * Forgets the recorded shapes and their plans, for instance after the indexes changed.
+     */
+    public void reset() {
+        compiledShapes.clear();
+        shapes.clear();
+    }
+
+    private QueryShapeReport report(ShapeStatistics statistics) {
+        Plan plan = statistics.plan;
+        if (Objects.isNull(plan)) {
+            plan = explain(statistics);
+            statistics.plan = plan;
+        }
+        long count = statistics.count.sum();
+        double averageMillis = count == 0 ? 0 : statistics.totalNanos.sum() / NANOS_PER_MILLI / count;
+        boolean collectionScan = Objects.nonNull(plan) && plan.stages().contains("COLLSCAN");
+        return new QueryShapeReport(statistics.shape, count, statistics.slowCount.sum(), averageMillis,
+                statistics.maxNanos.get() / NANOS_PER_MILLI,
+                Objects.nonNull(plan) ? plan.stages() : List.of(),
+                Objects.nonNull(plan) ? plan.indexes() : List.of(),
+                collectionScan,
+                collectionScan ? suggestIndex(statistics.filter, statistics.sort) : null);
+    }
+
+    /**
+     * Asks the database for the winning plan of the first query seen with the shape.
+     *
+     * @return the plan, null when the database could not explain it
+     */
+    private Plan explain(ShapeStatistics statistics) {
+        Document explained = explain(statistics.filter, statistics.sort, statistics.limit, "queryPlanner", null);
+        return Objects.isNull(explained) ? null : plan(explained);
+    }
+
+    /**
+     * Runs explain for the find command of the filter, with the given verbosity. It does not depend on the recorded
+     * shapes, so it also explains queries when the advisor is disabled.
+     *
+     * @param maxTime time the database may spend running the query, null when the verbosity does not run it
+     * @return the explain output, null when the database could not explain it
+     */
+    Document explain(Document filter, Document sort, int limit, String verbosity, Duration maxTime) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(RecipeEntity.class))
+                .append("filter", filter)
+                .append("sort", sort);
+        if (limit > 0) {
+            find.append("limit", limit);
+        }
+        if (Objects.nonNull(maxTime)) {
+            find.append("maxTimeMS", maxTime.toMillis());
+        }
+        try {
+            return mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", verbosity));
+        } catch (RuntimeException ex) {
+            log.error("Error While explaining the query {} ", find.toJson(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stages and indexes of the winning plan of the explain output.
+     */
+    static Plan plan(Document explained) {
+        Document queryPlanner = explained.get("queryPlanner", Document.class);
+        List<String> stages = new ArrayList<>();
+        Set<String> indexes = new LinkedHashSet<>();
+        if (Objects.nonNull(queryPlanner)) {
+            collectStages(queryPlanner.get("winningPlan"), stages, indexes);
+        }
+        return new Plan(stages, List.copyOf(indexes));
+    }
+
+    private static void collectStages(Object node, List<String> stages, Set<String> indexes) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            if (document.get("indexName") instanceof String indexName) {
+                indexes.add(indexName);
+            }
+            document.values().forEach(value -> collectStages(value, stages, indexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages, indexes));
+        }
+    }
+
+    /**
+     * Suggests the index serving the filter and its sort, equality fields first, then the sort fields, then the
+     * range fields. Text searches already have their index.
+     */
+    static String suggestIndex(Document filter, Document sort) {
+        if (filter.containsKey("$text")) {
+            return null;
+        }
+        Set<String> equalityFields = new LinkedHashSet<>();
+        Set<String> rangeFields = new LinkedHashSet<>();
+        collectFields(filter, equalityFields, rangeFields);
+        Document index = new Document();
+        equalityFields.forEach(field -> index.put(field, 1));
+        sort.forEach(index::putIfAbsent);
+        rangeFields.forEach(field -> index.putIfAbsent(field, 1));
+        if (index.keySet().stream().allMatch("_id"::equals)) {
+            return null;
+        }
+        return index.toJson();
+    }
+
+    private static void collectFields(Document filter, Set<String> equalityFields, Set<String> rangeFields) {
+        filter.forEach((key, value) -> {
+            if (key.equals("$and") || key.equals("$or")) {
+                ((List<?>) value).stream().filter(Document.class::isInstance)
+                        .forEach(condition -> collectFields((Document) condition, equalityFields, rangeFields));
+            } else if (!key.startsWith("$")) {
+                boolean range = value instanceof Pattern || value instanceof BsonRegularExpression
+                        || (value instanceof Document operators && operators.keySet().stream().anyMatch(RANGE_OPERATORS::contains));
+                (range ? rangeFields : equalityFields).add(key);
+            }
+        });
+    }
+
+    /**
+     * Shape of the query, its filter with every value replaced by ? and the conditions of $and in a stable
+     * order, followed by its sort.
+     */
+    static String shape(Document filter, Document sort) {
+        String shape = ((Document) shapeOf(filter)).toJson();
+        return sort.isEmpty() ? shape : shape + " sort " + sort.toJson();
+    }
+
+    private static Object shapeOf(Object value) {
+        if (value instanceof Document document) {
+            Document shape = new Document();
+            document.forEach((key, nested) -> shape.put(key, shapeOf(nested)));
+            return shape;
+        }
+        if (value instanceof List<?> list && !list.isEmpty() && list.stream().allMatch(Document.class::isInstance)) {
+            return list.stream().map(condition -> ((Document) shapeOf(condition)).toJson())
+                    .sorted().map(Document::parse).toList();
+        }
+        return "?";
+    }
+
+    record Plan(List<String> stages, List<String> indexes) {
+    }
+
+    private static class ShapeStatistics {
+        private final String shape;
+        private final Document filter;
+        private final Document sort;
+        private final int limit;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private volatile Plan plan;
+
+        ShapeStatistics(String shape, Document filter, Document sort, int limit) {
+            this.shape = shape;
+            this.filter = filter;
+            this.sort = sort;
+            this.limit = limit;
+        }
+
+        void record(long nanos, boolean slow) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (slow) {
+                slowCount.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Copy of all the recipes in memory, loaded from a snapshot of the collection and kept current by tailing its
+ * change stream, so an instance serves the recipe reads without a round trip to the database.
+ * <p>
+ * The change stream is opened before the snapshot is read, the changes made while reading are replayed on it and a
+ * change never replaces a recipe with an older version. After a failure the stream resumes after the last change
+ * applied, a resume token no longer in the oplog or a drop of the collection loads a new snapshot. The writes of
+ * {@link com.assignment.amit.recipemanager.service.RecipeService} are applied right away, so an instance reads its
+ * own writes, after a write by filter reads go to the database until the stream brought its changes. The writes of
+ * other instances show up with the stream.
+ * <p>
+ * The copy is current as of the last fetch of the stream returning less than a full batch, once its changes are
+ * applied. It answers reads only while that is more recent than the maximum staleness, while the stream lags or
+ * reconnects reads go to the database. On a standalone server, which has no change streams, it never answers.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class RecipeReplica implements MeterBinder {
+    /**
+     * Errors telling the resume token is no longer in the oplog: CappedPositionLost, ChangeStreamFatalError and
+     * ChangeStreamHistoryLost.
+     */
+    private static final Set<Integer> HISTORY_LOST = Set.of(136, 280, 286);
+
+    private final MongoTemplate mongoTemplate;
+    private final RecipeProperties.Replica config;
+    private final ExecutorService tailer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "recipe-replica-tailer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Catalog catalog = new Catalog();
+    private volatile BsonDocument resumeToken;
+    private volatile long currentAt;
+    private volatile long invalidatedAt = System.nanoTime();
+    private volatile boolean ready;
+    private volatile boolean running = true;
+
+    public RecipeReplica(MongoTemplate mongoTemplate, RecipeProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = properties.getReplica();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (config.isEnabled()) {
+            tailer.execute(this::tail);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        tailer.shutdownNow();
+    }
+
+    /**
+     * Whether the copy is loaded and was current within the maximum staleness, and since the last invalidation, so
+     * it can answer reads.
+     */
+    public boolean isCurrent() {
+        return ready && currentAt - invalidatedAt > 0 && System.nanoTime() - currentAt <= config.getMaxStaleness().toNanos();
+    }
+
+    /**
+     * Returns the recipe with the given name, null when there is none.
+     */
+    public Recipe get(String recipeName) {
+        return catalog.byName.get(recipeName);
+    }
+
+    /**
+     * Returns the matching recipes in id order.
+     *
+     * @param filter  recipes to return
+     * @param afterId only recipes with a greater id are returned, null for no lower bound
+     * @param max     maximum number of recipes returned
+     */
+    public List<Recipe> find(Predicate<Recipe> filter, String afterId, int max) {
+        ConcurrentSkipListMap<String, Recipe> byId = catalog.byId;
+        Collection<Recipe> recipes = Objects.isNull(afterId) ? byId.values() : byId.tailMap(afterId, false).values();
+        return recipes.stream().filter(filter).limit(max).toList();
+    }
+
+    /**
+     * Applies a recipe written by this instance.
+     */
+    public void put(RecipeEntity recipe) {
+        if (config.isEnabled() && Objects.nonNull(recipe.getId())) {
+            catalog.put(RecipeUtil.maoToRecipe(recipe));
+        }
+    }
+
+    /**
+     * Applies the delete of a recipe by this instance, the earlier changes of the recipe still in the stream
+     * do not bring it back.
+     */
+    public void remove(String recipeName) {
+        if (config.isEnabled()) {
+            catalog.removeName(recipeName);
+        }
+    }
+
+    /**
+     * Stops answering reads until the stream caught up with the writes made so far, for writes by filter that can
+     * not tell which recipes they changed.
+     */
+    public void invalidate() {
+        if (config.isEnabled()) {
+            invalidatedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Publishes the number of recipes of the copy and the time since it was last known current.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Gauge.builder("recipe.replica.recipes", this, replica -> replica.catalog.byId.size())
+                .description("Number of recipes in the local replica")
+                .register(registry);
+        Gauge.builder("recipe.replica.staleness", this,
+                        replica -> replica.ready ? (System.nanoTime() - replica.currentAt) / 1e9 : Double.NaN)
+                .description("Time since the local replica was last known current")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void tail() {
+        while (running) {
+            try {
+                follow();
+            } catch (MongoException ex) {
+                if (HISTORY_LOST.contains(ex.getCode())) {
+                    resumeToken = null;
+                }
+                log.warn("Recipe replica stream failed, reads go to the database until it catches up: {}", ex.getMessage());
+                pause(config.getRetryInterval().toNanos());
+            } catch (RuntimeException ex) {
+                log.error("Error While following the recipe changes ", ex);
+                pause(config.getRetryInterval().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Opens the change stream, after the last change applied or else before loading a snapshot, and applies its
+     * changes until it fails or the collection is dropped.
+     */
+    void follow() {
+        ChangeStreamIterable<Document> changes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(RecipeEntity.class))
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(config.getMaxAwaitTime().toMillis(), TimeUnit.MILLISECONDS)
+                .batchSize(config.getBatchSize());
+        boolean snapshot = Objects.isNull(resumeToken);
+        if (!snapshot) {
+            changes = changes.resumeAfter(resumeToken);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changes.cursor()) {
+            if (snapshot) {
+                load();
+            }
+            while (running) {
+                // only a fetch issued after all the changes already fetched were applied tells the copy is current
+                boolean fetches = cursor.available() == 0;
+                long fetchedAt = System.nanoTime();
+                int applied = 0;
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                while (Objects.nonNull(change)) {
+                    if (!apply(change)) {
+                        ready = false;
+                        resumeToken = null;
+                        return;
+                    }
+                    applied++;
+                    resumeToken = change.getResumeToken();
+                    change = cursor.available() > 0 ? cursor.tryNext() : null;
+                }
+                if (Objects.nonNull(cursor.getResumeToken())) {
+                    resumeToken = cursor.getResumeToken();
+                }
+                if (fetches && applied < config.getBatchSize()) {
+                    currentAt = fetchedAt;
+                    ready = true;
+                }
+                if (fetches && applied == 0) {
+                    // a server answering empty fetches without waiting, like the in-memory ones, is not polled faster
+                    pause(config.getMaxAwaitTime().toNanos() - (System.nanoTime() - fetchedAt));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the copy with the recipes of the collection, the copy answers nothing until the stream caught up.
+     */
+    private void load() {
+        ready = false;
+        Catalog loaded = new Catalog();
+        try (Stream<RecipeEntity> recipes = mongoTemplate.stream(new Query().cursorBatchSize(config.getBatchSize()), RecipeEntity.class)) {
+            recipes.map(RecipeUtil::maoToRecipe).forEach(loaded::put);
+        }
+        catalog = loaded;
+        log.debug("Recipe replica loaded with {} recipes", loaded.byId.size());
+    }
+
+    /**
+     * Applies the change to the copy.
+     *
+     * @return false when the change invalidates the stream and a new snapshot is needed
+     */
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                // an update looked up after the recipe was deleted has no document, the delete follows
+                if (Objects.nonNull(change.getFullDocument())) {
+                    catalog.put(RecipeUtil.maoToRecipe(mongoTemplate.getConverter().read(RecipeEntity.class, change.getFullDocument())));
+                }
+            }
+            case DELETE -> catalog.removeId(id(change.getDocumentKey().get("_id")));
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    private static String id(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+
+    private void pause(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Recipes of the copy by id and by name. Readers do not lock, writes are rare and serialized.
+     */
+    private static class Catalog {
+        private final ConcurrentSkipListMap<String, Recipe> byId = new ConcurrentSkipListMap<>();
+        private final Map<String, Recipe> byName = new ConcurrentHashMap<>();
+        // recipes deleted by this instance whose delete is not yet in the stream
+        private final Set<String> removedIds = new HashSet<>();
+
+        synchronized void put(Recipe recipe) {
+            if (removedIds.contains(recipe.id())) {
+                return;
+            }
+            Recipe previous = byId.get(recipe.id());
+            if (Objects.nonNull(previous)) {
+                if (version(previous) > version(recipe)) {
+                    return;
+                }
+                byName.remove(previous.recipeName(), previous);
+            }
+            byId.put(recipe.id(), recipe);
+            byName.put(recipe.recipeName(), recipe);
+        }
+
+        synchronized void removeName(String recipeName) {
+            Recipe removed = byName.remove(recipeName);
+            if (Objects.nonNull(removed)) {
+                byId.remove(removed.id());
+                removedIds.add(removed.id());
+            }
+        }
+
+        synchronized void removeId(String id) {
+            removedIds.remove(id);
+            Recipe removed = byId.remove(id);
+            if (Objects.nonNull(removed)) {
+                byName.remove(removed.recipeName(), removed);
+            }
+        }
+
+        private static long version(Recipe recipe) {
+            return Objects.isNull(recipe.version()) ? 0 : recipe.version();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.model.SlowRequestReport;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the last recipe read requests slower than the threshold in a fixed size ring buffer, with their slowest
+ * query and the time spent in the database, in mapping the entities and in serializing the response.
+ * <p>
+ * The request is traced on the thread serving it, recording only adds to the counters of the trace. The filter,
+ * sort and limit of the slowest query are copied when the request turns out slow, with the lists of values longer
+ * than the max explained values cut, so a slow request stays small. The copy is explained with execution
+ * statistics when the report is requested, once per request, for at most the explain max time, whether or not the
+ * {@link QueryAdvisor} records the query shapes. The report only shows the shape of the query, its values are left
+ * out.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class SlowRequestTracer {
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final QueryAdvisor queryAdvisor;
+    private final RecipeProperties.SlowRequests config;
+    private final AtomicReferenceArray<SlowRequest> slowRequests;
+    private final AtomicLong written = new AtomicLong();
+
+    public SlowRequestTracer(QueryAdvisor queryAdvisor, RecipeProperties properties) {
+        this.queryAdvisor = queryAdvisor;
+        this.config = properties.getSlowRequests();
+        this.slowRequests = new AtomicReferenceArray<>(Math.max(config.getCapacity(), 1));
+    }
+
+    /**
+     * Starts tracing the request served by the current thread.
+     */
+    public void start() {
+        if (config.isEnabled()) {
+            CURRENT.set(new Trace(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Records a query of the traced request and the time the database took to answer it.
+     */
+    public void recordQuery(Query query, long nanos, int returned) {
+        Trace trace = CURRENT.get();
+        if (Objects.isNull(trace)) {
+            return;
+        }
+        trace.queries++;
+        trace.mongoNanos += nanos;
+        trace.returned += returned;
+        if (nanos >= trace.slowestQueryNanos) {
+            trace.slowestQueryNanos = nanos;
+            trace.slowestQuery = query;
+        }
+    }
+
+    /**
+     * Records the time spent mapping the entities of the traced request to recipes.
+     */
+    public void recordMapping(long nanos) {
+        Trace trace = CURRENT.get();
+        if (Objects.nonNull(trace)) {
+            trace.mappingNanos += nanos;
+        }
+    }
+
+    /**
+     * Marks the start of the serialization of the response body of the traced request.
+     */
+    public void startSerialization() {
+        Trace trace = CURRENT.get();
+        if (Objects.nonNull(trace)) {
+            trace.serializationStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends the trace of the current thread and keeps the request when it was slower than the threshold.
+     *
+     * @param status  http status of the response
+     * @param request describes the request, method and path with the values of the parameters left out, only
+     *                called for slow requests
+     */
+    public void finish(int status, Supplier<String> request) {
+        Trace trace = CURRENT.get();
+        if (Objects.isNull(trace)) {
+            return;
+        }
+        CURRENT.remove();
+        long end = System.nanoTime();
+        long totalNanos = end - trace.start;
+        if (totalNanos <= config.getThreshold().toNanos()) {
+            return;
+        }
+        long serializationNanos = trace.serializationStart > 0 ? end - trace.serializationStart : 0;
+        String description = request.get();
+        ExplainedQuery slowestQuery = Objects.nonNull(trace.slowestQuery)
+                ? ExplainedQuery.of(trace.slowestQuery, config.getMaxExplainedValues()) : null;
+        SlowRequest slowRequest = new SlowRequest(Instant.now(), description, status, totalNanos, trace.mongoNanos,
+                trace.mappingNanos, serializationNanos, trace.queries, trace.returned, slowestQuery);
+        slowRequests.set((int) (written.getAndIncrement() % slowRequests.length()), slowRequest);
+        log.debug("Slow request {} took {} ms", description, totalNanos / 1_000_000);
+    }
+
+    /**
+     * Ends the trace of the current thread without keeping the request, e.g. when the response is written by
+     * another thread.
+     */
+    public void discard() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Reports the slow requests kept, the latest first.
+     */
+    public List<SlowRequestReport> report() {
+        long last = written.get();
+        List<SlowRequestReport> report = new ArrayList<>();
+        for (long index = last - 1; index >= Math.max(0, last - slowRequests.length()); index--) {
+            SlowRequest slowRequest = slowRequests.get((int) (index % slowRequests.length()));
+            if (Objects.nonNull(slowRequest)) {
+                report.add(report(slowRequest));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Forgets the slow requests kept.
+     */
+    public void reset() {
+        for (int index = 0; index < slowRequests.length(); index++) {
+            slowRequests.set(index, null);
+        }
+    }
+
+    private SlowRequestReport report(SlowRequest slowRequest) {
+        Execution execution = slowRequest.execution;
+        ExplainedQuery query = slowRequest.query;
+        if (Objects.nonNull(query) && Objects.isNull(execution)) {
+            execution = explain(query);
+            slowRequest.execution = execution;
+        }
+        return new SlowRequestReport(slowRequest.time, slowRequest.request, slowRequest.status,
+                slowRequest.totalNanos / NANOS_PER_MILLI,
+                slowRequest.mongoNanos / NANOS_PER_MILLI,
+                slowRequest.mappingNanos / NANOS_PER_MILLI,
+                slowRequest.serializationNanos / NANOS_PER_MILLI,
+                slowRequest.queries,
+                Objects.nonNull(query) ? QueryAdvisor.shape(query.filter, query.sort) : null,
+                Objects.nonNull(query) && query.truncated,
+                slowRequest.returned,
+                Objects.nonNull(execution) ? execution.docsExamined : null,
+                Objects.nonNull(execution) ? execution.keysExamined : null,
+                Objects.nonNull(execution) ? execution.plan.stages() : List.of(),
+                Objects.nonNull(execution) ? execution.plan.indexes() : List.of());
+    }
+
+    private Execution explain(ExplainedQuery query) {
+        Document explained = queryAdvisor.explain(query.filter, query.sort, query.limit, "executionStats",
+                config.getExplainMaxTime());
+        if (Objects.isNull(explained)) {
+            return null;
+        }
+        Document executionStats = explained.get("executionStats", Document.class);
+        Long docsExamined = null;
+        Long keysExamined = null;
+        if (Objects.nonNull(executionStats)) {
+            docsExamined = toLong(executionStats.get("totalDocsExamined"));
+            keysExamined = toLong(executionStats.get("totalKeysExamined"));
+        }
+        return new Execution(docsExamined, keysExamined, QueryAdvisor.plan(explained));
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * Counters of the request being served, only used by its thread.
+     */
+    private static class Trace {
+        private final long start;
+        private int queries;
+        private long returned;
+        private long mongoNanos;
+        private long mappingNanos;
+        private long serializationStart;
+        private long slowestQueryNanos;
+        private Query slowestQuery;
+
+        Trace(long start) {
+            this.start = start;
+        }
+    }
+
+    private record Execution(Long docsExamined, Long keysExamined, QueryAdvisor.Plan plan) {
+    }
+
+    /**
+     * Copy of the filter, sort and limit of the slowest query of a slow request, explained when the report is
+     * requested.
+     *
+     * @param truncated whether lists of values were cut, the query explained is then only representative of the
+     *                  slow one
+     */
+    private record ExplainedQuery(Document filter, Document sort, int limit, boolean truncated) {
+        static ExplainedQuery of(Query query, int maxValues) {
+            Bounded bounded = new Bounded(Math.max(maxValues, 1));
+            Document filter = (Document) bounded.copy(query.getQueryObject());
+            Document sort = (Document) bounded.copy(query.getSortObject());
+            return new ExplainedQuery(filter, sort, query.getLimit(), bounded.truncated);
+        }
+    }
+
+    /**
+     * Copies a query document keeping at most the max values of each list.
+     */
+    private static class Bounded {
+        private final int maxValues;
+        private boolean truncated;
+
+        Bounded(int maxValues) {
+            this.maxValues = maxValues;
+        }
+
+        Object copy(Object value) {
+            if (value instanceof Document document) {
+                Document copy = new Document();
+                document.forEach((key, nested) -> copy.put(key, copy(nested)));
+                return copy;
+            }
+            if (value instanceof List<?> list) {
+                truncated |= list.size() > maxValues;
+                return list.stream().limit(maxValues).map(this::copy).toList();
+            }
+            return value;
+        }
+    }
+
+    private static class SlowRequest {
+        private final Instant time;
+        private final String request;
+        private final int status;
+        private final long totalNanos;
+        private final long mongoNanos;
+        private final long mappingNanos;
+        private final long serializationNanos;
+        private final int queries;
+        private final long returned;
+        private final ExplainedQuery query;
+        private volatile Execution execution;
+
+        SlowRequest(Instant time, String request, int status, long totalNanos, long mongoNanos, long mappingNanos,
+                    long serializationNanos, int queries, long returned, ExplainedQuery query) {
+            this.time = time;
+            this.request = request;
+            this.status = status;
+            this.totalNanos = totalNanos;
+            this.mongoNanos = mongoNanos;
+            this.mappingNanos = mappingNanos;
+            this.serializationNanos = serializationNanos;
+            this.queries = queries;
+            this.returned = returned;
+            this.query = query;
+        }
+    }
+}
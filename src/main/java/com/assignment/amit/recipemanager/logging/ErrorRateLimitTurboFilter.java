@@ -0,0 +1,97 @@
+package com.assignment.amit.recipemanager.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import ch.qos.logback.core.util.Duration;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets through at most {@code maxPerInterval} WARN and ERROR events of the same logger and message pattern per
+ * interval and drops the others, so a burst of failing requests does not turn into a burst of stack traces.
+ * Different values of the same pattern, e.g. recipe names, count as the same message.
+ */
+public class ErrorRateLimitTurboFilter extends TurboFilter {
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder suppressed = new LongAdder();
+    private int maxPerInterval = 10;
+    private Duration interval = Duration.buildBySeconds(1);
+    private int maxPatterns = 1000;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || !level.isGreaterOrEqual(Level.WARN) || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+        String key = logger.getName() + '|' + format;
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxPatterns) {
+                windows.clear();
+            }
+            window = windows.computeIfAbsent(key, ignored -> new Window());
+        }
+        if (window.tryAcquire(System.nanoTime(), interval.getMilliseconds() * 1_000_000, maxPerInterval)) {
+            return FilterReply.NEUTRAL;
+        }
+        suppressed.increment();
+        return FilterReply.DENY;
+    }
+
+    /**
+     * Number of events dropped because their pattern was logged too often.
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public int getMaxPerInterval() {
+        return maxPerInterval;
+    }
+
+    public void setMaxPerInterval(int maxPerInterval) {
+        this.maxPerInterval = maxPerInterval;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getMaxPatterns() {
+        return maxPatterns;
+    }
+
+    /**
+     * Number of patterns tracked, all of them are forgotten when it is reached.
+     */
+    public void setMaxPatterns(int maxPatterns) {
+        this.maxPatterns = maxPatterns;
+    }
+
+    /**
+     * Fixed window counter, a few extra events can get through when the window turns over.
+     */
+    private static class Window {
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger count = new AtomicInteger();
+
+        boolean tryAcquire(long now, long intervalNanos, int maxPerInterval) {
+            long windowStart = start.get();
+            if (now - windowStart >= intervalNanos && start.compareAndSet(windowStart, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= maxPerInterval;
+        }
+    }
+}
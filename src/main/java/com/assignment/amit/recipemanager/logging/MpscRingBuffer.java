@@ -0,0 +1,64 @@
+package com.assignment.amit.recipemanager.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue for many producers and a single consumer, without locks. Producers claim a slot with a compare
+ * and set on the tail and fail straight away when the buffer is full, the consumer frees the slot before moving
+ * the head so a producer seeing the new head finds the slot empty.
+ */
+final class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element, from any thread.
+     *
+     * @return false when the buffer is full
+     */
+    boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.lazySet((int) (claimed & mask), element);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, only from the consumer thread.
+     *
+     * @return null when the buffer is empty or the oldest element is not published yet
+     */
+    E poll() {
+        long current = head;
+        int index = (int) (current & mask);
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head = current + 1;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,41 @@
+package com.assignment.amit.recipemanager.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops the events below WARN logged while serving a request that was not sampled, so only a share of the
+ * requests write their debug and info lines. The request is sampled once, when it starts, and the decision is
+ * kept in the {@value #SAMPLED_KEY} MDC entry, so a sampled request logs all its lines. Events logged outside of
+ * a request are not filtered.
+ */
+public class RequestSamplingTurboFilter extends TurboFilter {
+    public static final String SAMPLED_KEY = "sampled";
+
+    private final LongAdder suppressed = new LongAdder();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || level.isGreaterOrEqual(Level.WARN) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        if ("false".equals(MDC.get(SAMPLED_KEY))) {
+            suppressed.increment();
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    /**
+     * Number of events dropped because the request was not sampled.
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+}
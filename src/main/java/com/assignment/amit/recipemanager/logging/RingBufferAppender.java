@@ -0,0 +1,179 @@
+package com.assignment.amit.recipemanager.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the logging events to the attached appenders from a background thread, through a lock-free ring buffer.
+ * Logging never blocks the calling thread: when the buffer is full the event is dropped and counted.
+ * <p>
+ * Unlike the AsyncAppender of logback there is no lock on the queue and no blocking when it fills up, at the
+ * price of losing events when the disk can not keep up.
+ */
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final LongAdder dropped = new LongAdder();
+    private int capacity = DEFAULT_CAPACITY;
+    private boolean includeCallerData;
+    private Duration maxFlushTime = Duration.buildBySeconds(1);
+    private MpscRingBuffer<ILoggingEvent> buffer;
+    private Thread worker;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No appender attached to the ring buffer appender [" + name + "]");
+            return;
+        }
+        if (capacity < 1) {
+            addError("Invalid capacity " + capacity + " of the ring buffer appender [" + name + "]");
+            return;
+        }
+        buffer = new MpscRingBuffer<>(capacity);
+        worker = new Thread(this::drain, "logback-ring-buffer-" + name);
+        worker.setDaemon(true);
+        super.start();
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        LockSupport.unpark(worker);
+        try {
+            worker.join(maxFlushTime.getMilliseconds());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            addWarn("Ring buffer appender [" + name + "] stopped before flushing all the events");
+        }
+        if (getDroppedCount() > 0) {
+            addInfo("Ring buffer appender [" + name + "] dropped " + getDroppedCount() + " events");
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // the thread name, the mdc and the message are read now, the worker would see other values
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Writes the events to the attached appenders until the appender is stopped and the buffer is empty, parking
+     * longer and longer while there is nothing to write.
+     */
+    private void drain() {
+        long parkNanos = MIN_PARK_NANOS;
+        while (true) {
+            ILoggingEvent event = buffer.poll();
+            if (event != null) {
+                appenders.appendLoopOnAppenders(event);
+                parkNanos = MIN_PARK_NANOS;
+            } else if (!isStarted() && buffer.isEmpty()) {
+                break;
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    /**
+     * Number of events dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of events the buffer holds, rounded up to a power of two.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    public Duration getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    /**
+     * How long stopping waits for the buffered events to be written.
+     */
+    public void setMaxFlushTime(Duration maxFlushTime) {
+        this.maxFlushTime = maxFlushTime;
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,58 @@
+package com.assignment.amit.recipemanager.metrics;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.assignment.amit.recipemanager.logging.ErrorRateLimitTurboFilter;
+import com.assignment.amit.recipemanager.logging.RequestSamplingTurboFilter;
+import com.assignment.amit.recipemanager.logging.RingBufferAppender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+
+/**
+ * Counts the log events dropped by the ring buffer appenders of the root logger and suppressed by the sampling
+ * and rate limiting filters, as logging.events.dropped tagged by the reason.
+ */
+@Component
+public class LoggingMetrics implements MeterBinder {
+    public static final String DROPPED = "logging.events.dropped";
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+            return;
+        }
+        Iterator<Appender<ILoggingEvent>> appenders = context.getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+        while (appenders.hasNext()) {
+            if (appenders.next() instanceof RingBufferAppender appender) {
+                FunctionCounter.builder(DROPPED, appender, RingBufferAppender::getDroppedCount)
+                        .description("Log events dropped before being written")
+                        .tag("reason", "buffer-full")
+                        .tag("appender", appender.getName())
+                        .register(registry);
+            }
+        }
+        for (TurboFilter filter : context.getTurboFilterList()) {
+            if (filter instanceof RequestSamplingTurboFilter sampling) {
+                FunctionCounter.builder(DROPPED, sampling, RequestSamplingTurboFilter::getSuppressedCount)
+                        .description("Log events dropped before being written")
+                        .tag("reason", "not-sampled")
+                        .tag("appender", "")
+                        .register(registry);
+            } else if (filter instanceof ErrorRateLimitTurboFilter rateLimit) {
+                FunctionCounter.builder(DROPPED, rateLimit, ErrorRateLimitTurboFilter::getSuppressedCount)
+                        .description("Log events dropped before being written")
+                        .tag("reason", "rate-limited")
+                        .tag("appender", "")
+                        .register(registry);
+            }
+        }
+    }
+}
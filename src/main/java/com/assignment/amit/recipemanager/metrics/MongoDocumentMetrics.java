@@ -0,0 +1,67 @@
+package com.assignment.amit.recipemanager.metrics;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the number of documents returned or written by every mongo command. The latency of the commands is
+ * recorded by the listener of Spring Boot, as the mongodb.driver.commands timer.
+ */
+public class MongoDocumentMetrics implements CommandListener {
+    public static final String DOCUMENTS = "recipe.mongo.documents";
+
+    private final MeterRegistry registry;
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public MongoDocumentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        long documents = documentCount(event.getCommandName(), event.getResponse());
+        if (documents < 0) {
+            return;
+        }
+        summaries.computeIfAbsent(event.getCommandName(), command -> DistributionSummary.builder(DOCUMENTS)
+                .description("Number of documents returned or written by the mongo commands")
+                .baseUnit("documents")
+                .tag("command", command)
+                .register(registry)).record(documents);
+    }
+
+    /**
+     * Counts the documents of the reply, -1 for the commands which do not read or write documents.
+     */
+    static long documentCount(String command, BsonDocument reply) {
+        switch (command) {
+            case "find", "aggregate", "getMore" -> {
+                BsonValue cursor = reply.get("cursor");
+                if (cursor == null || !cursor.isDocument()) {
+                    return -1;
+                }
+                BsonValue batch = cursor.asDocument().get(command.equals("getMore") ? "nextBatch" : "firstBatch");
+                return batch instanceof BsonArray documents ? documents.size() : -1;
+            }
+            case "insert", "update", "delete", "count" -> {
+                BsonValue count = reply.get("n");
+                return count != null && count.isNumber() ? count.asNumber().longValue() : -1;
+            }
+            case "findAndModify" -> {
+                BsonValue value = reply.get("value");
+                return value != null && value.isDocument() ? 1 : 0;
+            }
+            default -> {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.assignment.amit.recipemanager.metrics;
+
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers of the recipe service operations, tagged by operation and outcome, and summaries of the number of
+ * recipes they return. The meters are created once per operation and outcome and cached, so recording costs two
+ * clock reads and two map lookups. Only the lambda of the call site is allocated, about 16 bytes per call, plus the
+ * wrapping supplier for the {@link Runnable} overload.
+ */
+@Component
+public class RecipeMetrics {
+    public static final String OPERATION_TIMER = "recipe.service";
+    public static final String RESULT_SIZE = "recipe.service.results";
+
+    private final MeterRegistry registry;
+    private final Map<String, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> resultSizes = new ConcurrentHashMap<>();
+
+    public RecipeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Runs the operation and records its duration with the outcome, ok or the kind of failure.
+     */
+    public <T> T time(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = Outcome.OK;
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            outcome = Outcome.of(ex);
+            throw ex;
+        } finally {
+            timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void time(String operation, Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records the number of recipes returned by the operation.
+     */
+    public void recordResultSize(String operation, int size) {
+        DistributionSummary summary = resultSizes.get(operation);
+        if (summary == null) {
+            summary = resultSizes.computeIfAbsent(operation, key -> DistributionSummary.builder(RESULT_SIZE)
+                    .description("Number of recipes returned by the recipe service")
+                    .baseUnit("recipes")
+                    .tag("operation", key)
+                    .register(registry));
+        }
+        summary.record(size);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        Map<String, Timer> outcomes = timers.computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+        Timer timer = outcomes.get(outcome);
+        if (timer == null) {
+            timer = outcomes.computeIfAbsent(outcome, key -> Timer.builder(OPERATION_TIMER)
+                    .description("Duration of the recipe service operations")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    static final class Outcome {
+        static final String OK = "ok";
+        static final String NOT_FOUND = "not-found";
+        static final String DUPLICATE = "duplicate";
+        static final String INVALID = "invalid";
+        static final String ERROR = "error";
+
+        private Outcome() {
+        }
+
+        static String of(RuntimeException ex) {
+            if (ex instanceof RecipeNotFoundException) {
+                return NOT_FOUND;
+            }
+            if (ex instanceof RecipeAlreadyExistException) {
+                return DUPLICATE;
+            }
+            if (ex instanceof InvalidRequestException) {
+                return INVALID;
+            }
+            return ERROR;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.assignment.amit.recipemanager.model;
+
+/**
+ * Counters of a cache since the application started.
+ */
+public record CacheStatistics(long hitCount,
+                              long missCount,
+                              long evictionCount,
+                              long size) {
+}
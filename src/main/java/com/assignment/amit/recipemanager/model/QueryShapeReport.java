@@ -0,0 +1,17 @@
+package com.assignment.amit.recipemanager.model;
+
+import java.util.List;
+
+/**
+ * Latency and query plan of the filter queries of one shape, the filter with its values left out.
+ */
+public record QueryShapeReport(String shape,
+                               long count,
+                               long slowCount,
+                               double averageMillis,
+                               double maxMillis,
+                               List<String> stages,
+                               List<String> indexes,
+                               boolean collectionScan,
+                               String suggestedIndex) {
+}
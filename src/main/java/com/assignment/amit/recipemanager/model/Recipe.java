@@ -1,12 +1,22 @@
 package com.assignment.amit.recipemanager.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Recipe as exchanged with the clients. Fields left out of a projection are null and not serialized.
+ * The id and version are not exchanged, they make the entity tag of the recipe.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record Recipe(String recipeName,
                      List<Ingredient> ingredients,
-                     int servings, 
+                     Integer servings,
                      String instructions,
-                     String isVegetarian) {
+                     String isVegetarian,
+                     @JsonIgnore String id,
+                     @JsonIgnore Long version) {
 
 }
@@ -0,0 +1,14 @@
+package com.assignment.amit.recipemanager.model;
+
+/**
+ * Outcome of one recipe of a batch create request.
+ */
+public record RecipeBatchResult(String recipeName,
+                                Status status) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        FAILED
+    }
+}
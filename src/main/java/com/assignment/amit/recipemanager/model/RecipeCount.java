@@ -0,0 +1,7 @@
+package com.assignment.amit.recipemanager.model;
+
+/**
+ * Number of recipes affected by a bulk request.
+ */
+public record RecipeCount(long count) {
+}
@@ -0,0 +1,20 @@
+package com.assignment.amit.recipemanager.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of the recipes matching a filter, by vegetarian flag, by number of servings and for the most used
+ * ingredients. Recipes without a vegetarian flag or servings are only counted in the total.
+ */
+public record RecipeFacets(long total,
+                           Map<String, Long> isVegetarian,
+                           Map<Integer, Long> servings,
+                           List<IngredientCount> topIngredients) {
+
+    /**
+     * Number of recipes using the ingredient.
+     */
+    public record IngredientCount(String name, long count) {
+    }
+}
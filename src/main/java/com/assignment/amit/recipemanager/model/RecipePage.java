@@ -0,0 +1,10 @@
+package com.assignment.amit.recipemanager.model;
+
+import java.util.List;
+
+/**
+ * One page of recipes along with the cursor to fetch the next one, next is null on the last page.
+ */
+public record RecipePage(List<Recipe> recipes,
+                         String next) {
+}
@@ -0,0 +1,28 @@
+package com.assignment.amit.recipemanager.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Recipe read request slower than the threshold, with the shape of its slowest query, the documents the database
+ * examined for it and where the time was spent. The examined counts and the plan come from explaining a copy of the
+ * query again when the report is requested, against the current data, they are null when the request made no query.
+ * When {@code queryTruncated} is set, lists of values of the query were cut to keep it, and the counts are those of
+ * a representative query rather than of the slow one.
+ */
+public record SlowRequestReport(Instant time,
+                                String request,
+                                int status,
+                                double totalMillis,
+                                double mongoMillis,
+                                double mappingMillis,
+                                double serializationMillis,
+                                int queries,
+                                String shape,
+                                boolean queryTruncated,
+                                long returned,
+                                Long docsExamined,
+                                Long keysExamined,
+                                List<String> stages,
+                                List<String> indexes) {
+}
@@ -0,0 +1,52 @@
+package com.assignment.amit.recipemanager.query;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Query compiled by the {@link FilterQueryCompiler} from the filter parameters. It keeps the shape of the filter
+ * the compiler caches its query under, the keys and operators of the parameters, followed by the fields and
+ * operators of the conditions and the sort added to it since, so the shape of the query is known without rendering
+ * it.
+ */
+public class CompiledQuery extends BasicQuery {
+    private String shape;
+
+    CompiledQuery(Document filter, String shape) {
+        super(filter);
+        this.shape = shape;
+    }
+
+    /**
+     * Shape of the query, equal for all the queries differing only by their values.
+     */
+    public String shape() {
+        return shape;
+    }
+
+    @Override
+    public Query addCriteria(CriteriaDefinition criteriaDefinition) {
+        Document criteria = criteriaDefinition.getCriteriaObject();
+        StringBuilder added = new StringBuilder(shape);
+        criteria.forEach((key, value) -> {
+            added.append(key).append('=');
+            if (value instanceof Document operators) {
+                added.append(operators.keySet());
+            }
+            added.append('&');
+        });
+        shape = added.toString();
+        return super.addCriteria(criteriaDefinition);
+    }
+
+    @Override
+    public Query with(Sort sort) {
+        if (sort.isSorted()) {
+            shape = shape + "sort=" + sort + '&';
+        }
+        return super.with(sort);
+    }
+}
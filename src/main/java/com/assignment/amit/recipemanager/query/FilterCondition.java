@@ -0,0 +1,11 @@
+package com.assignment.amit.recipemanager.query;
+
+import java.util.List;
+
+/**
+ * One parsed condition of a filter, its values are converted to the type of the field.
+ */
+public record FilterCondition(String field,
+                              FilterOperator operator,
+                              List<Object> values) {
+}
@@ -0,0 +1,103 @@
+package com.assignment.amit.recipemanager.query;
+
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import org.springframework.data.annotation.Id;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Document field a filter can compare, typed after the field of {@link RecipeEntity}. Fields of the entities in a
+ * list, like the ingredients, are reachable with their dotted path and know the list they belong to.
+ *
+ * @param path  dotted path of the field in the document
+ * @param type  type values are converted to, fields of unknown type are compared as strings
+ * @param array path of the list the field belongs to, null for a top level field
+ */
+public record FilterField(String path, Class<?> type, String array) {
+    private static final Map<String, FilterField> FIELDS = Collections.unmodifiableMap(fieldsOf(RecipeEntity.class, null));
+
+    /**
+     * Returns the field with the given path, null when the entity has no such field.
+     */
+    public static FilterField of(String path) {
+        return FIELDS.get(path);
+    }
+
+    /**
+     * Returns the field for a filter key that is not a document field, so compared as a string.
+     */
+    static FilterField untyped(String path) {
+        return new FilterField(path, String.class, null);
+    }
+
+    /**
+     * Name of the field inside the entities of its list.
+     */
+    public String nameInArray() {
+        return path.substring(array.length() + 1);
+    }
+
+    /**
+     * Converts a filter value to the type of the field.
+     */
+    public Object convert(String value) {
+        if (type == Integer.class) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                throw new InvalidRequestException("Invalid value " + value + " for " + path + ", a number is expected");
+            }
+        }
+        if (type == Long.class) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ex) {
+                throw new InvalidRequestException("Invalid value " + value + " for " + path + ", a number is expected");
+            }
+        }
+        if (type == Boolean.class) {
+            return Boolean.parseBoolean(value);
+        }
+        return value;
+    }
+
+    private static Map<String, FilterField> fieldsOf(Class<?> entity, String array) {
+        Map<String, FilterField> fields = new LinkedHashMap<>();
+        for (Field field : entity.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Id.class)) {
+                continue;
+            }
+            String path = Objects.isNull(array) ? field.getName() : array + "." + field.getName();
+            if (List.class.isAssignableFrom(field.getType())
+                    && field.getGenericType() instanceof ParameterizedType listType
+                    && listType.getActualTypeArguments()[0] instanceof Class<?> element
+                    && element.getPackage().equals(entity.getPackage())) {
+                fields.putAll(fieldsOf(element, path));
+            } else {
+                fields.put(path, new FilterField(path, boxed(field.getType()), array));
+            }
+        }
+        return fields;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return Integer.class;
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.class;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.class;
+        }
+        return String.class;
+    }
+}
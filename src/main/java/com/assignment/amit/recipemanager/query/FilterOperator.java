@@ -0,0 +1,32 @@
+package com.assignment.amit.recipemanager.query;
+
+/**
+ * Comparison operators of the filter grammar, written as the prefix of the value, for instance servings=gte:4.
+ */
+public enum FilterOperator {
+    EQ("$eq"),
+    NE("$ne"),
+    GT("$gt"),
+    GTE("$gte"),
+    LT("$lt"),
+    LTE("$lte"),
+    IN("$in"),
+    NIN("$nin");
+
+    private final String mongoOperator;
+
+    FilterOperator(String mongoOperator) {
+        this.mongoOperator = mongoOperator;
+    }
+
+    public String mongoOperator() {
+        return mongoOperator;
+    }
+
+    /**
+     * Whether the operator takes a list of values, separated by |.
+     */
+    public boolean isList() {
+        return this == IN || this == NIN;
+    }
+}
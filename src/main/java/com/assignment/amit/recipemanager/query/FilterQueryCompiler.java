@@ -0,0 +1,387 @@
+package com.assignment.amit.recipemanager.query;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the filter parameters into a mongo query.
+ * <p>
+ * A filter value is one or more conditions separated by commas, each written {@code operator:value} with the
+ * operators of {@link FilterOperator}, for instance {@code servings=gte:2,lte:6}. A value without operator is an
+ * equality, {@code !value} a difference, and values separated by | match any of them. Values are converted to the
+ * type of the field in {@link com.assignment.amit.recipemanager.entity.RecipeEntity}. Conditions on the name and
+ * the quantity of the ingredients apply to the same ingredient.
+ * <p>
+ * The structure of the query only depends on the shape of the filter, its keys and operators, it is compiled
+ * once per shape and the values of each request are bound to it.
+ */
+@Component
+public class FilterQueryCompiler {
+    public static final String SEARCH_PARAM = "q";
+    public static final String INGREDIENT_NAME = "ingredients.name";
+    private static final String INGREDIENT_QUANTITY = "ingredients.quantity";
+    private static final String INSTRUCTIONS = "instructions";
+    private static final Pattern CONDITION_SEPARATOR = Pattern.compile(",(?=(?:eq|ne|gt|gte|lt|lte|in|nin):)");
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("\\|");
+    private static final Map<String, FilterOperator> OPERATORS = new HashMap<>();
+    private static final Map<String, Function<Recipe, Object>> RECIPE_VALUES = Map.of(
+            "recipeName", Recipe::recipeName,
+            "servings", Recipe::servings,
+            "isVegetarian", Recipe::isVegetarian);
+    private static final Map<String, Function<Ingredient, Object>> INGREDIENT_VALUES = Map.of(
+            INGREDIENT_NAME, Ingredient::name,
+            INGREDIENT_QUANTITY, Ingredient::quantity);
+
+    static {
+        Arrays.stream(FilterOperator.values()).forEach(operator -> OPERATORS.put(operator.name().toLowerCase(), operator));
+    }
+
+    private final RecipeProperties properties;
+    private final Map<String, CompiledFilter> compiledFilters = new ConcurrentHashMap<>();
+
+    public FilterQueryCompiler(RecipeProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Whether the query is a text search, ranked by relevance.
+     */
+    public static boolean isTextSearch(Query query) {
+        return query.getQueryObject().containsKey("$text");
+    }
+
+    /**
+     * Maps the filter key to the document field it filters on. Any key containing quantity filters on the
+     * ingredient quantities, any other key containing ingredient on the ingredient names.
+     */
+    public String resolveField(String key) {
+        if (key.startsWith("$")) {
+            throw new InvalidRequestException("Invalid filter " + key);
+        }
+        if (key.equals(SEARCH_PARAM) || Objects.nonNull(FilterField.of(key))) {
+            return key;
+        }
+        if (key.toLowerCase().contains("quantity")) {
+            return INGREDIENT_QUANTITY;
+        }
+        return key.contains("ingredient") ? INGREDIENT_NAME : key;
+    }
+
+    /**
+     * Parses the conditions of one filter parameter.
+     */
+    public List<FilterCondition> parse(String key, String value) {
+        FilterField field = field(resolveField(key));
+        return CONDITION_SEPARATOR.splitAsStream(value).map(condition -> {
+            FilterOperator operator = operatorOf(condition);
+            String operand = condition.substring(offsetOf(condition, operator));
+            return new FilterCondition(field.path(), operator, convert(field, operator, operand));
+        }).toList();
+    }
+
+    /**
+     * Creates the mongo query of the filter. The q filter, and the instructions filter unless regular expressions
+     * are enabled, become a text search on the instructions, ranked by relevance. Filters on keys that are not
+     * fields of the recipes are compiled on each request, so the keys clients make up do not fill the compiled
+     * shapes.
+     *
+     * @param filterMap criteria filter map
+     * @return Mongo query, with the shape of the filter
+     */
+    public CompiledQuery compile(Map<String, String> filterMap) {
+        Map<String, String[]> conditions = new HashMap<>();
+        StringBuilder shape = new StringBuilder();
+        boolean knownFields = true;
+        for (String key : filterMap.keySet().stream().sorted().toList()) {
+            String value = filterMap.get(key);
+            String path = resolveField(key);
+            knownFields &= isSearch(path) || Objects.nonNull(FilterField.of(path));
+            String[] keyConditions = isSearch(path) ? new String[]{value} : CONDITION_SEPARATOR.split(value);
+            conditions.put(key, keyConditions);
+            shape.append(key).append('=');
+            for (String condition : keyConditions) {
+                shape.append(operatorOf(condition)).append(offsetOf(condition, operatorOf(condition))).append(',');
+            }
+            shape.append('&');
+        }
+        String filterShape = shape.toString();
+        CompiledFilter compiledFilter = compiledFilters.get(filterShape);
+        if (Objects.isNull(compiledFilter)) {
+            compiledFilter = compileShape(filterShape, conditions);
+            if (knownFields && compiledFilters.size() < properties.getFilter().getMaxCompiledShapes()) {
+                compiledFilters.put(filterShape, compiledFilter);
+            }
+        }
+        return compiledFilter.bind(conditions);
+    }
+
+    /**
+     * Compiles the filter into a predicate on recipes held in memory, matching the recipes the query of
+     * {@link #compile(Map)} matches. Every condition must hold, also the ones of several keys on the same field. A
+     * condition on the ingredients holds when any ingredient satisfies it, a difference or not in when none does,
+     * and conditions on the name and the quantity must hold for the same ingredient, as with $elemMatch. A later
+     * condition with the operator of an earlier one on the same ingredient field, in key order, may hold for
+     * another ingredient, as in the query.
+     *
+     * @return the predicate, empty for a text search, a regular expression or a field the recipes do not have
+     */
+    public Optional<Predicate<Recipe>> predicate(Map<String, String> filterMap) {
+        Map<String, List<FilterCondition>> conditions = new LinkedHashMap<>();
+        for (String key : filterMap.keySet().stream().sorted().toList()) {
+            String path = resolveField(key);
+            if (isSearch(path) || !(RECIPE_VALUES.containsKey(path) || INGREDIENT_VALUES.containsKey(path))) {
+                return Optional.empty();
+            }
+            parse(key, filterMap.get(key)).forEach(condition -> conditions
+                    .computeIfAbsent(condition.field(), field -> new ArrayList<>()).add(condition));
+        }
+        Predicate<Recipe> predicate = recipe -> true;
+        Map<String, List<FilterCondition>> ingredientConditions = new LinkedHashMap<>();
+        for (Map.Entry<String, List<FilterCondition>> entry : conditions.entrySet()) {
+            if (INGREDIENT_VALUES.containsKey(entry.getKey())) {
+                ingredientConditions.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            Function<Recipe, Object> value = RECIPE_VALUES.get(entry.getKey());
+            List<FilterCondition> fieldConditions = entry.getValue();
+            predicate = predicate.and(recipe -> fieldConditions.stream().allMatch(condition -> matches(value.apply(recipe), condition)));
+        }
+        List<FilterCondition> anyIngredientConditions = new ArrayList<>();
+        if (ingredientConditions.size() > 1) {
+            // the first condition of each operator goes to the $elemMatch, the later ones apply to any ingredient
+            List<FilterCondition> sameIngredientConditions = new ArrayList<>();
+            Set<String> operators = new HashSet<>();
+            ingredientConditions.values().forEach(fieldConditions -> fieldConditions.forEach(condition ->
+                    (operators.add(condition.field() + condition.operator()) ? sameIngredientConditions : anyIngredientConditions).add(condition)));
+            Predicate<Ingredient> sameIngredient = ingredient -> sameIngredientConditions.stream()
+                    .allMatch(condition -> matches(INGREDIENT_VALUES.get(condition.field()).apply(ingredient), condition));
+            predicate = predicate.and(recipe -> ingredients(recipe).stream().anyMatch(sameIngredient));
+        } else {
+            ingredientConditions.values().forEach(anyIngredientConditions::addAll);
+        }
+        for (FilterCondition condition : anyIngredientConditions) {
+            Function<Ingredient, Object> value = INGREDIENT_VALUES.get(condition.field());
+            predicate = predicate.and(isExclusion(condition.operator())
+                    ? recipe -> ingredients(recipe).stream().allMatch(ingredient -> matches(value.apply(ingredient), condition))
+                    : recipe -> ingredients(recipe).stream().anyMatch(ingredient -> matches(value.apply(ingredient), condition)));
+        }
+        return Optional.of(predicate);
+    }
+
+    /**
+     * Number of filter shapes compiled and kept.
+     */
+    public int compiledShapeCount() {
+        return compiledFilters.size();
+    }
+
+    private CompiledFilter compileShape(String shape, Map<String, String[]> conditions) {
+        RecipeProperties.Search search = properties.getSearch();
+        List<Slot> slots = new ArrayList<>();
+        List<String> searchKeys = new ArrayList<>();
+        String regexKey = null;
+        // in key order, so the first of the conditions on the same field with the same operator is always the same one
+        for (Map.Entry<String, String[]> entry : new TreeMap<>(conditions).entrySet()) {
+            String path = resolveField(entry.getKey());
+            if (path.equals(SEARCH_PARAM) || (path.equals(INSTRUCTIONS) && !search.isRegexEnabled())) {
+                searchKeys.add(entry.getKey());
+            } else if (path.equals(INSTRUCTIONS)) {
+                regexKey = entry.getKey();
+            } else {
+                FilterField field = field(path);
+                String[] keyConditions = entry.getValue();
+                for (int index = 0; index < keyConditions.length; index++) {
+                    FilterOperator operator = operatorOf(keyConditions[index]);
+                    slots.add(new Slot(entry.getKey(), index, field, operator, offsetOf(keyConditions[index], operator)));
+                }
+            }
+        }
+        // conditions on several fields of the same list apply to the same element
+        Map<String, Set<String>> arrayFields = new HashMap<>();
+        slots.stream().map(Slot::field).filter(field -> Objects.nonNull(field.array()))
+                .forEach(field -> arrayFields.computeIfAbsent(field.array(), array -> new HashSet<>()).add(field.path()));
+        Set<String> elemMatchArrays = new HashSet<>();
+        arrayFields.forEach((array, fields) -> {
+            if (fields.size() > 1) {
+                elemMatchArrays.add(array);
+            }
+        });
+        searchKeys.sort(null);
+        return new CompiledFilter(shape, List.copyOf(slots), List.copyOf(searchKeys), regexKey, search.getRegexTimeout(),
+                Set.copyOf(elemMatchArrays));
+    }
+
+    private boolean isSearch(String path) {
+        return path.equals(SEARCH_PARAM) || path.equals(INSTRUCTIONS);
+    }
+
+    private static boolean isExclusion(FilterOperator operator) {
+        return operator == FilterOperator.NE || operator == FilterOperator.NIN;
+    }
+
+    private static List<Ingredient> ingredients(Recipe recipe) {
+        return Objects.isNull(recipe.ingredients()) ? List.of() : recipe.ingredients();
+    }
+
+    /**
+     * Whether the value satisfies the condition. As in mongo, a missing value satisfies only the differences and
+     * values of another type never compare.
+     */
+    private static boolean matches(Object value, FilterCondition condition) {
+        List<Object> values = condition.values();
+        return switch (condition.operator()) {
+            case EQ -> values.get(0).equals(value);
+            case NE -> !values.get(0).equals(value);
+            case IN -> values.contains(value);
+            case NIN -> !values.contains(value);
+            case GT -> compares(value, values.get(0), order -> order > 0);
+            case GTE -> compares(value, values.get(0), order -> order >= 0);
+            case LT -> compares(value, values.get(0), order -> order < 0);
+            case LTE -> compares(value, values.get(0), order -> order <= 0);
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean compares(Object value, Object operand, IntPredicate order) {
+        return Objects.nonNull(value) && value.getClass() == operand.getClass() && value instanceof Comparable comparable
+                && order.test(comparable.compareTo(operand));
+    }
+
+    private static FilterField field(String path) {
+        FilterField field = FilterField.of(path);
+        return Objects.nonNull(field) ? field : FilterField.untyped(path);
+    }
+
+    private static FilterOperator operatorOf(String condition) {
+        int colon = condition.indexOf(':');
+        if (colon > 0 && colon <= 3) {
+            FilterOperator operator = OPERATORS.get(condition.substring(0, colon));
+            if (Objects.nonNull(operator)) {
+                return operator;
+            }
+        }
+        boolean list = condition.indexOf('|') >= 0;
+        if (condition.startsWith("!")) {
+            return list ? FilterOperator.NIN : FilterOperator.NE;
+        }
+        return list ? FilterOperator.IN : FilterOperator.EQ;
+    }
+
+    /**
+     * Position of the operand in the condition, after the operator prefix or the !.
+     */
+    private static int offsetOf(String condition, FilterOperator operator) {
+        int colon = condition.indexOf(':');
+        if (colon > 0 && colon <= 3 && operator == OPERATORS.get(condition.substring(0, colon))) {
+            return colon + 1;
+        }
+        return condition.startsWith("!") ? 1 : 0;
+    }
+
+    private static List<Object> convert(FilterField field, FilterOperator operator, String operand) {
+        return operator.isList()
+                ? LIST_SEPARATOR.splitAsStream(operand).map(field::convert).toList()
+                : List.of(field.convert(operand));
+    }
+
+    /**
+     * Condition of the compiled filter, the operand is read from the given condition of the parameter.
+     */
+    private record Slot(String key, int index, FilterField field, FilterOperator operator, int offset) {
+    }
+
+    private record CompiledFilter(String shape, List<Slot> slots, List<String> searchKeys, String regexKey,
+                                  Duration regexTimeout, Set<String> elemMatchArrays) {
+
+        CompiledQuery bind(Map<String, String[]> conditions) {
+            Document filter = new Document();
+            Map<String, Document> elements = new HashMap<>();
+            for (Slot slot : slots) {
+                String operand = conditions.get(slot.key())[slot.index()].substring(slot.offset());
+                List<Object> values = convert(slot.field(), slot.operator(), operand);
+                Object value = slot.operator().isList() ? values : values.get(0);
+                String array = slot.field().array();
+                boolean added = Objects.nonNull(array) && elemMatchArrays.contains(array)
+                        ? put(elements.computeIfAbsent(array, key -> new Document()), slot.field().nameInArray(), slot.operator(), value)
+                        : put(filter, slot.field().path(), slot.operator(), value);
+                if (!added) {
+                    // keys resolving to the same field with the same operator, e.g. ingredient1 and ingredient2, all hold, an
+                    // extra condition on a field of a list applies to any of its elements
+                    and(filter).add(new Document(slot.field().path(), new Document(slot.operator().mongoOperator(), value)));
+                }
+            }
+            elements.forEach((array, element) -> filter.put(array, new Document("$elemMatch", element)));
+            if (Objects.nonNull(regexKey)) {
+                filter.put(INSTRUCTIONS, new Document("$regex", conditions.get(regexKey)[0]));
+            }
+            if (!searchKeys.isEmpty()) {
+                String terms = String.join(" ", searchKeys.stream().map(key -> conditions.get(key)[0]).toList());
+                filter.put("$text", new Document("$search", terms));
+            }
+            CompiledQuery query = new CompiledQuery(filter, shape);
+            if (!searchKeys.isEmpty()) {
+                query.setSortObject(new Document("score", new Document("$meta", "textScore")));
+            }
+            if (Objects.nonNull(regexKey)) {
+                query.maxTime(regexTimeout);
+            }
+            return query;
+        }
+
+        /**
+         * Adds the condition on the field, a single equality is written as the plain value.
+         *
+         * @return false when the field already has a condition with the operator, the condition is not added
+         */
+        private static boolean put(Document target, String name, FilterOperator operator, Object value) {
+            Object existing = target.get(name);
+            if (operator == FilterOperator.EQ && Objects.isNull(existing)) {
+                target.put(name, value);
+                return true;
+            }
+            Document operators;
+            if (existing instanceof Document existingOperators) {
+                operators = existingOperators;
+            } else {
+                operators = new Document();
+                if (Objects.nonNull(existing)) {
+                    operators.put(FilterOperator.EQ.mongoOperator(), existing);
+                }
+            }
+            if (operators.containsKey(operator.mongoOperator())) {
+                return false;
+            }
+            operators.put(operator.mongoOperator(), value);
+            target.put(name, operators);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Object> and(Document filter) {
+            return (List<Object>) filter.computeIfAbsent("$and", key -> new ArrayList<>());
+        }
+    }
+}
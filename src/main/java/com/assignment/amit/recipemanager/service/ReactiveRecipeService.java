@@ -0,0 +1,302 @@
+package com.assignment.amit.recipemanager.service;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Non blocking counterpart of the {@link RecipeService}, used by the reactive profile.
+ * Filters are compiled by the same {@link FilterQueryCompiler} and the recipes mapped by the same
+ * {@link RecipeUtil}, so both profiles answer a request the same way. The recipes are always read from the
+ * database, the caches, the ingredient index and the replica of the blocking service are not created in this
+ * profile, nor the blocking MongoDB client they read from.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveRecipeService {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RecipeProperties properties;
+    private final FilterQueryCompiler filterQueryCompiler;
+
+    /**
+     * Adds recipe to the Database
+     *
+     * @param recipe to be stored
+     * @return the stored recipe
+     */
+    public Mono<Recipe> addRecipe(Recipe recipe) {
+        return Mono.defer(() -> mongoTemplate.save(RecipeUtil.mapToRecipeEntity(recipe)))
+                .map(RecipeUtil::maoToRecipe)
+                .onErrorMap(DuplicateKeyException.class, ex -> new RecipeAlreadyExistException("Recipe Already Exist"));
+    }
+
+    /**
+     * Adds the recipes to the database with unordered bulk writes of the configured chunk size, one chunk
+     * after the other. Duplicates are reported per recipe instead of failing the batch.
+     *
+     * @param recipes recipes to be stored
+     * @return result for each recipe, in the order of the request
+     */
+    public Flux<RecipeBatchResult> addRecipes(List<Recipe> recipes) {
+        RecipeProperties.Batch batch = properties.getBatch();
+        if (recipes.size() > batch.getMaxSize()) {
+            return Flux.error(new InvalidRequestException("Batch can not have more than " + batch.getMaxSize() + " recipes"));
+        }
+        return Flux.fromIterable(recipes).buffer(batch.getChunkSize()).concatMap(this::addRecipeChunk);
+    }
+
+    private Flux<RecipeBatchResult> addRecipeChunk(List<Recipe> chunk) {
+        List<RecipeEntity> entities = chunk.stream().map(RecipeUtil::mapToRecipeEntity).toList();
+        entities.forEach(entity -> {
+            entity.setId(new ObjectId().toHexString());
+            // bulk inserts do not initialize the version as save does
+            entity.setVersion(0L);
+        });
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RecipeEntity.class)
+                .insert(entities)
+                .execute()
+                .map(result -> Map.<Integer, BulkWriteError>of())
+                .onErrorResume(DataAccessException.class, ex -> ex.getCause() instanceof MongoBulkWriteException bulkException
+                        ? Mono.just(bulkException.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity())))
+                        : Mono.error(ex))
+                .flatMapIterable(errors -> {
+                    List<RecipeBatchResult> results = new ArrayList<>(chunk.size());
+                    for (int index = 0; index < chunk.size(); index++) {
+                        BulkWriteError error = errors.get(index);
+                        RecipeBatchResult.Status status = RecipeBatchResult.Status.CREATED;
+                        if (Objects.nonNull(error)) {
+                            status = ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                                    ? RecipeBatchResult.Status.DUPLICATE : RecipeBatchResult.Status.FAILED;
+                            log.debug("Recipe {} not created, error={}", chunk.get(index).recipeName(), error.getMessage());
+                        }
+                        results.add(new RecipeBatchResult(chunk.get(index).recipeName(), status));
+                    }
+                    return results;
+                });
+    }
+
+    /**
+     * Return the requested fields of the recipe for given recipe name.
+     *
+     * @param recipeName recipe name to be retrieved
+     * @param fields     comma separated recipe fields to return, null or empty for all of them.
+     * @return Recipe Object with the other fields null, RecipeNotFoundException when there is no such recipe
+     */
+    public Mono<Recipe> getRecipe(String recipeName, String fields) {
+        return Mono.defer(() -> mongoTemplate.findOne(
+                        RecipeQueries.project(RecipeQueries.byName(recipeName), RecipeQueries.resolveFields(fields)), RecipeEntity.class))
+                .map(RecipeUtil::maoToRecipe)
+                .switchIfEmpty(Mono.error(() -> new RecipeNotFoundException("Recipe Not available")));
+    }
+
+    /**
+     * Return the entity tag of the recipe for given recipe name from a query of the version alone, without
+     * reading the recipe.
+     *
+     * @param recipeName recipe name to be checked
+     * @param fields     comma separated recipe fields requested, null or empty for all of them.
+     * @return strong entity tag of the requested representation, RecipeNotFoundException when there is no such recipe
+     */
+    public Mono<String> getRecipeETag(String recipeName, String fields) {
+        return Mono.defer(() -> mongoTemplate.findOne(RecipeQueries.versionOnly(RecipeQueries.byName(recipeName)), RecipeEntity.class))
+                .map(entity -> RecipeUtil.eTag(RecipeUtil.maoToRecipe(entity), RecipeQueries.resolveFields(fields)))
+                .switchIfEmpty(Mono.error(() -> new RecipeNotFoundException("Recipe Not available")));
+    }
+
+    /**
+     * Return the entity tag of the given recipe, as returned by {@link #getRecipe(String, String)}.
+     */
+    public String eTag(Recipe recipe, String fields) {
+        return RecipeUtil.eTag(recipe, RecipeQueries.resolveFields(fields));
+    }
+
+    /**
+     * Return the entity tag of the given page, as returned by {@link #getRecipesWithFilter(Map, String, Integer, String)}.
+     */
+    public String eTag(RecipePage page, String fields) {
+        return RecipeUtil.eTag(page.recipes(), page.next(), RecipeQueries.resolveFields(fields));
+    }
+
+    /**
+     * Retrieves one page of the recipes matching the criteria filter, ordered by id.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param cursor    continuation token returned with the previous page, null for the first page.
+     * @param limit     requested page size, null for the default size.
+     * @param fields    comma separated recipe fields to return, null or empty for all of them.
+     * @return page of recipes matching the criteria
+     */
+    public Mono<RecipePage> getRecipesWithFilter(Map<String, String> filterMap, String cursor, Integer limit, String fields) {
+        return Mono.defer(() -> {
+            int pageSize = RecipeQueries.resolvePageSize(properties, limit);
+            Query query = RecipeQueries.project(filterQueryCompiler.compile(filterMap), RecipeQueries.resolveFields(fields));
+            if (FilterQueryCompiler.isTextSearch(query)) {
+                if (Objects.nonNull(cursor)) {
+                    return Mono.error(new InvalidRequestException("Cursor is not supported with text search"));
+                }
+                return mongoTemplate.find(query.limit(pageSize), RecipeEntity.class).map(RecipeUtil::maoToRecipe)
+                        .collectList().map(recipes -> new RecipePage(recipes, null));
+            }
+            if (Objects.nonNull(cursor)) {
+                query.addCriteria(Criteria.where("_id").gt(RecipeUtil.decodeCursor(cursor)));
+            }
+            return mongoTemplate.find(RecipeQueries.pageQuery(query, pageSize), RecipeEntity.class)
+                    .collectList().map(savedRecipes -> RecipeQueries.toPage(savedRecipes, pageSize));
+        });
+    }
+
+    /**
+     * Streams the recipes matching the criteria filter from a mongo cursor. The cursor is read as the
+     * subscriber requests recipes, one cursor batch at a time, so a slow subscriber holds back the cursor.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param fields    comma separated recipe fields to return, null or empty for all of them.
+     * @return the recipes in cursor order
+     */
+    public Flux<Recipe> streamRecipesWithFilter(Map<String, String> filterMap, String fields) {
+        int batchSize = properties.getStreaming().getBatchSize();
+        return Flux.defer(() -> mongoTemplate.find(
+                        RecipeQueries.project(filterQueryCompiler.compile(filterMap), RecipeQueries.resolveFields(fields))
+                                .cursorBatchSize(batchSize), RecipeEntity.class))
+                .limitRate(batchSize)
+                .map(RecipeUtil::maoToRecipe);
+    }
+
+    /**
+     * Counts the recipes matching the criteria filter by vegetarian flag, by servings and for the most used
+     * ingredients, with a single $facet aggregation.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param top       number of top ingredients, null for the default.
+     * @return facet counts of the matching recipes
+     */
+    public Mono<RecipeFacets> getRecipeFacets(Map<String, String> filterMap, Integer top) {
+        return Mono.defer(() -> {
+            int topIngredients = RecipeQueries.resolveTopIngredients(properties, top);
+            Document filter = filterQueryCompiler.compile(filterMap).getQueryObject();
+            return mongoTemplate.aggregate(RecipeQueries.facetAggregation(filter, topIngredients),
+                    mongoTemplate.getCollectionName(RecipeEntity.class), Document.class).next();
+        }).map(RecipeQueries::toFacets).defaultIfEmpty(RecipeQueries.toFacets(null));
+    }
+
+    /**
+     * Update the recipe with passed name with the non empty values of the received recipe, atomically and in
+     * a single round trip.
+     *
+     * @param recipeName     Name of the recipe being updated
+     * @param receivedRecipe recipeObject containing values to be updated
+     * @return updated recipe object
+     */
+    public Mono<Recipe> updateRecipe(String recipeName, Recipe receivedRecipe) {
+        Update update = RecipeQueries.createUpdate(receivedRecipe);
+        if (update.getUpdateObject().isEmpty()) {
+            return getRecipe(recipeName, null);
+        }
+        return mongoTemplate.findAndModify(RecipeQueries.byName(recipeName), update,
+                        FindAndModifyOptions.options().returnNew(true), RecipeEntity.class)
+                .onErrorMap(DuplicateKeyException.class, ex -> new RecipeAlreadyExistException("Recipe Already Exist"))
+                .map(RecipeUtil::maoToRecipe)
+                .switchIfEmpty(Mono.error(() -> new RecipeNotFoundException("Recipe Not available")));
+    }
+
+    /**
+     * Update the recipe with passed name only if it is still at a version listed by the If-Match header, as a
+     * compare-and-set in a single round trip.
+     *
+     * @param recipeName     Name of the recipe being updated
+     * @param receivedRecipe recipeObject containing values to be updated
+     * @param ifMatch        entity tags of the versions the update applies to, or *
+     * @return updated recipe object, PreconditionFailedException when the recipe is at another version
+     */
+    public Mono<Recipe> updateRecipe(String recipeName, Recipe receivedRecipe, String ifMatch) {
+        Update update = RecipeQueries.createUpdate(receivedRecipe);
+        if (update.getUpdateObject().isEmpty()) {
+            return getRecipe(recipeName, null).flatMap(recipe -> RecipeUtil.matchesIfMatch(ifMatch, RecipeUtil.eTag(recipe, List.of()))
+                    ? Mono.just(recipe) : Mono.error(new PreconditionFailedException("Recipe Modified")));
+        }
+        return Mono.defer(() -> mongoTemplate.findAndModify(RecipeQueries.ifMatch(RecipeQueries.byName(recipeName), ifMatch), update,
+                        FindAndModifyOptions.options().returnNew(true), RecipeEntity.class))
+                .onErrorMap(DuplicateKeyException.class, ex -> new RecipeAlreadyExistException("Recipe Already Exist"))
+                .map(RecipeUtil::maoToRecipe)
+                // only a failed update reads again, to tell a missing recipe from a modified one
+                .switchIfEmpty(Mono.defer(() -> mongoTemplate.exists(RecipeQueries.byName(recipeName), RecipeEntity.class))
+                        .flatMap(exists -> Mono.error(exists
+                                ? new PreconditionFailedException("Recipe Modified") : new RecipeNotFoundException("Recipe Not available"))));
+    }
+
+    /**
+     * Updates all the recipes matching the criteria filter with the non empty values of the received recipe.
+     *
+     * @param filterMap      map of key value containing filter criteria, can not be empty.
+     * @param receivedRecipe recipeObject containing values to be updated, the name can not be updated in bulk
+     * @return number of recipes updated
+     */
+    public Mono<Long> updateRecipesWithFilter(Map<String, String> filterMap, Recipe receivedRecipe) {
+        return Mono.defer(() -> mongoTemplate.updateMulti(filterQueryCompiler.compile(filterMap),
+                        RecipeQueries.createBulkUpdate(filterMap, receivedRecipe), RecipeEntity.class))
+                .map(result -> result.getModifiedCount());
+    }
+
+    /**
+     * Deletes recipe from the database with a single delete on the unique recipe name.
+     *
+     * @param recipeName recipe name to be deleted.
+     * @return empty, RecipeNotFoundException when there is no such recipe
+     */
+    public Mono<Void> deleteRecipe(String recipeName) {
+        return mongoTemplate.remove(RecipeQueries.byName(recipeName), RecipeEntity.class)
+                .flatMap(result -> result.getDeletedCount() > 0
+                        ? Mono.<Void>empty() : Mono.error(new RecipeNotFoundException("Recipe Not available")));
+    }
+
+    /**
+     * Deletes all the recipes matching the criteria filter with a single delete on the server.
+     *
+     * @param filterMap map of key value containing filter criteria, can not be empty.
+     * @return number of recipes deleted
+     */
+    public Mono<Long> deleteRecipesWithFilter(Map<String, String> filterMap) {
+        return Mono.defer(() -> {
+            RecipeQueries.requireFilter(filterMap);
+            return mongoTemplate.remove(filterQueryCompiler.compile(filterMap), RecipeEntity.class);
+        }).map(result -> result.getDeletedCount());
+    }
+}
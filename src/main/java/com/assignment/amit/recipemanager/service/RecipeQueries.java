@@ -0,0 +1,270 @@
+package com.assignment.amit.recipemanager.service;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.SetOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Queries, updates and request validations shared by the blocking and the reactive recipe services, so both
+ * give the same answer to the same request.
+ */
+final class RecipeQueries {
+    static final String FIELDS_PARAM = "fields";
+    static final String VERSION = "version";
+    private static final Pattern RECIPE_ETAG = Pattern.compile("\"([0-9a-f]{24})-(\\d{1,18})\"");
+    private static final Set<String> RECIPE_FIELDS = Stream.of(Recipe.class.getRecordComponents())
+            .filter(component -> !component.getAccessor().isAnnotationPresent(JsonIgnore.class))
+            .map(RecordComponent::getName).collect(Collectors.toUnmodifiableSet());
+
+    private RecipeQueries() {
+    }
+
+    /**
+     * Creates the query matching exactly the recipe with the given name.
+     */
+    static Query byName(String recipeName) {
+        return Query.query(Criteria.where("recipeName").is(recipeName));
+    }
+
+    /**
+     * Restricts the query to the versions of the recipe listed by the If-Match header, so the update is a
+     * compare-and-set. Only the tags of whole recipes are compared, as the tags of projections and weak tags do
+     * not tell the recipe is unchanged.
+     *
+     * @throws PreconditionFailedException when the header lists no tag of a whole recipe
+     */
+    static Query ifMatch(Query query, String ifMatch) {
+        List<Criteria> versions = new ArrayList<>();
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return query;
+            }
+            Matcher matcher = RECIPE_ETAG.matcher(tag);
+            if (matcher.matches()) {
+                long version = Long.parseLong(matcher.group(2));
+                Criteria criteria = Criteria.where("_id").is(matcher.group(1));
+                // documents written before the version was added have none, their tag has version 0
+                versions.add(version == 0 ? criteria.and(VERSION).in(Arrays.asList(0L, null)) : criteria.and(VERSION).is(version));
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new PreconditionFailedException("Recipe Modified");
+        }
+        return query.addCriteria(versions.size() == 1 ? versions.get(0) : new Criteria().orOperator(versions));
+    }
+
+    /**
+     * Creates the $set of the non empty values of the received recipe, with the increment of the version when
+     * there is a value to set.
+     */
+    static Update createUpdate(Recipe received) {
+        Update update = new Update();
+        if (isNotNullOrNotEmpty(received.recipeName())) {
+            update.set("recipeName", received.recipeName());
+        }
+        if (Objects.nonNull(received.servings()) && received.servings() > 0) {
+            update.set("servings", received.servings());
+        }
+        if (isNotNullOrNotEmpty(received.isVegetarian())) {
+            update.set("isVegetarian", received.isVegetarian());
+        }
+        if (isNotNullOrNotEmpty(received.instructions())) {
+            update.set("instructions", received.instructions());
+        }
+        if (Objects.nonNull(received.ingredients())) {
+            update.set("ingredients", RecipeUtil.mapToIngredientsEntity(received.ingredients()));
+        }
+        if (!update.getUpdateObject().isEmpty()) {
+            update.inc(VERSION, 1);
+        }
+        return update;
+    }
+
+    /**
+     * Validates a bulk update, which needs a filter and a value to set and can not rename the recipes.
+     */
+    static Update createBulkUpdate(Map<String, String> filterMap, Recipe receivedRecipe) {
+        requireFilter(filterMap);
+        if (isNotNullOrNotEmpty(receivedRecipe.recipeName())) {
+            throw new InvalidRequestException("recipeName can not be updated for multiple recipes");
+        }
+        Update update = createUpdate(receivedRecipe);
+        if (update.getUpdateObject().isEmpty()) {
+            throw new InvalidRequestException("No value to update");
+        }
+        return update;
+    }
+
+    static void requireFilter(Map<String, String> filterMap) {
+        if (filterMap.isEmpty()) {
+            throw new InvalidRequestException("Filter is required");
+        }
+    }
+
+    static boolean isNotNullOrNotEmpty(String value) {
+        return (Objects.nonNull(value) && !value.isBlank());
+    }
+
+    /**
+     * Parses the fields parameter into the sorted recipe fields to read, empty for all of them.
+     */
+    static List<String> resolveFields(String fields) {
+        if (Objects.isNull(fields) || fields.isBlank()) {
+            return List.of();
+        }
+        List<String> projection = Stream.of(fields.split(",")).map(String::trim).filter(field -> !field.isEmpty())
+                .distinct().sorted().toList();
+        projection.stream().filter(field -> !RECIPE_FIELDS.contains(field)).findFirst().ifPresent(field -> {
+            throw new InvalidRequestException("Unknown field " + field);
+        });
+        return projection;
+    }
+
+    /**
+     * Restricts the query to the given fields, the id is always read for the cursor and the version for the
+     * entity tag.
+     */
+    static Query project(Query query, List<String> projection) {
+        if (!projection.isEmpty()) {
+            query.fields().include(projection.toArray(new String[0])).include(VERSION);
+        }
+        return query;
+    }
+
+    /**
+     * Restricts the query to the id and version, all the entity tag needs.
+     */
+    static Query versionOnly(Query query) {
+        query.fields().include(VERSION);
+        return query;
+    }
+
+    static int resolvePageSize(RecipeProperties properties, Integer limit) {
+        RecipeProperties.Pagination pagination = properties.getPagination();
+        if (Objects.isNull(limit)) {
+            return pagination.getDefaultPageSize();
+        }
+        if (limit <= 0) {
+            throw new InvalidRequestException("Limit must be greater than 0");
+        }
+        return Math.min(limit, pagination.getMaxPageSize());
+    }
+
+    static int resolveTopIngredients(RecipeProperties properties, Integer top) {
+        RecipeProperties.Facets facets = properties.getFacets();
+        if (Objects.isNull(top)) {
+            return facets.getDefaultTopIngredients();
+        }
+        if (top <= 0) {
+            throw new InvalidRequestException("Top must be greater than 0");
+        }
+        return Math.min(top, facets.getMaxTopIngredients());
+    }
+
+    /**
+     * Orders the query by id and reads one extra document, which tells whether there is a next page without
+     * a separate count.
+     */
+    static Query pageQuery(Query query, int pageSize) {
+        return query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageSize + 1);
+    }
+
+    /**
+     * Creates the page of the recipes read by a {@link #pageQuery(Query, int)}.
+     */
+    static RecipePage toPage(List<RecipeEntity> savedRecipes, int pageSize) {
+        String next = null;
+        if (savedRecipes.size() > pageSize) {
+            savedRecipes = savedRecipes.subList(0, pageSize);
+            next = RecipeUtil.encodeCursor(savedRecipes.get(pageSize - 1).getId());
+        }
+        return new RecipePage(savedRecipes.stream().map(RecipeUtil::maoToRecipe).toList(), next);
+    }
+
+    /**
+     * Creates the page of recipes read in id order, up to one more than the page size, with only the requested
+     * fields.
+     */
+    static RecipePage toPage(List<Recipe> recipes, int pageSize, List<String> projection) {
+        String next = null;
+        if (recipes.size() > pageSize) {
+            recipes = recipes.subList(0, pageSize);
+            next = RecipeUtil.encodeCursor(recipes.get(pageSize - 1).id());
+        }
+        return new RecipePage(projection.isEmpty() ? recipes : recipes.stream().map(recipe -> RecipeUtil.project(recipe, projection)).toList(), next);
+    }
+
+    /**
+     * Creates the $facet aggregation counting the recipes matching the filter by vegetarian flag, by servings
+     * and for the most used ingredients.
+     */
+    static Aggregation facetAggregation(Document filter, int topIngredients) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (!filter.isEmpty()) {
+            stages.add(context -> new Document("$match", filter));
+        }
+        // every ingredient counts once per recipe, whatever the number of times it is listed
+        stages.add(Aggregation.project("isVegetarian", "servings")
+                .and(SetOperators.arrayAsSet("ingredients.name").union("ingredients.name")).as("ingredientNames"));
+        stages.add(Aggregation.facet(Aggregation.count().as("count")).as("total")
+                .and(Aggregation.group("isVegetarian").count().as("count")).as("isVegetarian")
+                .and(Aggregation.group("servings").count().as("count"),
+                        Aggregation.sort(Sort.Direction.ASC, "_id")).as("servings")
+                .and(Aggregation.unwind("ingredientNames"),
+                        Aggregation.group("ingredientNames").count().as("count"),
+                        Aggregation.sort(Sort.by(Sort.Direction.DESC, "count").and(Sort.by(Sort.Direction.ASC, "_id"))),
+                        Aggregation.limit(topIngredients)).as("topIngredients"));
+        return Aggregation.newAggregation(stages);
+    }
+
+    /**
+     * Maps the result of the {@link #facetAggregation(Document, int)}, null when no recipe matched.
+     */
+    static RecipeFacets toFacets(Document facets) {
+        if (Objects.isNull(facets)) {
+            return new RecipeFacets(0, Map.of(), Map.of(), List.of());
+        }
+        long total = facets.getList("total", Document.class).stream().findFirst().map(RecipeQueries::countOf).orElse(0L);
+        Map<String, Long> isVegetarian = new TreeMap<>();
+        Map<Integer, Long> servings = new TreeMap<>();
+        facets.getList("isVegetarian", Document.class).stream().filter(bucket -> Objects.nonNull(bucket.get("_id")))
+                .forEach(bucket -> isVegetarian.put(String.valueOf(bucket.get("_id")), countOf(bucket)));
+        facets.getList("servings", Document.class).stream().filter(bucket -> bucket.get("_id") instanceof Number)
+                .forEach(bucket -> servings.put(((Number) bucket.get("_id")).intValue(), countOf(bucket)));
+        List<RecipeFacets.IngredientCount> ingredients = facets.getList("topIngredients", Document.class).stream()
+                .map(bucket -> new RecipeFacets.IngredientCount(bucket.getString("_id"), countOf(bucket))).toList();
+        return new RecipeFacets(total, isVegetarian, servings, ingredients);
+    }
+
+    private static long countOf(Document bucket) {
+        return ((Number) bucket.get("count")).longValue();
+    }
+}
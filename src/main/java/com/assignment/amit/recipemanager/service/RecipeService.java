@@ -1,28 +1,67 @@
 package com.assignment.amit.recipemanager.service;
 
-import com.assignment.amit.recipemanager.entity.IngredientEntity;
+import com.assignment.amit.recipemanager.cache.RecipeCache;
+import com.assignment.amit.recipemanager.cache.RecipeQueryCache;
+import com.assignment.amit.recipemanager.config.RecipeProperties;
 import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
 import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
 import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.index.IngredientIndex;
+import com.assignment.amit.recipemanager.index.QueryAdvisor;
+import com.assignment.amit.recipemanager.index.RecipeReplica;
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import com.assignment.amit.recipemanager.metrics.RecipeMetrics;
 import com.assignment.amit.recipemanager.util.RecipeUtil;
 import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.assignment.amit.recipemanager.query.FilterCondition;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 
 import lombok.RequiredArgsConstructor;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Slf4j
 public class RecipeService {
     private final MongoTemplate mongoTemplate;
+    private final RecipeProperties properties;
+    private final RecipeCache recipeCache;
+    private final RecipeQueryCache recipeQueryCache;
+    private final IngredientIndex ingredientIndex;
+    private final QueryAdvisor queryAdvisor;
+    private final FilterQueryCompiler filterQueryCompiler;
+    private final RecipeMetrics recipeMetrics;
+    private final SlowRequestTracer slowRequestTracer;
+    private final RecipeReplica recipeReplica;
 
     /**
      * Adds recipe to the Database
@@ -31,32 +70,192 @@ public class RecipeService {
      * @return
      */
     public Recipe addRecipe(Recipe recipe) {
+        return recipeMetrics.time("addRecipe", () -> insertRecipe(recipe));
+    }
+
+    private Recipe insertRecipe(Recipe recipe) {
         RecipeEntity entity = RecipeUtil.mapToRecipeEntity(recipe);
         try {
-            return RecipeUtil.maoToRecipe(mongoTemplate.save(entity));
+            RecipeEntity savedEntity = mongoTemplate.save(entity);
+            ingredientIndex.put(savedEntity);
+            recipeReplica.put(savedEntity);
+            return RecipeUtil.maoToRecipe(savedEntity);
         } catch (DuplicateKeyException ex) {
             throw new RecipeAlreadyExistException("Recipe Already Exist");
+        } finally {
+            recipeCache.invalidate(recipe.recipeName());
+            recipeQueryCache.bumpVersion();
         }
 
     }
 
+    /**
+     * Adds the recipes to the database with unordered bulk writes of the configured chunk size.
+     * A failing recipe does not stop the others, duplicates are reported per recipe instead of failing the batch.
+     *
+     * @param recipes recipes to be stored
+     * @return result for each recipe, in the order of the request
+     */
+    public List<RecipeBatchResult> addRecipes(List<Recipe> recipes) {
+        return recipeMetrics.time("addRecipes", () -> insertRecipes(recipes));
+    }
+
+    private List<RecipeBatchResult> insertRecipes(List<Recipe> recipes) {
+        RecipeProperties.Batch batch = properties.getBatch();
+        if (recipes.size() > batch.getMaxSize()) {
+            throw new InvalidRequestException("Batch can not have more than " + batch.getMaxSize() + " recipes");
+        }
+        List<RecipeBatchResult> results = new ArrayList<>(recipes.size());
+        try {
+            for (int from = 0; from < recipes.size(); from += batch.getChunkSize()) {
+                results.addAll(addRecipeChunk(recipes.subList(from, Math.min(from + batch.getChunkSize(), recipes.size()))));
+            }
+        } finally {
+            recipeQueryCache.bumpVersion();
+        }
+        return results;
+    }
+
+    private List<RecipeBatchResult> addRecipeChunk(List<Recipe> chunk) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RecipeEntity.class);
+        // ids are assigned here so the created recipes can be indexed without reading them back
+        List<RecipeEntity> entities = chunk.stream().map(RecipeUtil::mapToRecipeEntity).toList();
+        entities.forEach(entity -> {
+            entity.setId(new ObjectId().toHexString());
+            // bulk inserts do not initialize the version as save does
+            entity.setVersion(0L);
+        });
+        bulkOperations.insert(entities);
+        Map<Integer, BulkWriteError> errors = Map.of();
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException ex) {
+            errors = ex.getErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+        }
+        List<RecipeBatchResult> results = new ArrayList<>(chunk.size());
+        for (int index = 0; index < chunk.size(); index++) {
+            BulkWriteError error = errors.get(index);
+            RecipeBatchResult.Status status = RecipeBatchResult.Status.CREATED;
+            if (Objects.nonNull(error)) {
+                status = ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                        ? RecipeBatchResult.Status.DUPLICATE : RecipeBatchResult.Status.FAILED;
+                log.debug("Recipe {} not created, error={}", chunk.get(index).recipeName(), error.getMessage());
+            } else {
+                ingredientIndex.put(entities.get(index));
+                recipeReplica.put(entities.get(index));
+            }
+            recipeCache.invalidate(chunk.get(index).recipeName());
+            results.add(new RecipeBatchResult(chunk.get(index).recipeName(), status));
+        }
+        return results;
+    }
+
     /**
      * Return all recipes from the database
      *
      * @return
      */
     public List<Recipe> getAllRecipes() {
-        return mongoTemplate.findAll(RecipeEntity.class).stream().map(RecipeUtil::maoToRecipe).toList();
+        return recipeMetrics.time("getAllRecipes",
+                () -> mongoTemplate.findAll(RecipeEntity.class).stream().map(RecipeUtil::maoToRecipe).toList());
     }
 
     /**
-     * Return recipe for given recipe name from the database
+     * Return recipe for given recipe name, from the local replica when it is current, else from the recipe cache
+     * or from the database
      *
      * @param recipeName recipe name to be retrieved
      * @return Recipe Object
      */
     public Recipe getRecipe(String recipeName) {
-        RecipeEntity recipeEntityReturned = mongoTemplate.findOne(createMongoQuery(Map.of("recipeName", recipeName)), RecipeEntity.class);
+        return recipeMetrics.time("getRecipe", () -> recipeReplica.isCurrent()
+                ? findReplicatedRecipe(recipeName, List.of()) : findRecipe(recipeName));
+    }
+
+    /**
+     * Return the requested fields of the recipe for given recipe name. A replicated or cached recipe is projected
+     * in memory, otherwise only the requested fields are read from the database and the recipe is not cached.
+     *
+     * @param recipeName recipe name to be retrieved
+     * @param fields     comma separated recipe fields to return, null or empty for all of them.
+     * @return Recipe Object with the other fields null
+     */
+    public Recipe getRecipe(String recipeName, String fields) {
+        List<String> projection = RecipeQueries.resolveFields(fields);
+        return recipeMetrics.time("getRecipe", () -> recipeReplica.isCurrent()
+                ? findReplicatedRecipe(recipeName, projection) : findRecipe(recipeName, projection));
+    }
+
+    /**
+     * Return the entity tag of the recipe for given recipe name without reading the recipe, from the local replica
+     * or the recipe cache, or else from a query of the version alone, so a conditional request is answered on the
+     * cheapest path.
+     *
+     * @param recipeName recipe name to be checked
+     * @param fields     comma separated recipe fields requested, null or empty for all of them.
+     * @return strong entity tag of the requested representation
+     */
+    public String getRecipeETag(String recipeName, String fields) {
+        List<String> projection = RecipeQueries.resolveFields(fields);
+        return recipeMetrics.time("getRecipeETag", () -> RecipeUtil.eTag(recipeReplica.isCurrent()
+                ? findReplicatedRecipe(recipeName, List.of()) : findVersion(recipeName), projection));
+    }
+
+    /**
+     * Return the entity tag of the given recipe, as returned by {@link #getRecipe(String, String)}.
+     */
+    public String eTag(Recipe recipe, String fields) {
+        return RecipeUtil.eTag(recipe, RecipeQueries.resolveFields(fields));
+    }
+
+    /**
+     * Return the entity tag of the given page, as returned by {@link #getRecipesWithFilter(Map, String, Integer, String)}.
+     */
+    public String eTag(RecipePage page, String fields) {
+        return RecipeUtil.eTag(page.recipes(), page.next(), RecipeQueries.resolveFields(fields));
+    }
+
+    private Recipe findRecipe(String recipeName) {
+        return recipeCache.get(recipeName, this::loadRecipe);
+    }
+
+    private Recipe findReplicatedRecipe(String recipeName, List<String> projection) {
+        Recipe recipe = recipeReplica.get(recipeName);
+        if (Objects.isNull(recipe)) {
+            throw new RecipeNotFoundException("Recipe Not available");
+        }
+        return projection.isEmpty() ? recipe : RecipeUtil.project(recipe, projection);
+    }
+
+    private Recipe findVersion(String recipeName) {
+        Recipe cachedRecipe = recipeCache.getIfPresent(recipeName);
+        if (Objects.nonNull(cachedRecipe)) {
+            return cachedRecipe;
+        }
+        RecipeEntity recipeEntityReturned = mongoTemplate.findOne(RecipeQueries.versionOnly(RecipeQueries.byName(recipeName)), RecipeEntity.class);
+        if (Objects.isNull(recipeEntityReturned)) {
+            throw new RecipeNotFoundException("Recipe Not available");
+        }
+        return RecipeUtil.maoToRecipe(recipeEntityReturned);
+    }
+
+    private Recipe findRecipe(String recipeName, List<String> projection) {
+        if (projection.isEmpty()) {
+            return findRecipe(recipeName);
+        }
+        Recipe cachedRecipe = recipeCache.getIfPresent(recipeName);
+        if (Objects.nonNull(cachedRecipe)) {
+            return RecipeUtil.project(cachedRecipe, projection);
+        }
+        RecipeEntity recipeEntityReturned = mongoTemplate.findOne(RecipeQueries.project(RecipeQueries.byName(recipeName), projection), RecipeEntity.class);
+        if (Objects.isNull(recipeEntityReturned)) {
+            throw new RecipeNotFoundException("Recipe Not available");
+        }
+        return RecipeUtil.maoToRecipe(recipeEntityReturned);
+    }
+
+    private Recipe loadRecipe(String recipeName) {
+        RecipeEntity recipeEntityReturned = mongoTemplate.findOne(RecipeQueries.byName(recipeName), RecipeEntity.class);
         if (Objects.isNull(recipeEntityReturned)) {
             throw new RecipeNotFoundException("Recipe Not available");
         }
@@ -64,103 +263,396 @@ public class RecipeService {
     }
 
     /**
-     * Deletes recipe from the database.
+     * Deletes recipe from the database with a single delete on the unique recipe name, the deleted count
+     * tells whether the recipe existed.
      *
      * @param recipeName recipe name to be deleted.
      */
     public void deleteRecipe(String recipeName) {
-        RecipeEntity recipeEntityReturned = mongoTemplate.findOne(createMongoQuery(Map.of("recipeName", recipeName)), RecipeEntity.class);
-        if (Objects.isNull(recipeEntityReturned)) {
+        recipeMetrics.time("deleteRecipe", () -> removeRecipe(recipeName));
+    }
+
+    private void removeRecipe(String recipeName) {
+        long deleted = mongoTemplate.remove(RecipeQueries.byName(recipeName), RecipeEntity.class).getDeletedCount();
+        recipeCache.invalidate(recipeName);
+        recipeQueryCache.bumpVersion();
+        if (deleted > 0) {
+            ingredientIndex.remove(recipeName);
+            recipeReplica.remove(recipeName);
+        }
+        if (deleted == 0) {
             throw new RecipeNotFoundException("Recipe Not available");
         }
-        mongoTemplate.remove(recipeEntityReturned);
-        mongoTemplate.remove(recipeEntityReturned);
         log.debug("Recipe with id={} deleted", recipeName);
     }
 
     /**
-     * Retrieves the recipes based on the criteria filter passed in.
+     * Deletes all the recipes matching the criteria filter with a single delete on the server.
+     *
+     * @param filterMap map of key value containing filter criteria, can not be empty.
+     * @return number of recipes deleted
+     */
+    public long deleteRecipesWithFilter(Map<String, String> filterMap) {
+        return recipeMetrics.time("deleteRecipesWithFilter", () -> removeRecipes(filterMap));
+    }
+
+    private long removeRecipes(Map<String, String> filterMap) {
+        RecipeQueries.requireFilter(filterMap);
+        long deleted = mongoTemplate.remove(filterQueryCompiler.compile(filterMap), RecipeEntity.class).getDeletedCount();
+        recipeCache.invalidateAll();
+        recipeQueryCache.bumpVersion();
+        ingredientIndex.reload();
+        recipeReplica.invalidate();
+        log.debug("{} recipes deleted", deleted);
+        return deleted;
+    }
+
+    /**
+     * Updates all the recipes matching the criteria filter with the non empty values of the received recipe,
+     * with a single update on the server.
+     *
+     * @param filterMap      map of key value containing filter criteria, can not be empty.
+     * @param receivedRecipe recipeObject containing values to be updated, the name can not be updated in bulk
+     * @return number of recipes updated
+     */
+    public long updateRecipesWithFilter(Map<String, String> filterMap, Recipe receivedRecipe) {
+        return recipeMetrics.time("updateRecipesWithFilter", () -> modifyRecipes(filterMap, receivedRecipe));
+    }
+
+    private long modifyRecipes(Map<String, String> filterMap, Recipe receivedRecipe) {
+        Update update = RecipeQueries.createBulkUpdate(filterMap, receivedRecipe);
+        long updated = mongoTemplate.updateMulti(filterQueryCompiler.compile(filterMap), update, RecipeEntity.class).getModifiedCount();
+        recipeCache.invalidateAll();
+        recipeQueryCache.bumpVersion();
+        if (Objects.nonNull(receivedRecipe.ingredients())) {
+            ingredientIndex.reload();
+        }
+        recipeReplica.invalidate();
+        log.debug("{} recipes updated", updated);
+        return updated;
+    }
+
+    /**
+     * Retrieves the recipes based on the criteria filter passed in, from the local replica when it is current and
+     * can evaluate the filter.
      *
      * @param filterMap map of key value containing filter criteria.
      * @return List of recipes matching the criteria
      */
     public List<Recipe> getAllRecipesWithFiler(Map<String, String> filterMap) {
-        List<RecipeEntity> saveRecipes = mongoTemplate.find(createMongoQuery(filterMap), RecipeEntity.class);
-        return saveRecipes.stream().map(RecipeUtil::maoToRecipe).toList();
+        return recipeMetrics.time("getAllRecipesWithFiler", () -> {
+            Optional<List<Recipe>> replicatedRecipes = findReplicatedRecipes(filterMap, null, Integer.MAX_VALUE);
+            if (replicatedRecipes.isPresent()) {
+                recipeMetrics.recordResultSize("getAllRecipesWithFiler", replicatedRecipes.get().size());
+                return replicatedRecipes.get();
+            }
+            List<RecipeEntity> saveRecipes = find(filterQueryCompiler.compile(filterMap));
+            recipeMetrics.recordResultSize("getAllRecipesWithFiler", saveRecipes.size());
+            return map(() -> saveRecipes.stream().map(RecipeUtil::maoToRecipe).toList());
+        });
+    }
+
+    /**
+     * Filters the recipes of the local replica in id order, starting after the cursor.
+     *
+     * @return the recipes, empty when the replica is not current or can not evaluate the filter
+     */
+    private Optional<List<Recipe>> findReplicatedRecipes(Map<String, String> filterMap, String cursor, int max) {
+        if (!recipeReplica.isCurrent()) {
+            return Optional.empty();
+        }
+        String afterId = Objects.nonNull(cursor) ? RecipeUtil.decodeCursor(cursor).toHexString() : null;
+        return filterQueryCompiler.predicate(filterMap).map(filter -> recipeReplica.find(filter, afterId, max));
     }
 
     /**
-     * Creates mongo criteria based on key value passed in.
+     * Retrieves one page of the recipes matching the criteria filter, ordered by id.
+     * Pages are fetched with a range scan on the _id index starting after the cursor, so every page costs the same.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param cursor    continuation token returned with the previous page, null for the first page.
+     * @param limit     requested page size, null for the default size.
+     * @return page of recipes matching the criteria
+     */
+    public RecipePage getRecipesWithFilter(Map<String, String> filterMap, String cursor, Integer limit) {
+        return getRecipesWithFilter(filterMap, cursor, limit, null);
+    }
+
+    /**
+     * Retrieves one page of the recipes matching the criteria filter, with only the requested fields read from
+     * the database.
+     *
+     * @param fields comma separated recipe fields to return, null or empty for all of them.
+     * @see #getRecipesWithFilter(Map, String, Integer)
      */
-    private Criteria getCriteria(String key, String value) {
-        if (value.matches("[0-9]")) {
-            return Criteria.where(key).is(Integer.parseInt(value));
+    public RecipePage getRecipesWithFilter(Map<String, String> filterMap, String cursor, Integer limit, String fields) {
+        int pageSize = RecipeQueries.resolvePageSize(properties, limit);
+        List<String> projection = RecipeQueries.resolveFields(fields);
+        List<String> normalizedFilter = new ArrayList<>(normalizeFilter(filterMap));
+        if (!projection.isEmpty()) {
+            normalizedFilter.add(RecipeQueries.FIELDS_PARAM + "=" + String.join(",", projection));
         }
-        return value.startsWith("!") ? Criteria.where(key).ne(value.replace("!", "")) : Criteria.where(key).is(value);
+        return recipeMetrics.time("getRecipesWithFilter", () -> {
+            // the replica is as fast as the query cache and more current, its pages are not cached
+            Optional<List<Recipe>> replicatedRecipes = findReplicatedRecipes(filterMap, cursor, pageSize + 1);
+            RecipePage page = replicatedRecipes.isPresent()
+                    ? RecipeQueries.toPage(replicatedRecipes.get(), pageSize, projection)
+                    : recipeQueryCache.get(normalizedFilter, cursor, pageSize, () -> findRecipesWithFilter(filterMap, cursor, pageSize, projection));
+            recipeMetrics.recordResultSize("getRecipesWithFilter", page.recipes().size());
+            return page;
+        });
+    }
+
+    private RecipePage findRecipesWithFilter(Map<String, String> filterMap, String cursor, int pageSize, List<String> projection) {
+        Query query = RecipeQueries.project(filterQueryCompiler.compile(filterMap), projection);
+        if (FilterQueryCompiler.isTextSearch(query)) {
+            return findRecipesByRelevance(query, cursor, pageSize);
+        }
+        Optional<RecipePage> indexedPage = findRecipesWithIngredientIndex(filterMap, cursor, pageSize, projection);
+        if (indexedPage.isPresent()) {
+            return indexedPage.get();
+        }
+        if (Objects.nonNull(cursor)) {
+            query.addCriteria(Criteria.where("_id").gt(RecipeUtil.decodeCursor(cursor)));
+        }
+        return findPage(query, pageSize);
     }
 
     /**
-     * Create mongo query with criteria passed in
+     * Answers the ingredient conditions of the filter from the ingredient index and fetches the matching recipes
+     * by id, so exclusions and alternatives do not scan the collection. The whole filter is still checked by the
+     * database on the candidate ids, recipes changed since the index was loaded are left out.
      *
-     * @param filterMap criteria filter map
-     * @return Mongo query
+     * @return the page, empty when the index can not answer the filter
      */
-    private Query createMongoQuery(Map<String, String> filterMap) {
-        final List<Criteria> criteriaList = filterMap.entrySet().stream().map(entry -> {
-            if (entry.getKey().equals("instructions")) {
-                return Criteria.where("instructions").regex(entry.getValue());
+    private Optional<RecipePage> findRecipesWithIngredientIndex(Map<String, String> filterMap, String cursor, int pageSize,
+                                                                List<String> projection) {
+        List<FilterCondition> ingredientConditions = new ArrayList<>();
+        Map<String, String> otherConditions = new HashMap<>();
+        filterMap.forEach((key, value) -> {
+            if (filterQueryCompiler.resolveField(key).equals(FilterQueryCompiler.INGREDIENT_NAME)) {
+                ingredientConditions.addAll(filterQueryCompiler.parse(key, value));
+            } else {
+                otherConditions.put(key, value);
             }
-            if (entry.getKey().contains("ingredient")) {
-                return getCriteria("ingredients.name", entry.getValue());
-            }
-            return getCriteria(entry.getKey(), entry.getValue());
-        }).toList();
-        if (criteriaList.isEmpty()) {
-            return new Query(new Criteria());
+        });
+        // conditions on the quantity apply to the same ingredient as the name, which the index does not know
+        boolean quantityFilter = otherConditions.keySet().stream()
+                .anyMatch(key -> filterQueryCompiler.resolveField(key).startsWith("ingredients."));
+        if (ingredientConditions.isEmpty() || quantityFilter) {
+            return Optional.empty();
+        }
+        ObjectId after = Objects.nonNull(cursor) ? RecipeUtil.decodeCursor(cursor) : null;
+        int maxCandidates = properties.getIngredientIndex().getMaxCandidates();
+        Optional<List<ObjectId>> matches = ingredientIndex.match(ingredientConditions, after,
+                otherConditions.isEmpty() ? pageSize + 1 : maxCandidates + 1);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+        List<ObjectId> ids = matches.get();
+        if (ids.size() > maxCandidates) {
+            return Optional.empty();
+        }
+        if (ids.isEmpty()) {
+            return Optional.of(new RecipePage(List.of(), null));
+        }
+        // the index is reloaded periodically, the database checks the whole filter again on the candidates
+        boolean more = otherConditions.isEmpty() && ids.size() > pageSize;
+        List<ObjectId> candidates = more ? ids.subList(0, pageSize) : ids;
+        Query query = RecipeQueries.project(filterQueryCompiler.compile(filterMap), projection).addCriteria(Criteria.where("_id").in(candidates));
+        RecipePage page = findPage(query, pageSize);
+        if (!more) {
+            return Optional.of(page);
         }
-        Criteria criteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
-        return new Query(criteria);
+        // the page ends with the last candidate even when the database dropped some, so paging does not stop early
+        return Optional.of(new RecipePage(page.recipes(), RecipeUtil.encodeCursor(candidates.get(pageSize - 1).toHexString())));
+    }
+
+    private RecipePage findPage(Query query, int pageSize) {
+        List<RecipeEntity> savedRecipes = find(RecipeQueries.pageQuery(query, pageSize));
+        return map(() -> RecipeQueries.toPage(savedRecipes, pageSize));
     }
 
     /**
-     * Update the recipe which match the criteria with passed name and update it with new values
+     * Text searches are ranked by relevance, which an id cursor can not page through, so they return the
+     * best matches only.
+     */
+    private RecipePage findRecipesByRelevance(Query query, String cursor, int pageSize) {
+        if (Objects.nonNull(cursor)) {
+            throw new InvalidRequestException("Cursor is not supported with text search");
+        }
+        List<RecipeEntity> savedRecipes = find(query.limit(pageSize));
+        return map(() -> new RecipePage(savedRecipes.stream().map(RecipeUtil::maoToRecipe).toList(), null));
+    }
+
+    /**
+     * Runs the filter query, recording its latency with the query advisor and the slow request tracer.
+     */
+    private List<RecipeEntity> find(Query query) {
+        long start = System.nanoTime();
+        List<RecipeEntity> savedRecipes = List.of();
+        try {
+            savedRecipes = mongoTemplate.find(query, RecipeEntity.class);
+            return savedRecipes;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            queryAdvisor.record(query, Duration.ofNanos(elapsed));
+            slowRequestTracer.recordQuery(query, elapsed, savedRecipes.size());
+        }
+    }
+
+    /**
+     * Maps the entities read by the request, recording the time spent with the slow request tracer.
+     */
+    private <T> T map(Supplier<T> mapping) {
+        long start = System.nanoTime();
+        try {
+            return mapping.get();
+        } finally {
+            slowRequestTracer.recordMapping(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Streams the recipes matching the criteria filter from a mongo cursor, handing each one to the consumer
+     * as soon as it is mapped. Only one cursor batch is held in memory whatever the size of the result.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param consumer  receives the recipes in cursor order, a slow consumer holds back the cursor.
+     */
+    public void streamRecipesWithFilter(Map<String, String> filterMap, Consumer<Recipe> consumer) {
+        streamRecipesWithFilter(filterMap, null, consumer);
+    }
+
+    /**
+     * Streams the requested fields of the recipes matching the criteria filter.
+     *
+     * @param fields comma separated recipe fields to return, null or empty for all of them.
+     * @see #streamRecipesWithFilter(Map, Consumer)
+     */
+    public void streamRecipesWithFilter(Map<String, String> filterMap, String fields, Consumer<Recipe> consumer) {
+        Query query = RecipeQueries.project(filterQueryCompiler.compile(filterMap), RecipeQueries.resolveFields(fields))
+                .cursorBatchSize(properties.getStreaming().getBatchSize());
+        recipeMetrics.time("streamRecipesWithFilter", () -> {
+            int[] streamed = new int[1];
+            try (Stream<RecipeEntity> savedRecipes = mongoTemplate.stream(query, RecipeEntity.class)) {
+                savedRecipes.map(RecipeUtil::maoToRecipe).forEach(recipe -> {
+                    streamed[0]++;
+                    consumer.accept(recipe);
+                });
+            } finally {
+                recipeMetrics.recordResultSize("streamRecipesWithFilter", streamed[0]);
+            }
+        });
+    }
+
+    /**
+     * Counts the recipes matching the criteria filter by vegetarian flag, by servings and for the most used
+     * ingredients, with a single $facet aggregation so only the counts leave the database.
+     *
+     * @param filterMap map of key value containing filter criteria.
+     * @param top       number of top ingredients, null for the default.
+     * @return facet counts of the matching recipes
+     */
+    public RecipeFacets getRecipeFacets(Map<String, String> filterMap, Integer top) {
+        int topIngredients = RecipeQueries.resolveTopIngredients(properties, top);
+        return recipeMetrics.time("getRecipeFacets", () -> {
+            Document filter = filterQueryCompiler.compile(filterMap).getQueryObject();
+            return RecipeQueries.toFacets(mongoTemplate.aggregate(RecipeQueries.facetAggregation(filter, topIngredients),
+                    mongoTemplate.getCollectionName(RecipeEntity.class), Document.class).getUniqueMappedResult());
+        });
+    }
+
+    /**
+     * Normalizes the filter map to the sorted list of field=value conditions, so maps with the keys in another
+     * order or using another ingredient alias give the same list.
+     */
+    private List<String> normalizeFilter(Map<String, String> filterMap) {
+        return filterMap.entrySet().stream()
+                .map(entry -> filterQueryCompiler.resolveField(entry.getKey()) + "=" + entry.getValue())
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Update the recipe which match the criteria with passed name and update it with new values.
+     * Only the non empty values are set, atomically and in a single round trip, so concurrent updates of
+     * different fields do not overwrite each other.
      *
      * @param recipeName     Name of the recipe being updated
      * @param receivedRecipe recipeObject containing values to be updated
      * @return updated recipe object
      */
     public Recipe updateRecipe(String recipeName, Recipe receivedRecipe) {
-        RecipeEntity savedEntity = mongoTemplate.findOne(createMongoQuery(Map.of("recipeName", recipeName)), RecipeEntity.class);
-        if (Objects.isNull(savedEntity)) {
+        return recipeMetrics.time("updateRecipe", () -> modifyRecipe(recipeName, receivedRecipe));
+    }
+
+    private Recipe modifyRecipe(String recipeName, Recipe receivedRecipe) {
+        Update update = RecipeQueries.createUpdate(receivedRecipe);
+        if (update.getUpdateObject().isEmpty()) {
+            return findRecipe(recipeName);
+        }
+        RecipeEntity updatedEntity = findAndModify(RecipeQueries.byName(recipeName), update, recipeName, receivedRecipe);
+        if (Objects.isNull(updatedEntity)) {
             throw new RecipeNotFoundException("Recipe Not available");
         }
-        updateRecipe(savedEntity, receivedRecipe);
-        return RecipeUtil.maoToRecipe(mongoTemplate.save(savedEntity));
+        return RecipeUtil.maoToRecipe(updatedEntity);
     }
 
     /**
-     * Helper method to updated exiting recipe with new values.
+     * Update the recipe with passed name only if it is still at a version listed by the If-Match header, as a
+     * compare-and-set in a single round trip. Concurrent editors do not overwrite each other, the ones editing a
+     * version already changed get a failed precondition and have to read the recipe again.
+     *
+     * @param recipeName     Name of the recipe being updated
+     * @param receivedRecipe recipeObject containing values to be updated
+     * @param ifMatch        entity tags of the versions the update applies to, or *
+     * @return updated recipe object
+     * @throws PreconditionFailedException when the recipe is at another version
      */
-    private void updateRecipe(RecipeEntity exiting, Recipe received) {
-        if (isNotNullOrNotEmpty(received.recipeName())) {
-            exiting.setRecipeName(received.recipeName());
-        }
-        if (received.servings() > 0) {
-            exiting.setServings(received.servings());
-        }
-        if (isNotNullOrNotEmpty(received.isVegetarian())) {
-            exiting.setIsVegetarian(received.isVegetarian());
-        }
-        if (isNotNullOrNotEmpty(received.instructions())) {
-            exiting.setInstructions(received.instructions());
+    public Recipe updateRecipe(String recipeName, Recipe receivedRecipe, String ifMatch) {
+        return recipeMetrics.time("updateRecipeIfMatch", () -> modifyRecipe(recipeName, receivedRecipe, ifMatch));
+    }
+
+    private Recipe modifyRecipe(String recipeName, Recipe receivedRecipe, String ifMatch) {
+        Update update = RecipeQueries.createUpdate(receivedRecipe);
+        if (update.getUpdateObject().isEmpty()) {
+            Recipe recipe = findRecipe(recipeName);
+            if (!RecipeUtil.matchesIfMatch(ifMatch, RecipeUtil.eTag(recipe, List.of()))) {
+                throw new PreconditionFailedException("Recipe Modified");
+            }
+            return recipe;
         }
-        if (Objects.nonNull(received.ingredients())) {
-            List<IngredientEntity> ingredientList = RecipeUtil.mapToIngredientsEntity(received.ingredients());
-            exiting.setIngredients(ingredientList);
+        Query query = RecipeQueries.ifMatch(RecipeQueries.byName(recipeName), ifMatch);
+        RecipeEntity updatedEntity = findAndModify(query, update, recipeName, receivedRecipe);
+        if (Objects.isNull(updatedEntity)) {
+            // only a failed update reads again, to tell a missing recipe from a modified one
+            if (mongoTemplate.exists(RecipeQueries.byName(recipeName), RecipeEntity.class)) {
+                throw new PreconditionFailedException("Recipe Modified");
+            }
+            throw new RecipeNotFoundException("Recipe Not available");
         }
+        return RecipeUtil.maoToRecipe(updatedEntity);
     }
 
-    private boolean isNotNullOrNotEmpty(String value) {
-        return (Objects.nonNull(value) && !value.isBlank());
+    private RecipeEntity findAndModify(Query query, Update update, String recipeName, Recipe receivedRecipe) {
+        RecipeEntity updatedEntity;
+        try {
+            updatedEntity = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), RecipeEntity.class);
+        } catch (DuplicateKeyException ex) {
+            throw new RecipeAlreadyExistException("Recipe Already Exist");
+        } finally {
+            recipeCache.invalidate(recipeName);
+            if (RecipeQueries.isNotNullOrNotEmpty(receivedRecipe.recipeName())) {
+                recipeCache.invalidate(receivedRecipe.recipeName());
+            }
+            recipeQueryCache.bumpVersion();
+        }
+        if (Objects.nonNull(updatedEntity)) {
+            ingredientIndex.put(updatedEntity);
+            recipeReplica.put(updatedEntity);
+        }
+        return updatedEntity;
     }
 }
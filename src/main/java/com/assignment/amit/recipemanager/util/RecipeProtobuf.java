@@ -0,0 +1,189 @@
+package com.assignment.amit.recipemanager.util;
+
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Protocol buffers encoding of the recipes, as described by proto/recipe.proto. The records are written and read
+ * field by field with the coded streams, without generated message classes to copy them into.
+ */
+public final class RecipeProtobuf {
+    private static final int RECIPES = 1;
+    private static final int RECIPE_NAME = 1;
+    private static final int INGREDIENTS = 2;
+    private static final int SERVINGS = 3;
+    private static final int INSTRUCTIONS = 4;
+    private static final int IS_VEGETARIAN = 5;
+    private static final int INGREDIENT_NAME = 1;
+    private static final int INGREDIENT_QUANTITY = 2;
+
+    private static final int RECIPES_TAG = RECIPES << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECIPE_NAME_TAG = RECIPE_NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int INGREDIENTS_TAG = INGREDIENTS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int SERVINGS_TAG = SERVINGS << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int INSTRUCTIONS_TAG = INSTRUCTIONS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int IS_VEGETARIAN_TAG = IS_VEGETARIAN << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int INGREDIENT_NAME_TAG = INGREDIENT_NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int INGREDIENT_QUANTITY_TAG = INGREDIENT_QUANTITY << 3 | WireFormat.WIRETYPE_VARINT;
+
+    private RecipeProtobuf() {
+    }
+
+    /**
+     * Writes the recipe as a Recipe message.
+     */
+    public static void writeRecipe(Recipe recipe, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeRecipe(recipe, output);
+        output.flush();
+    }
+
+    /**
+     * Writes the recipes as a RecipeList message.
+     */
+    public static void writeRecipes(List<Recipe> recipes, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        for (Recipe recipe : recipes) {
+            output.writeTag(RECIPES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(recipeSize(recipe));
+            writeRecipe(recipe, output);
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads a Recipe message, the fields it does not have are null.
+     */
+    public static Recipe readRecipe(InputStream in) throws IOException {
+        return readRecipe(CodedInputStream.newInstance(in));
+    }
+
+    /**
+     * Reads a RecipeList message.
+     */
+    public static List<Recipe> readRecipes(InputStream in) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(in);
+        List<Recipe> recipes = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == RECIPES_TAG) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                recipes.add(readRecipe(input));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return recipes;
+    }
+
+    private static void writeRecipe(Recipe recipe, CodedOutputStream output) throws IOException {
+        if (Objects.nonNull(recipe.recipeName())) {
+            output.writeString(RECIPE_NAME, recipe.recipeName());
+        }
+        if (Objects.nonNull(recipe.ingredients())) {
+            for (Ingredient ingredient : recipe.ingredients()) {
+                output.writeTag(INGREDIENTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(ingredientSize(ingredient));
+                if (Objects.nonNull(ingredient.name())) {
+                    output.writeString(INGREDIENT_NAME, ingredient.name());
+                }
+                if (ingredient.quantity() != 0) {
+                    output.writeInt32(INGREDIENT_QUANTITY, ingredient.quantity());
+                }
+            }
+        }
+        if (Objects.nonNull(recipe.servings())) {
+            output.writeInt32(SERVINGS, recipe.servings());
+        }
+        if (Objects.nonNull(recipe.instructions())) {
+            output.writeString(INSTRUCTIONS, recipe.instructions());
+        }
+        if (Objects.nonNull(recipe.isVegetarian())) {
+            output.writeString(IS_VEGETARIAN, recipe.isVegetarian());
+        }
+    }
+
+    private static int recipeSize(Recipe recipe) {
+        int size = 0;
+        if (Objects.nonNull(recipe.recipeName())) {
+            size += CodedOutputStream.computeStringSize(RECIPE_NAME, recipe.recipeName());
+        }
+        if (Objects.nonNull(recipe.ingredients())) {
+            for (Ingredient ingredient : recipe.ingredients()) {
+                int ingredientSize = ingredientSize(ingredient);
+                size += CodedOutputStream.computeTagSize(INGREDIENTS) + CodedOutputStream.computeUInt32SizeNoTag(ingredientSize)
+                        + ingredientSize;
+            }
+        }
+        if (Objects.nonNull(recipe.servings())) {
+            size += CodedOutputStream.computeInt32Size(SERVINGS, recipe.servings());
+        }
+        if (Objects.nonNull(recipe.instructions())) {
+            size += CodedOutputStream.computeStringSize(INSTRUCTIONS, recipe.instructions());
+        }
+        if (Objects.nonNull(recipe.isVegetarian())) {
+            size += CodedOutputStream.computeStringSize(IS_VEGETARIAN, recipe.isVegetarian());
+        }
+        return size;
+    }
+
+    private static int ingredientSize(Ingredient ingredient) {
+        int size = 0;
+        if (Objects.nonNull(ingredient.name())) {
+            size += CodedOutputStream.computeStringSize(INGREDIENT_NAME, ingredient.name());
+        }
+        if (ingredient.quantity() != 0) {
+            size += CodedOutputStream.computeInt32Size(INGREDIENT_QUANTITY, ingredient.quantity());
+        }
+        return size;
+    }
+
+    private static Recipe readRecipe(CodedInputStream input) throws IOException {
+        String recipeName = null;
+        List<Ingredient> ingredients = null;
+        Integer servings = null;
+        String instructions = null;
+        String isVegetarian = null;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case RECIPE_NAME_TAG -> recipeName = input.readStringRequireUtf8();
+                case INGREDIENTS_TAG -> {
+                    if (Objects.isNull(ingredients)) {
+                        ingredients = new ArrayList<>();
+                    }
+                    int limit = input.pushLimit(input.readRawVarint32());
+                    ingredients.add(readIngredient(input));
+                    input.popLimit(limit);
+                }
+                case SERVINGS_TAG -> servings = input.readInt32();
+                case INSTRUCTIONS_TAG -> instructions = input.readStringRequireUtf8();
+                case IS_VEGETARIAN_TAG -> isVegetarian = input.readStringRequireUtf8();
+                default -> input.skipField(tag);
+            }
+        }
+        return new Recipe(recipeName, ingredients, servings, instructions, isVegetarian, null, null);
+    }
+
+    private static Ingredient readIngredient(CodedInputStream input) throws IOException {
+        String name = null;
+        int quantity = 0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case INGREDIENT_NAME_TAG -> name = input.readStringRequireUtf8();
+                case INGREDIENT_QUANTITY_TAG -> quantity = input.readInt32();
+                default -> input.skipField(tag);
+            }
+        }
+        return new Ingredient(name, quantity);
+    }
+}
@@ -2,19 +2,31 @@ package com.assignment.amit.recipemanager.util;
 
 import com.assignment.amit.recipemanager.entity.IngredientEntity;
 import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
 import com.assignment.amit.recipemanager.model.Ingredient;
 import com.assignment.amit.recipemanager.model.Recipe;
 
+import org.bson.types.ObjectId;
+
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 public class RecipeUtil {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     public static RecipeEntity mapToRecipeEntity(Recipe recipe) {
         List<IngredientEntity> ingredientEntities = mapToIngredientsEntity(recipe.ingredients());
         return new RecipeEntity( null, recipe.recipeName(), recipe.servings(),
-                ingredientEntities, recipe.instructions(), recipe.isVegetarian());
+                ingredientEntities, recipe.instructions(), recipe.isVegetarian(), null);
        }
 
     public static List<IngredientEntity> mapToIngredientsEntity(List<Ingredient> ingredients) {
+        if (Objects.isNull(ingredients)) {
+            return null;
+        }
         return ingredients.stream().map(ingredient -> new IngredientEntity(ingredient.name(), ingredient.quantity())).toList();
     }
 
@@ -24,9 +36,125 @@ public class RecipeUtil {
         }).toList();
     }
 
+    /**
+     * Maps the entity to a recipe, fields missing from a projected entity stay null.
+     */
     public static Recipe maoToRecipe(RecipeEntity entity) {
-        return new Recipe(entity.getRecipeName(),
-                mapToIngredients(entity.getIngredients()), entity.getServings(),
-                entity.getInstructions(), entity.getIsVegetarian());
+        List<Ingredient> ingredients = Objects.isNull(entity.getIngredients()) ? null : mapToIngredients(entity.getIngredients());
+        return new Recipe(entity.getRecipeName(), ingredients, entity.getServings(),
+                entity.getInstructions(), entity.getIsVegetarian(), entity.getId(), entity.getVersion());
+    }
+
+    /**
+     * Keeps only the given fields of the recipe, the others are set to null.
+     */
+    public static Recipe project(Recipe recipe, Collection<String> fields) {
+        return new Recipe(fields.contains("recipeName") ? recipe.recipeName() : null,
+                fields.contains("ingredients") ? recipe.ingredients() : null,
+                fields.contains("servings") ? recipe.servings() : null,
+                fields.contains("instructions") ? recipe.instructions() : null,
+                fields.contains("isVegetarian") ? recipe.isVegetarian() : null,
+                recipe.id(), recipe.version());
+    }
+
+    /**
+     * Strong entity tag of the recipe, from its id and version so a recipe deleted and created again gets another
+     * tag. A projection is another representation of the recipe and gets its own tag.
+     *
+     * @param fields sorted fields of the projection, empty for the whole recipe
+     */
+    public static String eTag(Recipe recipe, List<String> fields) {
+        StringBuilder tag = new StringBuilder("\"").append(recipe.id()).append('-').append(version(recipe));
+        if (!fields.isEmpty()) {
+            tag.append('-').append(Long.toHexString(hash(FNV_OFFSET, String.join(",", fields))));
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Weak entity tag of a page of recipes, a hash of the ids and versions of its recipes, of the projection
+     * and of the cursor of the next page. It is weak as the page is sent compressed or not, the server does not
+     * compress responses with a strong tag.
+     */
+    public static String eTag(List<Recipe> recipes, String next, List<String> fields) {
+        long hash = hash(FNV_OFFSET, String.join(",", fields));
+        for (Recipe recipe : recipes) {
+            hash = hash(hash, recipe.id());
+            hash = hash(hash, version(recipe));
+        }
+        if (Objects.nonNull(next)) {
+            hash = hash(hash, next);
+        }
+        return "W/\"p-" + Long.toHexString(hash) + '"';
+    }
+
+    /**
+     * Whether the If-None-Match header lists the entity tag, comparing the tags weakly as required for it.
+     */
+    public static boolean matchesETag(String ifNoneMatch, String eTag) {
+        String opaqueTag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the If-Match header lists the entity tag, comparing the tags strongly as required for it.
+     */
+    public static boolean matchesIfMatch(String ifMatch, String eTag) {
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (!eTag.startsWith("W/") && tag.equals(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Documents written before the version was added have none, they count as the first version.
+     */
+    private static long version(Recipe recipe) {
+        return Objects.isNull(recipe.version()) ? 0 : recipe.version();
+    }
+
+    private static long hash(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int index = 0; index < value.length(); index++) {
+            hash = (hash ^ value.charAt(index)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Encodes the id of the last recipe of a page into an opaque continuation token.
+     */
+    public static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(new ObjectId(id).toByteArray());
+    }
+
+    /**
+     * Decodes the continuation token back into the id the next page starts after.
+     */
+    public static ObjectId decodeCursor(String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != 12) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            return new ObjectId(bytes);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
     }
 }
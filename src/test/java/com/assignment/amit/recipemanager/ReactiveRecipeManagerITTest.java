@@ -0,0 +1,168 @@
+package com.assignment.amit.recipemanager;
+
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeCount;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.testsupport.TestMongoConfiguration;
+import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the /recipes contract against the reactive profile, the expectations are the ones of
+ * {@link RecipeManagerITTest} for the default profile.
+ */
+@ExtendWith(SpringExtension.class)
+@DirtiesContext
+@SpringBootTest(classes = RecipeManagerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"integration", "reactive"})
+@Import(TestMongoConfiguration.class)
+public class ReactiveRecipeManagerITTest {
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private WebTestClient client() {
+        return WebTestClient.bindToServer().baseUrl("http://localhost:" + port).build();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        mongoTemplate.remove(new Query(), RecipeEntity.class).block();
+    }
+
+    @Test
+    public void testAddGetUpdateAndDeleteRecipe() {
+        Recipe recipe = createRecipe("PaneerLababdar", 5, List.of(createIngredient("Paneer", 2)), "Start with frying ", "true");
+
+        client().post().uri("/recipes").contentType(MediaType.APPLICATION_JSON).bodyValue(recipe)
+                .exchange().expectStatus().isCreated().expectBody(Recipe.class).isEqualTo(recipe);
+        client().post().uri("/recipes").contentType(MediaType.APPLICATION_JSON).bodyValue(recipe)
+                .exchange().expectStatus().isEqualTo(HttpStatus.CONFLICT);
+        client().put().uri("/recipes/PaneerLababdar").contentType(MediaType.APPLICATION_JSON).bodyValue("{\"servings\": 10}")
+                .exchange().expectStatus().isOk().expectBody().jsonPath("$.servings").isEqualTo(10);
+        client().get().uri("/recipes/PaneerLababdar?fields=servings")
+                .exchange().expectStatus().isOk().expectBody().json("{\"servings\":10}", true);
+        client().delete().uri("/recipes/PaneerLababdar").exchange().expectStatus().isOk();
+        client().get().uri("/recipes/PaneerLababdar").exchange().expectStatus().isNotFound();
+        client().delete().uri("/recipes/PaneerLababdar").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testAddRecipesInBatchAndGetThemPageByPage() throws JsonProcessingException {
+        Ingredient coriander = createIngredient("Coriander", 2);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("Recipe0", 2, List.of(coriander), "Boil", "true"))).block();
+        List<Recipe> recipes = List.of(
+                createRecipe("Recipe0", 2, List.of(coriander), "Boil", "true"),
+                createRecipe("Recipe1", 2, List.of(coriander), "Boil", "true"),
+                createRecipe("Recipe2", 2, List.of(coriander), "Boil", "true"),
+                createRecipe("Recipe3", 2, List.of(coriander), "Boil", "true"),
+                createRecipe("Recipe4", 2, List.of(coriander), "Boil", "true"));
+
+        List<RecipeBatchResult> results = client().post().uri("/recipes/batch").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(mapper.writeValueAsString(recipes))
+                .exchange().expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<RecipeBatchResult>>() {
+                }).returnResult().getResponseBody();
+        WebTestClient.ResponseSpec firstPage = client().get().uri("/recipes?ingredient=Coriander&limit=3").exchange();
+        String cursor = firstPage.returnResult(Recipe.class).getResponseHeaders().getFirst("X-Next-Cursor");
+        List<Recipe> secondPage = client().get().uri("/recipes?ingredient=Coriander&limit=3&cursor=" + cursor)
+                .exchange().expectStatus().isOk().expectHeader().doesNotExist("X-Next-Cursor")
+                .expectBodyList(Recipe.class).returnResult().getResponseBody();
+
+        Assertions.assertEquals(RecipeBatchResult.Status.DUPLICATE, results.get(0).status());
+        Assertions.assertTrue(results.subList(1, 5).stream().allMatch(result -> result.status() == RecipeBatchResult.Status.CREATED));
+        Assertions.assertNotNull(cursor);
+        Assertions.assertEquals(List.of("Recipe3", "Recipe4"), secondPage.stream().map(Recipe::recipeName).toList());
+    }
+
+    @Test
+    public void testStreamRecipesByFilter() {
+        Ingredient chicken = createIngredient("Chicken", 5);
+        for (int i = 0; i < 20; i++) {
+            mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenRecipe" + i, 4, List.of(chicken), "Marinate", "false"))).block();
+        }
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true"))).block();
+
+        List<Recipe> streamed = client().get().uri("/recipes?isVegetarian=false&fields=recipeName")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Recipe.class).getResponseBody().collectList().block();
+
+        Assertions.assertEquals(20, streamed.size());
+        Assertions.assertTrue(streamed.stream().allMatch(recipe -> recipe.recipeName().startsWith("Chicken") && recipe.servings() == null));
+    }
+
+    @Test
+    public void testUpdateAndDeleteRecipesByFilter() {
+        Ingredient coriander = createIngredient("Coriander", 2);
+        Ingredient chicken = createIngredient("Chicken", 5);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5, List.of(coriander), "Start with frying ", "true"))).block();
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4, List.of(coriander, chicken), "Marinate", "false"))).block();
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenCurry", 4, List.of(coriander, chicken), "Boil", "false"))).block();
+
+        client().patch().uri("/recipes?ingredient=Chicken").contentType(MediaType.APPLICATION_JSON).bodyValue("{ \"servings\" : 8}")
+                .exchange().expectStatus().isOk().expectBody(RecipeCount.class).isEqualTo(new RecipeCount(2));
+        client().delete().uri("/recipes?isVegetarian=true")
+                .exchange().expectStatus().isOk().expectBody(RecipeCount.class).isEqualTo(new RecipeCount(1));
+        client().delete().uri("/recipes").exchange().expectStatus().isBadRequest();
+
+        List<RecipeEntity> remaining = mongoTemplate.findAll(RecipeEntity.class).collectList().block();
+        Assertions.assertEquals(2, remaining.size());
+        Assertions.assertTrue(remaining.stream().allMatch(recipe -> recipe.getServings() == 8));
+    }
+
+    @Test
+    public void testGetRecipeFacets() {
+        Ingredient coriander = createIngredient("Coriander", 2);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 4,
+                List.of(coriander, createIngredient("Paneer", 2)), "Start with frying ", "true"))).block();
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4,
+                List.of(coriander, coriander, createIngredient("Chicken", 5)), "Marinate and put in the oven", "false"))).block();
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("DalMakhani", 2,
+                List.of(createIngredient("Lentils", 1)), "Boil the lentils", "true"))).block();
+
+        client().get().uri("/recipes/facets?top=1").exchange().expectStatus().isOk()
+                .expectBody(RecipeFacets.class).isEqualTo(new RecipeFacets(3, Map.of("false", 1L, "true", 2L),
+                        Map.of(2, 1L, 4, 2L), List.of(new RecipeFacets.IngredientCount("Coriander", 2))));
+        client().get().uri("/recipes/facets?top=0").exchange().expectStatus().isBadRequest();
+    }
+
+    private Ingredient createIngredient(String name, int quantity) {
+        return TestUtil.TestIngredientBuilder.newBuilder().withName(name).withQuantity(quantity).build();
+    }
+
+    private Recipe createRecipe(String recipeName, int noOfServings, List<Ingredient> ingredients,
+                                String instructions, String isVegetarian) {
+        return TestUtil.TestRecipeBuilder.newBuilder().withName(recipeName).withServing(noOfServings).withIngredients(ingredients)
+                .withInstructions(instructions).isVegetarian(isVegetarian).build();
+    }
+}
@@ -1,13 +1,25 @@
 package com.assignment.amit.recipemanager;
 
+import com.assignment.amit.recipemanager.cache.RecipeCache;
+import com.assignment.amit.recipemanager.cache.RecipeQueryCache;
+import com.assignment.amit.recipemanager.controller.RecipeProtobufHttpMessageConverter;
 import com.assignment.amit.recipemanager.entity.RecipeEntity;
 import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.QueryShapeReport;
 import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeCount;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.testsupport.MongoCommandCounter;
 import com.assignment.amit.recipemanager.testsupport.TestMongoConfiguration;
 import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import com.assignment.amit.recipemanager.util.RecipeProtobuf;
 import com.assignment.amit.recipemanager.util.RecipeUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.json.JSONException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -15,30 +27,45 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.zip.GZIPInputStream;
 
 @ExtendWith(SpringExtension.class)
 @DirtiesContext
 @SpringBootTest(classes = RecipeManagerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
 @ActiveProfiles("integration")
+@AutoConfigureObservability
 @Import(TestMongoConfiguration.class)
 public class RecipeManagerITTest {
     @LocalServerPort
     private int port;
     @Autowired
     private MongoTemplate mongoTemplate;
+    @Autowired
+    private MongoCommandCounter mongoCommandCounter;
+    @Autowired
+    private RecipeCache recipeCache;
+    @Autowired
+    private RecipeQueryCache recipeQueryCache;
     private final ObjectMapper mapper = new ObjectMapper();
 
     String createUrl(String path) {
@@ -47,7 +74,10 @@ public class RecipeManagerITTest {
 
     @AfterEach
     public void cleanup() {
-        mongoTemplate.dropCollection(RecipeEntity.class);
+        // remove the documents only, dropping the collection would also drop the indexes created at startup
+        mongoTemplate.remove(new Query(), RecipeEntity.class);
+        recipeCache.invalidateAll();
+        recipeQueryCache.invalidateAll();
     }
 
     @Test
@@ -356,6 +386,384 @@ public class RecipeManagerITTest {
 
     }
 
+    @Test
+    public void testGetRecipesPageByPage() {
+        //given
+        Ingredient coriander = createIngredient("Coriander", 2);
+        for (int i = 0; i < 5; i++) {
+            mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("Recipe" + i, 2, List.of(coriander), "Boil", "true")));
+        }
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+
+        //when
+        ResponseEntity<List<Recipe>> firstPage = restTemplate.exchange(
+                createUrl("/recipes?limit=3"),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+        String cursor = firstPage.getHeaders().getFirst("X-Next-Cursor");
+        ResponseEntity<List<Recipe>> secondPage = restTemplate.exchange(
+                createUrl("/recipes?limit=3&cursor=" + cursor),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+
+        //then
+        Assertions.assertEquals(3, Objects.requireNonNull(firstPage.getBody()).size());
+        Assertions.assertEquals(2, Objects.requireNonNull(secondPage.getBody()).size());
+        Assertions.assertNull(secondPage.getHeaders().getFirst("X-Next-Cursor"));
+        Assertions.assertEquals("Recipe3", secondPage.getBody().get(0).recipeName());
+    }
+
+    @Test
+    public void testAddRecipesInBatchReportsDuplicates() throws JsonProcessingException {
+        //given
+        List<Ingredient> ingredient = List.of(createIngredient("Coriander", 2));
+        Recipe paneerRecipe = createRecipe("PaneerLababdar", 5, ingredient, "Start with frying the paneer", "true");
+        Recipe chickenRecipe = createRecipe("ChickenTikka", 4, ingredient, "Marinate and put in the oven", "false");
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(paneerRecipe));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "application/json");
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(mapper.writeValueAsString(List.of(paneerRecipe, chickenRecipe)), headers);
+
+        //when
+        ResponseEntity<List<RecipeBatchResult>> response = restTemplate.exchange(
+                createUrl("/recipes/batch"),
+                HttpMethod.POST, entity, new ParameterizedTypeReference<List<RecipeBatchResult>>() {
+                });
+
+        //then
+        Assertions.assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+        Assertions.assertEquals(List.of(new RecipeBatchResult("PaneerLababdar", RecipeBatchResult.Status.DUPLICATE),
+                new RecipeBatchResult("ChickenTikka", RecipeBatchResult.Status.CREATED)), response.getBody());
+        Assertions.assertEquals(2, mongoTemplate.count(new Query(), RecipeEntity.class));
+    }
+
+    @Test
+    public void testUpdateAndDeleteRecipesByFilter() {
+        //given
+        Ingredient coriander = createIngredient("Coriander", 2);
+        Ingredient chicken = createIngredient("Chicken", 5);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5, List.of(coriander), "Start with frying ", "true")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4, List.of(coriander, chicken), "Marinate", "false")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenCurry", 4, List.of(coriander, chicken), "Boil", "false")));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "application/json");
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        restTemplate.getRestTemplate().setRequestFactory(new JdkClientHttpRequestFactory());
+
+        //when
+        ResponseEntity<RecipeCount> updated = restTemplate.exchange(
+                createUrl("/recipes?ingredient=Chicken"),
+                HttpMethod.PATCH, new HttpEntity<>("{ \"servings\" : 8}", headers), RecipeCount.class);
+        ResponseEntity<RecipeCount> deleted = restTemplate.exchange(
+                createUrl("/recipes?isVegetarian=true"),
+                HttpMethod.DELETE, new HttpEntity<>(null, headers), RecipeCount.class);
+
+        //then
+        Assertions.assertEquals(new RecipeCount(2), updated.getBody());
+        Assertions.assertEquals(new RecipeCount(1), deleted.getBody());
+        List<RecipeEntity> remaining = mongoTemplate.findAll(RecipeEntity.class);
+        Assertions.assertEquals(2, remaining.size());
+        Assertions.assertTrue(remaining.stream().allMatch(recipe -> recipe.getServings() == 8));
+    }
+
+    @Test
+    public void testDeleteRecipeMakesSingleRoundTrip() {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+        mongoCommandCounter.reset();
+
+        //when
+        ResponseEntity<String> deleted = restTemplate.exchange(
+                createUrl("/recipes/PaneerLababdar"), HttpMethod.DELETE, entity, String.class);
+        List<String> deleteCommands = mongoCommandCounter.getCommands();
+        mongoCommandCounter.reset();
+        ResponseEntity<String> notFound = restTemplate.exchange(
+                createUrl("/recipes/PaneerLababdar"), HttpMethod.DELETE, entity, String.class);
+
+        //then
+        Assertions.assertEquals(HttpStatus.OK, deleted.getStatusCode());
+        Assertions.assertEquals(List.of("delete"), deleteCommands);
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        Assertions.assertEquals(List.of("delete"), mongoCommandCounter.getCommands());
+    }
+
+    @Test
+    public void testConditionalGetAnswersNotModifiedUntilRecipeChanges() {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        ResponseEntity<String> recipe = restTemplate.exchange(
+                createUrl("/recipes/PaneerLababdar"), HttpMethod.GET, new HttpEntity<>(null, new HttpHeaders()), String.class);
+        ResponseEntity<String> page = restTemplate.exchange(
+                createUrl("/recipes?servings=5"), HttpMethod.GET, new HttpEntity<>(null, new HttpHeaders()), String.class);
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(List.of(recipe.getHeaders().getETag(), page.getHeaders().getETag()));
+        HttpEntity<String> entity = new HttpEntity<>(null, conditional);
+        recipeCache.invalidateAll();
+        mongoCommandCounter.reset();
+
+        //when
+        ResponseEntity<String> notModified = restTemplate.exchange(
+                createUrl("/recipes/PaneerLababdar"), HttpMethod.GET, entity, String.class);
+        List<String> conditionalCommands = mongoCommandCounter.getCommands();
+        ResponseEntity<String> pageNotModified = restTemplate.exchange(
+                createUrl("/recipes?servings=5"), HttpMethod.GET, entity, String.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "application/json");
+        restTemplate.exchange(createUrl("/recipes/PaneerLababdar"), HttpMethod.PUT,
+                new HttpEntity<>("{ \"servings\" : 10}", headers), String.class);
+        ResponseEntity<String> modified = restTemplate.exchange(
+                createUrl("/recipes/PaneerLababdar"), HttpMethod.GET, entity, String.class);
+        ResponseEntity<String> pageModified = restTemplate.exchange(
+                createUrl("/recipes?servings=5"), HttpMethod.GET, entity, String.class);
+
+        //then
+        Assertions.assertNotNull(recipe.getHeaders().getETag());
+        Assertions.assertNotNull(page.getHeaders().getETag());
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        Assertions.assertNull(notModified.getBody());
+        Assertions.assertEquals(List.of("find"), conditionalCommands);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, pageNotModified.getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, modified.getStatusCode());
+        Assertions.assertNotEquals(recipe.getHeaders().getETag(), modified.getHeaders().getETag());
+        Assertions.assertEquals(HttpStatus.OK, pageModified.getStatusCode());
+    }
+
+    @Test
+    public void testPatchRecipeIfMatchRejectsStaleVersion() {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        restTemplate.getRestTemplate().setRequestFactory(new JdkClientHttpRequestFactory());
+        String readETag = restTemplate.exchange(createUrl("/recipes/PaneerLababdar"), HttpMethod.GET,
+                new HttpEntity<>(null, new HttpHeaders()), String.class).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setIfMatch(readETag);
+
+        //when
+        ResponseEntity<Recipe> patched = restTemplate.exchange(createUrl("/recipes/PaneerLababdar"),
+                HttpMethod.PATCH, new HttpEntity<>("{ \"servings\" : 6}", headers), Recipe.class);
+        ResponseEntity<String> stale = restTemplate.exchange(createUrl("/recipes/PaneerLababdar"),
+                HttpMethod.PATCH, new HttpEntity<>("{ \"servings\" : 7}", headers), String.class);
+        headers.setIfMatch(patched.getHeaders().getETag());
+        ResponseEntity<Recipe> patchedAgain = restTemplate.exchange(createUrl("/recipes/PaneerLababdar"),
+                HttpMethod.PATCH, new HttpEntity<>("{ \"servings\" : 8}", headers), Recipe.class);
+        headers.remove(HttpHeaders.IF_MATCH);
+        ResponseEntity<String> unconditional = restTemplate.exchange(createUrl("/recipes/PaneerLababdar"),
+                HttpMethod.PATCH, new HttpEntity<>("{ \"servings\" : 9}", headers), String.class);
+
+        //then
+        Assertions.assertEquals(HttpStatus.OK, patched.getStatusCode());
+        Assertions.assertEquals(6, Objects.requireNonNull(patched.getBody()).servings());
+        Assertions.assertNotEquals(readETag, patched.getHeaders().getETag());
+        Assertions.assertEquals(HttpStatus.PRECONDITION_FAILED, stale.getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, patchedAgain.getStatusCode());
+        Assertions.assertEquals(HttpStatus.PRECONDITION_REQUIRED, unconditional.getStatusCode());
+        Assertions.assertEquals(8, Objects.requireNonNull(mongoTemplate.findOne(
+                Query.query(Criteria.where("recipeName").is("PaneerLababdar")), RecipeEntity.class)).getServings());
+    }
+
+    @Test
+    public void testGetRecipesInBinaryFormatsAndCompressed() throws IOException {
+        //given
+        for (int i = 0; i < 20; i++) {
+            mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar" + i, 5,
+                    List.of(createIngredient("Paneer", 2), createIngredient("Coriander", 1)), "Start with frying ", "true")));
+        }
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        List<Recipe> expected = restTemplate.exchange(createUrl("/recipes"), HttpMethod.GET,
+                new HttpEntity<>(null, new HttpHeaders()), new ParameterizedTypeReference<List<Recipe>>() {
+                }).getBody();
+
+        //when
+        byte[] cbor = getRecipes(restTemplate, MediaType.parseMediaType("application/cbor"), null).getBody();
+        byte[] smile = getRecipes(restTemplate, MediaType.parseMediaType("application/x-jackson-smile"), null).getBody();
+        ResponseEntity<byte[]> protobuf = getRecipes(restTemplate, RecipeProtobufHttpMessageConverter.PROTOBUF, null);
+        ResponseEntity<byte[]> gzipped = getRecipes(restTemplate, MediaType.APPLICATION_JSON, "gzip");
+
+        //then
+        JavaType recipeList = mapper.getTypeFactory().constructCollectionType(List.class, Recipe.class);
+        Assertions.assertEquals(20, Objects.requireNonNull(expected).size());
+        Assertions.assertEquals(expected, new CBORMapper().readValue(cbor, recipeList));
+        Assertions.assertEquals(expected, new SmileMapper().readValue(smile, recipeList));
+        Assertions.assertEquals(expected, RecipeProtobuf.readRecipes(new ByteArrayInputStream(Objects.requireNonNull(protobuf.getBody()))));
+        Assertions.assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream json = new GZIPInputStream(new ByteArrayInputStream(Objects.requireNonNull(gzipped.getBody())))) {
+            Assertions.assertEquals(expected, mapper.readValue(json, recipeList));
+        }
+    }
+
+    @Test
+    public void testPrometheusEndpointExposesRecipeMetrics() {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+        restTemplate.exchange(createUrl("/recipes?servings=5"), HttpMethod.GET, entity, String.class);
+        restTemplate.exchange(createUrl("/recipes/ChickenTikka"), HttpMethod.GET, entity, String.class);
+
+        //when
+        ResponseEntity<String> scrape = restTemplate.exchange(createUrl("/actuator/prometheus"), HttpMethod.GET, entity, String.class);
+
+        //then
+        Assertions.assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String metrics = Objects.requireNonNull(scrape.getBody());
+        Assertions.assertTrue(metrics.contains("recipe_service_seconds_count{operation=\"getRecipesWithFilter\",outcome=\"ok\""));
+        Assertions.assertTrue(metrics.contains("recipe_service_seconds_count{operation=\"getRecipe\",outcome=\"not-found\""));
+        Assertions.assertTrue(metrics.contains("recipe_service_results_recipes_sum{operation=\"getRecipesWithFilter\""));
+        Assertions.assertTrue(metrics.contains("recipe_mongo_documents_count{command=\"find\""));
+        Assertions.assertTrue(metrics.contains("mongodb_driver_commands_seconds_bucket"));
+    }
+
+    @Test
+    public void testGetRecipesByTypedRangeAndIngredientQuantity() {
+        //given
+        Ingredient coriander = createIngredient("Coriander", 2);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 12,
+                List.of(coriander, createIngredient("Paneer", 1)), "Start with frying ", "true")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4,
+                List.of(coriander, createIngredient("Chicken", 5)), "Marinate and put in the oven", "false")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+
+        //when
+        ResponseEntity<List<Recipe>> twelveServings = restTemplate.exchange(createUrl("/recipes?servings=12"),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+        ResponseEntity<List<Recipe>> range = restTemplate.exchange(createUrl("/recipes?servings=gte:2,lt:10"),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+        ResponseEntity<List<Recipe>> quantity = restTemplate.exchange(createUrl("/recipes?ingredient=Paneer&quantity=gt:1"),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+        ResponseEntity<String> invalid = restTemplate.exchange(createUrl("/recipes?servings=gte:many"),
+                HttpMethod.GET, entity, String.class);
+
+        //then
+        Assertions.assertEquals(List.of("PaneerLababdar"), Objects.requireNonNull(twelveServings.getBody()).stream().map(Recipe::recipeName).toList());
+        Assertions.assertEquals(List.of("ChickenTikka"), Objects.requireNonNull(range.getBody()).stream().map(Recipe::recipeName).toList());
+        Assertions.assertEquals(List.of(), quantity.getBody());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+
+    @Test
+    public void testGetRecipesWithFieldsReturnsSparseRecipes() throws JSONException {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+
+        //when
+        ResponseEntity<String> list = restTemplate.exchange(createUrl("/recipes?fields=recipeName,isVegetarian"),
+                HttpMethod.GET, entity, String.class);
+        ResponseEntity<String> single = restTemplate.exchange(createUrl("/recipes/PaneerLababdar?fields=servings"),
+                HttpMethod.GET, entity, String.class);
+
+        //then
+        JSONAssert.assertEquals("[{\"recipeName\":\"PaneerLababdar\",\"isVegetarian\":\"true\"}]", list.getBody(), true);
+        JSONAssert.assertEquals("{\"servings\":5}", single.getBody(), true);
+    }
+
+    @Test
+    public void testGetRecipeFacets() {
+        //given
+        Ingredient coriander = createIngredient("Coriander", 2);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 4,
+                List.of(coriander, createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4,
+                List.of(coriander, coriander, createIngredient("Chicken", 5)), "Marinate and put in the oven", "false")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("DalMakhani", 2,
+                List.of(createIngredient("Lentils", 1)), "Boil the lentils", "true")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+
+        //when
+        ResponseEntity<RecipeFacets> all = restTemplate.exchange(createUrl("/recipes/facets?top=1"),
+                HttpMethod.GET, entity, RecipeFacets.class);
+        ResponseEntity<RecipeFacets> vegetarian = restTemplate.exchange(createUrl("/recipes/facets?isVegetarian=true"),
+                HttpMethod.GET, entity, RecipeFacets.class);
+
+        //then
+        Assertions.assertEquals(new RecipeFacets(3, Map.of("false", 1L, "true", 2L), Map.of(2, 1L, 4, 2L),
+                List.of(new RecipeFacets.IngredientCount("Coriander", 2))), all.getBody());
+        Assertions.assertEquals(2, Objects.requireNonNull(vegetarian.getBody()).total());
+        Assertions.assertEquals(Map.of("true", 2L), vegetarian.getBody().isVegetarian());
+        Assertions.assertEquals(3, vegetarian.getBody().topIngredients().size());
+    }
+
+    @Test
+    public void testQueryAdvisorReportsIndexUsedByFilter() {
+        //given
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5,
+                List.of(createIngredient("Paneer", 2)), "Start with frying ", "true")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4,
+                List.of(createIngredient("Chicken", 5)), "Marinate and put in the oven", "false")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+        restTemplate.exchange(createUrl("/recipes?servings=4"), HttpMethod.GET, entity, String.class);
+
+        //when
+        ResponseEntity<List<QueryShapeReport>> response = restTemplate.exchange(
+                createUrl("/admin/query-advisor"), HttpMethod.GET, entity,
+                new ParameterizedTypeReference<List<QueryShapeReport>>() {
+                });
+
+        //then
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        QueryShapeReport servingsShape = Objects.requireNonNull(response.getBody()).stream()
+                .filter(report -> report.shape().equals("{\"servings\": \"?\"} sort {\"_id\": 1}"))
+                .findFirst().orElseThrow();
+        Assertions.assertFalse(servingsShape.collectionScan());
+        Assertions.assertTrue(servingsShape.indexes().contains("servings_id"));
+    }
+
+    @Test
+    public void testSearchRecipesByInstructions() {
+        //given
+        Ingredient coriander = createIngredient("Coriander", 2);
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("PaneerLababdar", 5, List.of(coriander), "Start with frying the paneer", "true")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenTikka", 4, List.of(coriander), "Marinate and bake in the oven", "false")));
+        mongoTemplate.save(RecipeUtil.mapToRecipeEntity(createRecipe("ChickenCurry", 4, List.of(coriander), "Marinate and Boil for 1 hours", "false")));
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpEntity<String> entity = new HttpEntity<>(null, new HttpHeaders());
+
+        //when
+        ResponseEntity<List<Recipe>> response = restTemplate.exchange(
+                createUrl("/recipes?q=baking"),
+                HttpMethod.GET, entity, new ParameterizedTypeReference<List<Recipe>>() {
+                });
+
+        //then
+        Assertions.assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+        Assertions.assertEquals(List.of("ChickenTikka"),
+                Objects.requireNonNull(response.getBody()).stream().map(Recipe::recipeName).toList());
+    }
+
+    private ResponseEntity<byte[]> getRecipes(TestRestTemplate restTemplate, MediaType accept, String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        if (Objects.nonNull(acceptEncoding)) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        ResponseEntity<byte[]> response = restTemplate.exchange(createUrl("/recipes"), HttpMethod.GET,
+                new HttpEntity<>(null, headers), byte[].class);
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertTrue(accept.isCompatibleWith(response.getHeaders().getContentType()));
+        return response;
+    }
+
     private Ingredient createIngredient(String name, int quantity) {
         return TestUtil.TestIngredientBuilder.newBuilder().withName(name).withQuantity(quantity).build();
     }
@@ -0,0 +1,58 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Database used by the benchmarks, the one given by the {@code benchmark.mongodb.uri} system property or else
+ * a container or an in-process server started for the run.
+ */
+public final class BenchmarkMongo implements AutoCloseable {
+    private static final String IMAGE = "mongo:4.0.10";
+
+    private final AutoCloseable server;
+    private final String uri;
+
+    private BenchmarkMongo(AutoCloseable server, String uri) {
+        this.server = server;
+        this.uri = uri;
+    }
+
+    public static BenchmarkMongo start() {
+        String uri = System.getProperty("benchmark.mongodb.uri");
+        if (uri != null && !uri.isBlank()) {
+            return new BenchmarkMongo(null, uri);
+        }
+        MongoDBContainer container = new MongoDBContainer(DockerImageName.parse(IMAGE));
+        container.start();
+        return new BenchmarkMongo(container::stop, container.getReplicaSetUrl("benchmark"));
+    }
+
+    /**
+     * Starts an in-memory server speaking the mongo wire protocol, which needs neither docker nor a database
+     * install. It keeps its data in memory and has no query planner, so it tells regressions of the application
+     * apart, not the performance of the database.
+     */
+    public static BenchmarkMongo startInProcess() {
+        String uri = System.getProperty("benchmark.mongodb.uri");
+        if (uri != null && !uri.isBlank()) {
+            return new BenchmarkMongo(null, uri);
+        }
+        MongoServer mongoServer = new MongoServer(new MemoryBackend());
+        mongoServer.bind();
+        return new BenchmarkMongo(mongoServer::shutdownNow, mongoServer.getConnectionString());
+    }
+
+    public String uri() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+}
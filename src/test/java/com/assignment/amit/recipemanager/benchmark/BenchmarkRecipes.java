@@ -0,0 +1,29 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Recipes of the sizes seen in the catalog, from a quick salad to a long braise.
+ */
+final class BenchmarkRecipes {
+    private static final String[] INGREDIENTS = {"Chicken", "Paneer", "Onion", "Tomato", "Garlic", "Ginger",
+            "Coriander", "Cumin", "Turmeric", "Chilli", "Cream", "Butter", "Rice", "Lentils", "Potato", "Salt"};
+    private static final String STEP = "Heat the pan, add the spices and stir for two minutes until fragrant. ";
+
+    private BenchmarkRecipes() {
+    }
+
+    /**
+     * Creates a recipe with the given number of ingredients and one instruction step per ingredient.
+     */
+    static Recipe recipe(String recipeName, int ingredients) {
+        List<Ingredient> ingredientList = IntStream.range(0, ingredients)
+                .mapToObj(i -> new Ingredient(INGREDIENTS[i % INGREDIENTS.length] + (i / INGREDIENTS.length), i % 5 + 1))
+                .toList();
+        return new Recipe(recipeName, ingredientList, 4, STEP.repeat(ingredients), ingredients % 2 == 0 ? "true" : "false", null, null);
+    }
+}
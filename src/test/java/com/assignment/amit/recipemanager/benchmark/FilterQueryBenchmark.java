@@ -0,0 +1,58 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the filter parameters of a request into the mongo query, with the shape of the filter already
+ * compiled, which is the steady state, and compiled again on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FilterQueryBenchmark {
+    private static final Map<String, Map<String, String>> FILTERS = Map.of(
+            "flag", Map.of("isVegetarian", "true"),
+            "ingredients", Map.of("ingredient", "Chicken|Paneer", "excludeIngredient", "!Onion"),
+            "range", Map.of("servings", "gte:2,lte:6"),
+            "mixed", Map.of("isVegetarian", "false", "servings", "gte:2", "ingredient", "Chicken",
+                    "ingredientQuantity", "gte:2"));
+
+    @Param({"flag", "ingredients", "range", "mixed"})
+    private String filter;
+
+    private Map<String, String> filterMap;
+    private FilterQueryCompiler compiler;
+    private FilterQueryCompiler uncachedCompiler;
+
+    @Setup
+    public void setUp() {
+        filterMap = FILTERS.get(filter);
+        compiler = new FilterQueryCompiler(new RecipeProperties());
+        RecipeProperties uncached = new RecipeProperties();
+        uncached.getFilter().setMaxCompiledShapes(0);
+        uncachedCompiler = new FilterQueryCompiler(uncached);
+    }
+
+    @Benchmark
+    public Document compileCachedShape() {
+        return compiler.compile(filterMap).getQueryObject();
+    }
+
+    @Benchmark
+    public Document compileNewShape() {
+        return uncachedCompiler.compile(filterMap).getQueryObject();
+    }
+}
@@ -0,0 +1,61 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.metrics.RecipeMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of timing a recipe service operation, against the same call without metrics. The registry publishes the
+ * histograms like the application does, so the difference is the overhead paid by every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsOverheadBenchmark {
+    private RecipeMetrics recipeMetrics;
+    private int results;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+        recipeMetrics = new RecipeMetrics(registry);
+        results = 20;
+    }
+
+    @Benchmark
+    public void withoutMetrics(Blackhole blackhole) {
+        blackhole.consume(operation());
+    }
+
+    @Benchmark
+    public void withMetrics(Blackhole blackhole) {
+        blackhole.consume(recipeMetrics.time("getAllRecipesWithFiler", () -> {
+            recipeMetrics.recordResultSize("getAllRecipesWithFiler", results);
+            return operation();
+        }));
+    }
+
+    private int operation() {
+        Blackhole.consumeCPU(64);
+        return results;
+    }
+}
@@ -0,0 +1,182 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.RecipeManagerApplication;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Concurrent editors of the same few recipes, each reading a recipe and writing its servings back plus one, as
+ * fast as it can (closed model). With PATCH and If-Match every write is a compare-and-set, an editor whose read is
+ * stale gets 412 and reads again. With PUT the write is blind and the increments of concurrent editors overwrite
+ * each other. The test reports the committed writes per second, the conflicts and the lost increments of both,
+ * and fails when a conditional write is lost.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=RecipeContentionTest} and, all optional,
+ * {@code -Dcontention.writers=1,4,16,64 -Dcontention.recipes=1 -Dcontention.seconds=10}.
+ */
+@Tag("benchmark")
+public class RecipeContentionTest {
+    private static final int[] WRITERS = Stream.of(System.getProperty("contention.writers", "1,4,16,64").split(","))
+            .mapToInt(writers -> Integer.parseInt(writers.trim())).toArray();
+    private static final int RECIPES = Integer.getInteger("contention.recipes", 1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("contention.seconds", 10));
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private int rounds;
+
+    enum Mode {
+        IF_MATCH, PUT
+    }
+
+    @Test
+    public void runConcurrentEditorsOfTheSameRecipes() throws Exception {
+        try (BenchmarkMongo mongo = BenchmarkMongo.startInProcess();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeManagerApplication.class)
+                     .run("--server.port=0",
+                             "--spring.data.mongodb.uri=" + mongo.uri(),
+                             "--spring.data.mongodb.database=contention",
+                             "--logging.level.com.assignment=INFO");
+             ExecutorService editors = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(editors)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.printf("%nrecipes=%d, measured for %ss%n", RECIPES, MEASUREMENT.toSeconds());
+            System.out.printf("%-9s %7s %9s %9s %9s %9s %9s %9s%n", "mode", "writers", "commits", "writes/s",
+                    "conflicts", "lost", "p50 ms", "p99 ms");
+            List<String> lostConditionalWrites = new ArrayList<>();
+            for (int writers : WRITERS) {
+                for (Mode mode : Mode.values()) {
+                    Stats stats = run(http, editors, baseUrl, mode, writers);
+                    report(mode, writers, stats);
+                    if (mode == Mode.IF_MATCH && stats.lost > 0) {
+                        lostConditionalWrites.add(writers + " writers lost " + stats.lost);
+                    }
+                }
+            }
+            Assertions.assertTrue(lostConditionalWrites.isEmpty(), String.join(", ", lostConditionalWrites));
+        }
+    }
+
+    /**
+     * Creates the recipes of the round, lets the editors increment them for the measurement time and compares the
+     * servings they end with to the increments committed.
+     */
+    private Stats run(HttpClient http, ExecutorService editors, String baseUrl, Mode mode, int writers) throws Exception {
+        int round = rounds++;
+        List<String> names = IntStream.range(0, RECIPES).mapToObj(i -> mode + "-" + round + "-" + i).toList();
+        for (String name : names) {
+            Recipe recipe = new Recipe(name, List.of(new Ingredient("Salt", 1)), 1, "Stir", "true", null, null);
+            HttpResponse<String> created = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/recipes"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(recipe)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(201, created.statusCode(), created.body());
+        }
+        Stats stats = new Stats();
+        long deadline = System.nanoTime() + MEASUREMENT.toNanos();
+        long start = System.nanoTime();
+        List<Future<?>> running = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            running.add(editors.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    edit(http, baseUrl, mode, names.get(ThreadLocalRandom.current().nextInt(names.size())), stats);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> editor : running) {
+            try {
+                editor.get();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        long incremented = 0;
+        for (String name : names) {
+            incremented += read(http, baseUrl, name).body().servings() - 1;
+        }
+        stats.lost = stats.latencies.getTotalCount() - incremented;
+        return stats;
+    }
+
+    /**
+     * Reads the recipe and writes it back with one more serving, reading it again after each conflict.
+     */
+    private void edit(HttpClient http, String baseUrl, Mode mode, String name, Stats stats) throws Exception {
+        long start = System.nanoTime();
+        while (true) {
+            ReadRecipe read = read(http, baseUrl, name);
+            HttpRequest.Builder write = HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/" + name))
+                    .header("Content-Type", "application/json");
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString("{\"servings\": " + (read.body().servings() + 1) + "}");
+            int status = mode == Mode.IF_MATCH
+                    ? send(http, write.header("If-Match", read.eTag()).method("PATCH", body).build())
+                    : send(http, write.PUT(body).build());
+            if (status == 200) {
+                stats.latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), MAX_LATENCY));
+                return;
+            }
+            Assertions.assertEquals(412, status);
+            stats.conflicts.increment();
+        }
+    }
+
+    private ReadRecipe read(HttpClient http, String baseUrl, String name) throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/" + name)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+        return new ReadRecipe(mapper.readValue(response.body(), Recipe.class), response.headers().firstValue("ETag").orElseThrow());
+    }
+
+    private int send(HttpClient http, HttpRequest request) throws Exception {
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void report(Mode mode, int writers, Stats stats) {
+        Histogram latencies = stats.latencies;
+        System.out.printf("%-9s %7d %9d %9.1f %9d %9d %9.2f %9.2f%n", mode.name().toLowerCase(), writers,
+                latencies.getTotalCount(), latencies.getTotalCount() / (stats.elapsedNanos / 1e9), stats.conflicts.sum(),
+                stats.lost, latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0);
+    }
+
+    private record ReadRecipe(Recipe body, String eTag) {
+    }
+
+    private static final class Stats {
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY, 3);
+        private final LongAdder conflicts = new LongAdder();
+        private volatile long elapsedNanos;
+        private volatile long lost;
+    }
+}
@@ -0,0 +1,67 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of the json body of the recipe apis, with the object mapper configured as the application does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecipeJsonBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"4", "12", "40"})
+    private int ingredients;
+
+    private ObjectWriter recipeWriter;
+    private ObjectWriter pageWriter;
+    private ObjectReader recipeReader;
+    private Recipe recipe;
+    private List<Recipe> page;
+    private byte[] recipeJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        recipeWriter = mapper.writerFor(Recipe.class);
+        pageWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Recipe.class));
+        recipeReader = mapper.readerFor(Recipe.class);
+        recipe = BenchmarkRecipes.recipe("ChickenTikka", ingredients);
+        page = IntStream.range(0, PAGE_SIZE).mapToObj(i -> BenchmarkRecipes.recipe("Recipe" + i, ingredients)).toList();
+        recipeJson = recipeWriter.writeValueAsBytes(recipe);
+    }
+
+    @Benchmark
+    public byte[] writeRecipe() throws JsonProcessingException {
+        return recipeWriter.writeValueAsBytes(recipe);
+    }
+
+    @Benchmark
+    public Recipe readRecipe() throws IOException {
+        return recipeReader.readValue(recipeJson);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws JsonProcessingException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+}
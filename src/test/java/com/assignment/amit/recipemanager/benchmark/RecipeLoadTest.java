@@ -0,0 +1,292 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.RecipeManagerApplication;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of the recipe api against an in-process mongo, with a mix of creates, reads, filters, updates and
+ * deletes sent at a fixed arrival rate whatever the response times (open model). Latencies are measured from the
+ * time each request was due, so a stalled server shows up in the percentiles instead of lowering the load.
+ * The test fails when an operation is slower at p99 than its threshold, fails too often, or when the rate is not
+ * reached.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=RecipeLoadTest} and, all optional,
+ * {@code -Dloadtest.rate=200 -Dloadtest.seconds=60 -Dloadtest.catalog=5000 -Dloadtest.mix=create:10,get:40,filter:30,update:15,delete:5
+ * -Dloadtest.max-p99-ms=250 -Dloadtest.filter.max-p99-ms=500 -Dloadtest.max-error-rate=0.001}.
+ */
+@Tag("benchmark")
+public class RecipeLoadTest {
+    private static final int RATE = Integer.getInteger("loadtest.rate", 200);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("loadtest.warmup-seconds", 10));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 60));
+    private static final int CATALOG = Integer.getInteger("loadtest.catalog", 5000);
+    private static final String MIX = System.getProperty("loadtest.mix", "create:10,get:40,filter:30,update:15,delete:5");
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.001"));
+    private static final double MIN_RATE_RATIO = 0.95;
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+    private static final int SEED_CHUNK = 1000;
+    private static final int SERVINGS = 8;
+    private static final String[] INGREDIENTS = {"Chicken", "Paneer", "Onion", "Tomato", "Garlic", "Lentils", "Rice", "Potato"};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong createdSequence = new AtomicLong();
+    private final Queue<String> created = new ConcurrentLinkedQueue<>();
+
+    enum Operation {
+        CREATE, GET, FILTER, UPDATE, DELETE;
+
+        long maxP99Micros() {
+            String defaultMillis = System.getProperty("loadtest.max-p99-ms", "250");
+            return TimeUnit.MILLISECONDS.toMicros(Long.getLong("loadtest." + name().toLowerCase() + ".max-p99-ms",
+                    Long.parseLong(defaultMillis)));
+        }
+    }
+
+    @Test
+    public void runMixedWorkloadAtFixedRate() throws Exception {
+        Operation[] schedule = schedule(MIX);
+        try (BenchmarkMongo mongo = BenchmarkMongo.startInProcess();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeManagerApplication.class)
+                     .run("--server.port=0",
+                             "--spring.data.mongodb.uri=" + mongo.uri(),
+                             "--spring.data.mongodb.database=loadtest",
+                             "--logging.level.com.assignment=INFO");
+             ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(requests)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            seed(http, baseUrl);
+            run(http, requests, baseUrl, schedule, WARMUP);
+            Map<Operation, Stats> stats = run(http, requests, baseUrl, schedule, MEASUREMENT);
+            report(stats);
+            assertThresholds(stats);
+        }
+    }
+
+    /**
+     * Spreads the operations of the mix over a cycle of as many requests as the sum of the weights, so each second
+     * sees the same mix.
+     */
+    private Operation[] schedule(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.split(":");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        Assertions.assertTrue(total > 0, "loadtest.mix has no operation");
+        // interleave the operations instead of sending them in blocks of the same kind
+        List<Operation> interleaved = new ArrayList<>(total);
+        for (int step = 0; interleaved.size() < total; step++) {
+            for (Operation operation : weights.keySet()) {
+                if (step < weights.get(operation)) {
+                    interleaved.add(operation);
+                }
+            }
+        }
+        return interleaved.toArray(new Operation[0]);
+    }
+
+    private void seed(HttpClient http, String baseUrl) throws Exception {
+        for (int from = 0; from < CATALOG; from += SEED_CHUNK) {
+            List<Recipe> recipes = IntStream.range(from, Math.min(from + SEED_CHUNK, CATALOG))
+                    .mapToObj(i -> recipe("Recipe" + i, i)).toList();
+            HttpResponse<String> response = http.send(post(baseUrl + "/recipes/batch", mapper.writeValueAsString(recipes)),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode(), response.body());
+        }
+    }
+
+    /**
+     * Sends the requests at the fixed rate for the duration, each on its own virtual thread, and waits for the
+     * last ones to complete.
+     */
+    private Map<Operation, Stats> run(HttpClient http, ExecutorService requests, String baseUrl, Operation[] schedule,
+                                      Duration duration) throws InterruptedException {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long total = duration.toSeconds() * RATE;
+        long start = System.nanoTime();
+        List<Future<?>> sent = new ArrayList<>((int) total);
+        for (long i = 0; i < total; i++) {
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = schedule[(int) (i % schedule.length)];
+            sent.add(requests.submit(() -> send(http, baseUrl, operation, due, stats.get(operation))));
+        }
+        for (Future<?> request : sent) {
+            try {
+                request.get();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        stats.values().forEach(operationStats -> operationStats.elapsedNanos = elapsed);
+        return stats;
+    }
+
+    private void send(HttpClient http, String baseUrl, Operation operation, long due, Stats stats) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String deleted = null;
+        if (operation == Operation.DELETE) {
+            // deletes the recipes created by the test so the catalog keeps its size, skipped without a latency when
+            // none is left so the delete percentiles only cover the deletes sent
+            deleted = created.poll();
+            if (deleted == null) {
+                stats.skipped.increment();
+                return;
+            }
+        }
+        boolean ok;
+        try {
+            ok = switch (operation) {
+                case CREATE -> {
+                    String name = "LoadRecipe" + createdSequence.incrementAndGet();
+                    boolean createdOk = status(http, post(baseUrl + "/recipes",
+                            mapper.writeValueAsString(recipe(name, random.nextInt(CATALOG))))) == 201;
+                    if (createdOk) {
+                        created.add(name);
+                    }
+                    yield createdOk;
+                }
+                case GET -> status(http, HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/Recipe" + random.nextInt(CATALOG)))
+                        .GET().build()) == 200;
+                case FILTER -> status(http, HttpRequest.newBuilder(URI.create(baseUrl + "/recipes?servings="
+                        + (random.nextInt(SERVINGS) + 1) + "&ingredient=" + INGREDIENTS[random.nextInt(INGREDIENTS.length)]
+                        + "&limit=20")).GET().build()) == 200;
+                case UPDATE -> status(http, HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/Recipe" + random.nextInt(CATALOG)))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"servings\": " + (random.nextInt(SERVINGS) + 1) + "}"))
+                        .build()) == 200;
+                case DELETE -> status(http, HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/" + deleted))
+                        .DELETE().build()) == 200;
+            };
+        } catch (Exception ex) {
+            ok = false;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+        stats.latencies.recordValue(Math.min(latency, MAX_LATENCY));
+        if (!ok) {
+            stats.errors.increment();
+        }
+    }
+
+    private int status(HttpClient http, HttpRequest request) throws Exception {
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private Recipe recipe(String name, int seed) {
+        return new Recipe(name, List.of(
+                new Ingredient(INGREDIENTS[seed % INGREDIENTS.length], seed % 5 + 1),
+                new Ingredient(INGREDIENTS[(seed / 7) % INGREDIENTS.length], 2),
+                new Ingredient("Salt", 1)),
+                seed % SERVINGS + 1, "Cook recipe " + seed + " on a low heat", String.valueOf(seed % 3 == 0), null, null);
+    }
+
+    private void report(Map<Operation, Stats> stats) {
+        System.out.printf("%nrate=%d/s, catalog=%d, measured for %ss%n", RATE, CATALOG, MEASUREMENT.toSeconds());
+        System.out.printf("%-8s %9s %7s %8s %8s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "skipped",
+                "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        stats.forEach((operation, operationStats) -> {
+            Histogram latencies = operationStats.latencies;
+            System.out.printf("%-8s %9d %7d %8d %8.1f %9.2f %9.2f %9.2f %9.2f%n", operation.name().toLowerCase(),
+                    latencies.getTotalCount(), operationStats.errors.sum(), operationStats.skipped.sum(),
+                    operationStats.throughput(),
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()));
+        });
+    }
+
+    private void assertThresholds(Map<Operation, Stats> stats) {
+        List<String> violations = new ArrayList<>();
+        long requests = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Operation operation = entry.getKey();
+            Stats operationStats = entry.getValue();
+            long count = operationStats.latencies.getTotalCount();
+            // skipped operations were still due on time, they count for the rate reached
+            requests += count + operationStats.skipped.sum();
+            if (count == 0) {
+                continue;
+            }
+            long p99 = operationStats.latencies.getValueAtPercentile(99);
+            if (p99 > operation.maxP99Micros()) {
+                violations.add(String.format("%s p99 %.2f ms above %.2f ms", operation.name().toLowerCase(),
+                        millis(p99), millis(operation.maxP99Micros())));
+            }
+            double errorRate = operationStats.errors.sum() / (double) count;
+            if (errorRate > MAX_ERROR_RATE) {
+                violations.add(String.format("%s error rate %.4f above %.4f", operation.name().toLowerCase(), errorRate, MAX_ERROR_RATE));
+            }
+        }
+        double rate = requests / (stats.get(Operation.GET).elapsedNanos / 1e9);
+        if (rate < RATE * MIN_RATE_RATIO) {
+            violations.add(String.format("rate %.1f/s below %d/s", rate, RATE));
+        }
+        Assertions.assertTrue(violations.isEmpty(), String.join(", ", violations));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Stats {
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private volatile long elapsedNanos;
+
+        double throughput() {
+            return latencies.getTotalCount() / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a recipe to its entity and back, done once per recipe on every read and write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecipeMappingBenchmark {
+    @Param({"4", "12", "40"})
+    private int ingredients;
+
+    private Recipe recipe;
+    private RecipeEntity entity;
+    private final List<String> fields = List.of("recipeName", "servings");
+
+    @Setup
+    public void setUp() {
+        recipe = BenchmarkRecipes.recipe("ChickenTikka", ingredients);
+        entity = RecipeUtil.mapToRecipeEntity(recipe);
+        entity.setId(new ObjectId().toHexString());
+    }
+
+    @Benchmark
+    public RecipeEntity mapToRecipeEntity() {
+        return RecipeUtil.mapToRecipeEntity(recipe);
+    }
+
+    @Benchmark
+    public Recipe mapToRecipe() {
+        return RecipeUtil.maoToRecipe(entity);
+    }
+
+    @Benchmark
+    public Recipe projectRecipe() {
+        return RecipeUtil.project(recipe, fields);
+    }
+}
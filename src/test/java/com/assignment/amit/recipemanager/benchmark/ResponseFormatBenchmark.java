@@ -0,0 +1,83 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.util.RecipeProtobuf;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of writing and reading a page of recipes in each of the formats of the recipe apis. The size of the page,
+ * raw and gzipped, is printed before the measurements of each format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseFormatBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    private String format;
+
+    @Param({"4", "12", "40"})
+    private int ingredients;
+
+    private ObjectWriter pageWriter;
+    private ObjectReader pageReader;
+    private List<Recipe> page;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        pageWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Recipe.class));
+        pageReader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, Recipe.class));
+        page = IntStream.range(0, PAGE_SIZE).mapToObj(i -> BenchmarkRecipes.recipe("Recipe" + i, ingredients)).toList();
+        encodedPage = writePage();
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(encodedPage);
+        }
+        System.out.printf("%n%s page of %d recipes with %d ingredients: %d bytes, %d bytes gzipped%n",
+                format, PAGE_SIZE, ingredients, encodedPage.length, gzipped.size());
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        if (format.equals("protobuf")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            RecipeProtobuf.writeRecipes(page, out);
+            return out.toByteArray();
+        }
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Recipe> readPage() throws IOException {
+        if (format.equals("protobuf")) {
+            return RecipeProtobuf.readRecipes(new ByteArrayInputStream(encodedPage));
+        }
+        return pageReader.readValue(encodedPage);
+    }
+}
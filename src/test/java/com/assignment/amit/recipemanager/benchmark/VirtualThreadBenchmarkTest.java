@@ -0,0 +1,184 @@
+package com.assignment.amit.recipemanager.benchmark;
+
+import com.assignment.amit.recipemanager.RecipeManagerApplication;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the throughput and latency of the platform thread and the virtual thread modes of the servlet
+ * container, and of the reactive profile, with as many concurrent connections as {@code benchmark.connections} each sending its next request
+ * as soon as the previous one is answered. The caches are disabled so every request blocks on the database.
+ * Run with {@code mvn test -Pbenchmark [-Dbenchmark.connections=1200 -Dbenchmark.seconds=30 -Dbenchmark.mongodb.uri=...]}.
+ */
+@Tag("benchmark")
+public class VirtualThreadBenchmarkTest {
+    private static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 1200);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("benchmark.warmup-seconds", 10));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 30));
+    private static final int RECIPES = Integer.getInteger("benchmark.recipes", 2000);
+    private static final int SERVINGS = 8;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void compareThreadModes() throws Exception {
+        try (BenchmarkMongo mongo = BenchmarkMongo.start()) {
+            Result platform = run(mongo, "platform", "--spring.threads.virtual.enabled=false");
+            Result virtual = run(mongo, "virtual", "--spring.threads.virtual.enabled=true");
+            Result reactive = run(mongo, "reactive", "--spring.profiles.active=reactive");
+            System.out.printf("%nconnections=%d, measured for %ss%n", CONNECTIONS, MEASUREMENT.toSeconds());
+            System.out.println(Result.HEADER);
+            System.out.println(platform);
+            System.out.println(virtual);
+            System.out.println(reactive);
+            Assertions.assertTrue(platform.requests() > 0);
+            Assertions.assertTrue(virtual.requests() > 0);
+            Assertions.assertTrue(reactive.requests() > 0);
+        }
+    }
+
+    private Result run(BenchmarkMongo mongo, String mode, String modeArgument) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipeManagerApplication.class)
+                .run("--server.port=0",
+                        modeArgument,
+                        "--spring.data.mongodb.uri=" + mongo.uri(),
+                        "--spring.data.mongodb.database=benchmark_" + mode,
+                        "--recipe.cache.maximum-size=0",
+                        "--recipe.query-cache.maximum-weight=0B",
+                        "--logging.level.com.assignment=INFO");
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            seed(http, baseUrl);
+            load(http, clients, baseUrl, WARMUP);
+            return Result.of(mode, load(http, clients, baseUrl, MEASUREMENT), MEASUREMENT);
+        }
+    }
+
+    private void seed(HttpClient http, String baseUrl) throws Exception {
+        List<Recipe> recipes = IntStream.range(0, RECIPES)
+                .mapToObj(i -> TestUtil.TestRecipeBuilder.newBuilder()
+                        .withName("Recipe" + i)
+                        .withServing(i % SERVINGS + 1)
+                        .withIngredients(List.of(
+                                TestUtil.TestIngredientBuilder.newBuilder().withName("Ingredient" + i % 50).withQuantity(1).build(),
+                                TestUtil.TestIngredientBuilder.newBuilder().withName("Salt").withQuantity(1).build()))
+                        .withInstructions("Cook recipe " + i)
+                        .isVegetarian(String.valueOf(i % 2 == 0))
+                        .build())
+                .toList();
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/recipes/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(recipes)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+    }
+
+    /**
+     * Runs the closed loop clients for the duration, half of the requests read a recipe by name and the other half
+     * a page of recipes by servings. Returns the latencies of the answered requests, failures are negative.
+     */
+    private long[] load(HttpClient http, ExecutorService clients, String baseUrl, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> futures = new ArrayList<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            futures.add(clients.submit(() -> {
+                LatencyLog latencies = new LatencyLog();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String path = random.nextBoolean()
+                            ? "/recipes/Recipe" + random.nextInt(RECIPES)
+                            : "/recipes?servings=" + (random.nextInt(SERVINGS) + 1) + "&limit=20";
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                    } catch (Exception ex) {
+                        ok = false;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    latencies.add(ok ? elapsed : -elapsed);
+                }
+                return latencies.toArray();
+            }));
+        }
+        List<long[]> all = new ArrayList<>(CONNECTIONS);
+        for (Future<long[]> future : futures) {
+            all.add(future.get());
+        }
+        return all.stream().flatMapToLong(Arrays::stream).toArray();
+    }
+
+    private static final class LatencyLog {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private record Result(String mode, long requests, long errors, double throughput,
+                          double p50Millis, double p99Millis, double maxMillis) {
+        static final String HEADER = String.format("%-9s %10s %8s %10s %9s %9s %9s",
+                "mode", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+
+        static Result of(String mode, long[] latencies, Duration duration) {
+            long errors = Arrays.stream(latencies).filter(latency -> latency < 0).count();
+            long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+            return new Result(mode, latencies.length, errors,
+                    succeeded.length / (double) duration.toSeconds(),
+                    percentile(succeeded, 0.50), percentile(succeeded, 0.99), percentile(succeeded, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %10d %8d %10.1f %9.2f %9.2f %9.2f",
+                    mode, requests, errors, throughput, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.cache.RecipeCache;
+import com.assignment.amit.recipemanager.cache.RecipeQueryCache;
+import com.assignment.amit.recipemanager.index.QueryAdvisor;
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import com.assignment.amit.recipemanager.model.CacheStatistics;
+import com.assignment.amit.recipemanager.model.QueryShapeReport;
+import com.assignment.amit.recipemanager.model.SlowRequestReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AdminControllerTest {
+    @Mock
+    private RecipeCache recipeCache;
+    @Mock
+    private RecipeQueryCache recipeQueryCache;
+    @Mock
+    private QueryAdvisor queryAdvisor;
+    @Mock
+    private SlowRequestTracer slowRequestTracer;
+
+    @Test
+    public void testGetCacheStatistics() {
+        CacheStatistics statistics = new CacheStatistics(10, 2, 1, 5);
+        when(recipeCache.statistics()).thenReturn(statistics);
+
+        ResponseEntity<CacheStatistics> response = new AdminController(recipeCache, recipeQueryCache, queryAdvisor, slowRequestTracer).getCacheStatistics();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statistics, response.getBody());
+    }
+
+    @Test
+    public void testGetQueryCacheStatistics() {
+        CacheStatistics statistics = new CacheStatistics(3, 4, 0, 2);
+        when(recipeQueryCache.statistics()).thenReturn(statistics);
+
+        ResponseEntity<CacheStatistics> response = new AdminController(recipeCache, recipeQueryCache, queryAdvisor, slowRequestTracer).getQueryCacheStatistics();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statistics, response.getBody());
+    }
+
+    @Test
+    public void testGetQueryAdvice() {
+        List<QueryShapeReport> report = List.of(new QueryShapeReport("{\"servings\": \"?\"}", 4, 1, 12.5, 120,
+                List.of("COLLSCAN"), List.of(), true, "{\"servings\": 1}"));
+        when(queryAdvisor.report()).thenReturn(report);
+
+        ResponseEntity<List<QueryShapeReport>> response = new AdminController(recipeCache, recipeQueryCache, queryAdvisor, slowRequestTracer).getQueryAdvice();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(report, response.getBody());
+    }
+
+    @Test
+    public void testGetSlowRequests() {
+        List<SlowRequestReport> report = List.of(new SlowRequestReport(Instant.now(), "GET /recipes?servings=?", 200,
+                1500, 1200, 100, 150, 1, "{\"servings\": \"?\"}", false, 100, 90000L, 0L, List.of("COLLSCAN"), List.of()));
+        when(slowRequestTracer.report()).thenReturn(report);
+
+        ResponseEntity<List<SlowRequestReport>> response = new AdminController(recipeCache, recipeQueryCache, queryAdvisor, slowRequestTracer).getSlowRequests();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(report, response.getBody());
+    }
+}
@@ -0,0 +1,132 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.assignment.amit.recipemanager.service.ReactiveRecipeService;
+import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveRecipeControllerTest {
+    @Mock
+    private ReactiveRecipeService recipeService;
+
+    @Test
+    public void testAddRecipe() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withServing(5).build();
+        when(recipeService.addRecipe(any())).thenReturn(Mono.just(recipe));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).addRecipe(recipe))
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED && recipe.equals(response.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testAddRecipeWhenAlreadyExist() {
+        when(recipeService.addRecipe(any())).thenReturn(Mono.error(new RecipeAlreadyExistException("Already Exist")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).addRecipe(TestUtil.TestRecipeBuilder.newBuilder().build()))
+                .verifyError(RecipeAlreadyExistException.class);
+    }
+
+    @Test
+    public void testGetRecipeWhenNotFound() {
+        when(recipeService.getRecipe("PaneerLababdar", null)).thenReturn(Mono.error(new RecipeNotFoundException("Recipe Not available")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).getRecipe("PaneerLababdar", null, null))
+                .verifyErrorMatches(ex -> ex instanceof ResponseStatusException statusException
+                        && statusException.getStatusCode().equals(HttpStatusCode.valueOf(404)));
+    }
+
+    @Test
+    public void testGetRecipeWithMatchingETagShouldNotReadRecipe() {
+        when(recipeService.getRecipeETag("PaneerLababdar", null)).thenReturn(Mono.just("\"abc-2\""));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).getRecipe("PaneerLababdar", null, "W/\"abc-2\""))
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.NOT_MODIFIED
+                        && "\"abc-2\"".equals(response.getHeaders().getETag()))
+                .verifyComplete();
+        verify(recipeService, never()).getRecipe(any(), any());
+    }
+
+    @Test
+    public void testGetRecipesByFilterReturnsNextCursorWithoutPagingParams() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").build();
+        when(recipeService.getRecipesWithFilter(eq(Map.of("isVegetarian", "true")), eq("abc"), eq(1), isNull()))
+                .thenReturn(Mono.just(new RecipePage(List.of(recipe), "def")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).getRecipesByFilter("abc", 1, null,
+                        Map.of("isVegetarian", "true", "cursor", "abc", "limit", "1")))
+                .expectNextMatches(response -> "def".equals(response.getHeaders().getFirst(RecipeController.NEXT_CURSOR_HEADER))
+                        && List.of(recipe).equals(response.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testUpdateRecipesByFilterWhenInvalid() {
+        when(recipeService.updateRecipesWithFilter(any(), any())).thenReturn(Mono.error(new InvalidRequestException("Filter is required")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).updateRecipesByFilter(Map.of(),
+                        TestUtil.TestRecipeBuilder.newBuilder().build()))
+                .verifyError(InvalidRequestException.class);
+    }
+
+    @Test
+    public void testPatchRecipeWithoutIfMatchShouldRequirePrecondition() {
+        StepVerifier.create(new ReactiveRecipeController(recipeService).patchRecipe("ChickenTikka", null,
+                        TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build()))
+                .verifyErrorMatches(ex -> ex instanceof ResponseStatusException statusException
+                        && statusException.getStatusCode().equals(HttpStatusCode.valueOf(428)));
+        verifyNoInteractions(recipeService);
+    }
+
+    @Test
+    public void testPatchRecipeWhenModifiedShouldFailPrecondition() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        when(recipeService.updateRecipe("ChickenTikka", recipe, "\"abc-1\"")).thenReturn(Mono.error(new PreconditionFailedException("Recipe Modified")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).patchRecipe("ChickenTikka", "\"abc-1\"", recipe))
+                .verifyError(PreconditionFailedException.class);
+    }
+
+    @Test
+    public void testDeleteRecipeWhenError() {
+        when(recipeService.deleteRecipe("PaneerLababdar")).thenReturn(Mono.error(new RuntimeException("Internal Error")));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).deleteRecipe("PaneerLababdar"))
+                .verifyErrorMatches(ex -> ex instanceof ResponseStatusException statusException
+                        && statusException.getStatusCode().equals(HttpStatusCode.valueOf(500)));
+    }
+
+    @Test
+    public void testStreamRecipesByFilter() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").build();
+        when(recipeService.streamRecipesWithFilter(Map.of("isVegetarian", "true"), "recipeName")).thenReturn(Flux.just(recipe, recipe));
+
+        StepVerifier.create(new ReactiveRecipeController(recipeService).streamRecipesByFilter("recipeName",
+                        Map.of("isVegetarian", "true", "fields", "recipeName")))
+                .expectNext(recipe, recipe)
+                .verifyComplete();
+    }
+}
@@ -1,27 +1,45 @@
 package com.assignment.amit.recipemanager.controller;
 
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
 import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
 import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
 import com.assignment.amit.recipemanager.model.Ingredient;
 import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeCount;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
 import com.assignment.amit.recipemanager.service.RecipeService;
 import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,7 +53,7 @@ public class RecipeControllerTest {
         Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withId("1").withName("PaneerLababdar").withIngredients(ingredient)
                 .withServing(5).withInstructions("Start with frying the paneer").build();
         when(recipeService.addRecipe(any())).thenReturn(recipe);
-        ResponseEntity<Recipe> storedRecipeResponse = new RecipeController(recipeService).addRecipe(recipe);
+        ResponseEntity<Recipe> storedRecipeResponse = new RecipeController(recipeService, new ObjectMapper()).addRecipe(recipe);
         verify(recipeService, times(1)).addRecipe(any());
 
         assertEquals(HttpStatus.CREATED, storedRecipeResponse.getStatusCode());
@@ -51,7 +69,7 @@ public class RecipeControllerTest {
         when(recipeService.addRecipe(any())).thenThrow(new RecipeAlreadyExistException("Already Exist"));
 
         RecipeAlreadyExistException ex = assertThrows(RecipeAlreadyExistException.class, () -> {
-            new RecipeController(recipeService).addRecipe(recipe);
+            new RecipeController(recipeService, new ObjectMapper()).addRecipe(recipe);
         });
         verify(recipeService, times(1)).addRecipe(any());
 
@@ -67,7 +85,7 @@ public class RecipeControllerTest {
         when(recipeService.addRecipe(any())).thenThrow(new RuntimeException("Internal Error"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).addRecipe(recipe);
+            new RecipeController(recipeService, new ObjectMapper()).addRecipe(recipe);
         });
         verify(recipeService, times(1)).addRecipe(any());
         assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
@@ -75,26 +93,101 @@ public class RecipeControllerTest {
 
     }
 
+    @Test
+    public void testAddRecipes() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        List<RecipeBatchResult> results = List.of(new RecipeBatchResult("PaneerLababdar", RecipeBatchResult.Status.DUPLICATE));
+        when(recipeService.addRecipes(any())).thenReturn(results);
+
+        ResponseEntity<List<RecipeBatchResult>> response = new RecipeController(recipeService, new ObjectMapper()).addRecipes(List.of(recipe));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
+    @Test
+    public void testAddRecipesWhenError() {
+        when(recipeService.addRecipes(any())).thenThrow(new RuntimeException("Internal Error"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).addRecipes(List.of());
+        });
+        assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
+    }
+
     @Test
     public void testGetRecipeWhenNoFilter() {
         List<Ingredient> ingredient = List.of(TestUtil.TestIngredientBuilder.newBuilder().withId("1").withName("Coriander").withQuantity(2).build());
         Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withId("1").withName("PaneerLababdar").withIngredients(ingredient)
                 .withServing(5).withInstructions("Start with frying the paneer").build();
-        when(recipeService.getAllRecipesWithFiler(any())).thenReturn(List.of(recipe));
-        List<Recipe> storedRecipe = new RecipeController(recipeService).getRecipesByFilter(new HashMap<>());
-        verify(recipeService, times(1)).getAllRecipesWithFiler(any());
-        assertEquals(1, storedRecipe.size());
+        when(recipeService.getRecipesWithFilter(any(), any(), any(), any())).thenReturn(new RecipePage(List.of(recipe), null));
+        ResponseEntity<List<Recipe>> storedRecipe = new RecipeController(recipeService, new ObjectMapper()).getRecipesByFilter(null, null, null, new HashMap<>());
+        verify(recipeService, times(1)).getRecipesWithFilter(any(), any(), any(), any());
+        assertEquals(1, Objects.requireNonNull(storedRecipe.getBody()).size());
+        assertFalse(storedRecipe.getHeaders().containsKey(RecipeController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testGetRecipeShouldReturnNextCursorAndStripPagingParams() {
+        List<Ingredient> ingredient = List.of(TestUtil.TestIngredientBuilder.newBuilder().withId("1").withName("Coriander").withQuantity(2).build());
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withId("1").withName("PaneerLababdar").withIngredients(ingredient)
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        when(recipeService.getRecipesWithFilter(eq(Map.of("servings", "5")), eq("abc"), eq(1), eq("recipeName")))
+                .thenReturn(new RecipePage(List.of(recipe), "def"));
+
+        ResponseEntity<List<Recipe>> storedRecipe = new RecipeController(recipeService, new ObjectMapper())
+                .getRecipesByFilter("abc", 1, "recipeName", Map.of("servings", "5", "cursor", "abc", "limit", "1", "fields", "recipeName"));
+
+        assertEquals("def", storedRecipe.getHeaders().getFirst(RecipeController.NEXT_CURSOR_HEADER));
+        assertEquals(1, Objects.requireNonNull(storedRecipe.getBody()).size());
+    }
+
+    @Test
+    public void testGetRecipeWhenInvalidCursor() {
+        when(recipeService.getRecipesWithFilter(any(), any(), any(), any())).thenThrow(new InvalidRequestException("Invalid cursor"));
+
+        assertThrows(InvalidRequestException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).getRecipesByFilter("abc", null, null, new HashMap<>());
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamRecipesAsNdjson() throws IOException {
+        List<Ingredient> ingredient = List.of(TestUtil.TestIngredientBuilder.newBuilder().withName("Coriander").withQuantity(2).build());
+        Recipe paneer = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(ingredient)
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        Recipe chicken = TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenTikka").withIngredients(ingredient)
+                .withServing(4).withInstructions("Marinate").build();
+        doAnswer(invocation -> {
+            Consumer<Recipe> consumer = invocation.getArgument(2);
+            consumer.accept(paneer);
+            consumer.accept(chicken);
+            return null;
+        }).when(recipeService).streamRecipesWithFilter(eq(Map.of("isVegetarian", "true")), isNull(), any());
+
+        ResponseEntity<StreamingResponseBody> response = new RecipeController(recipeService, new ObjectMapper())
+                .streamRecipesByFilter(null, Map.of("isVegetarian", "true", "limit", "5"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Objects.requireNonNull(response.getBody()).writeTo(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertEquals(2, lines.length);
+        assertEquals(paneer, new ObjectMapper().readValue(lines[0], Recipe.class));
+        assertEquals(chicken, new ObjectMapper().readValue(lines[1], Recipe.class));
     }
 
     @Test
     public void testGetAllRecipeWhenError() {
 
-        when(recipeService.getAllRecipesWithFiler(any())).thenThrow(new RuntimeException("Internal Error"));
+        when(recipeService.getRecipesWithFilter(any(), any(), any(), any())).thenThrow(new RuntimeException("Internal Error"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).getRecipesByFilter(new HashMap<>());
+            new RecipeController(recipeService, new ObjectMapper()).getRecipesByFilter(null, null, null, new HashMap<>());
         });
-        verify(recipeService, times(1)).getAllRecipesWithFiler(any());
+        verify(recipeService, times(1)).getRecipesWithFilter(any(), any(), any(), any());
         assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
         assertEquals("Internal Error", ex.getReason());
 
@@ -107,21 +200,48 @@ public class RecipeControllerTest {
         Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withId("1").withName("PaneerLababdar").withIngredients(ingredient)
                 .withServing(5).withInstructions("Start with frying the paneer").build();
 
-        when(recipeService.getRecipe(any())).thenReturn(recipe);
-        Recipe storedRecipe = new RecipeController(recipeService).getRecipe("PaneerLababdar").getBody();
-        verify(recipeService, times(1)).getRecipe(any());
+        when(recipeService.getRecipe(any(), any())).thenReturn(recipe);
+        Recipe storedRecipe = new RecipeController(recipeService, new ObjectMapper()).getRecipe("PaneerLababdar", null, null).getBody();
+        verify(recipeService, times(1)).getRecipe(any(), any());
         assertEquals("PaneerLababdar", Objects.requireNonNull(storedRecipe).recipeName());
 
     }
 
+    @Test
+    public void testGetRecipeByNameWithMatchingETagShouldNotReadRecipe() {
+        when(recipeService.getRecipeETag("PaneerLababdar", null)).thenReturn("\"abc-2\"");
+
+        ResponseEntity<Recipe> response = new RecipeController(recipeService, new ObjectMapper())
+                .getRecipe("PaneerLababdar", null, "\"abc-1\", W/\"abc-2\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"abc-2\"", response.getHeaders().getETag());
+        verify(recipeService, never()).getRecipe(any(), any());
+    }
+
+    @Test
+    public void testGetRecipeByNameWithStaleETagShouldReturnRecipe() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withServing(5).build();
+        when(recipeService.getRecipeETag("PaneerLababdar", null)).thenReturn("\"abc-2\"");
+        when(recipeService.getRecipe("PaneerLababdar", null)).thenReturn(recipe);
+        when(recipeService.eTag(recipe, null)).thenReturn("\"abc-2\"");
+
+        ResponseEntity<Recipe> response = new RecipeController(recipeService, new ObjectMapper())
+                .getRecipe("PaneerLababdar", null, "\"abc-1\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"abc-2\"", response.getHeaders().getETag());
+        assertEquals(recipe, response.getBody());
+    }
+
     @Test
     public void testGetRecipeByNameWhenNotFound() {
-        when(recipeService.getRecipe(any())).thenThrow(new RecipeNotFoundException("Recipe Not Found"));
+        when(recipeService.getRecipe(any(), any())).thenThrow(new RecipeNotFoundException("Recipe Not Found"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).getRecipe("PaneerLababdar").getBody();
+            new RecipeController(recipeService, new ObjectMapper()).getRecipe("PaneerLababdar", null, null).getBody();
         });
-        verify(recipeService, times(1)).getRecipe(any());
+        verify(recipeService, times(1)).getRecipe(any(), any());
         assertEquals(HttpStatusCode.valueOf(404), ex.getStatusCode());
         assertEquals("Recipe Not Found", ex.getReason());
 
@@ -129,12 +249,12 @@ public class RecipeControllerTest {
 
     @Test
     public void testGetRecipeByNameWhenError() {
-        when(recipeService.getRecipe(any())).thenThrow(new RuntimeException("Internal Error"));
+        when(recipeService.getRecipe(any(), any())).thenThrow(new RuntimeException("Internal Error"));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).getRecipe("PaneerLababdar").getBody();
+            new RecipeController(recipeService, new ObjectMapper()).getRecipe("PaneerLababdar", null, null).getBody();
         });
-        verify(recipeService, times(1)).getRecipe(any());
+        verify(recipeService, times(1)).getRecipe(any(), any());
         assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
         assertEquals("Internal Error", ex.getReason());
 
@@ -145,7 +265,7 @@ public class RecipeControllerTest {
     public void testDeleteRecipeByName() {
         doNothing().when(recipeService).deleteRecipe(any());
 
-        ResponseEntity<Recipe> storedRecipe = new RecipeController(recipeService).deleteRecipe("PaneerLababdar");
+        ResponseEntity<Recipe> storedRecipe = new RecipeController(recipeService, new ObjectMapper()).deleteRecipe("PaneerLababdar");
 
         verify(recipeService, times(1)).deleteRecipe(any());
         assertEquals(HttpStatus.OK, storedRecipe.getStatusCode());
@@ -158,7 +278,7 @@ public class RecipeControllerTest {
         doThrow(new RecipeNotFoundException("Recipe Not Found")).when(recipeService).deleteRecipe(any());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).deleteRecipe("PaneerLababdar").getBody();
+            new RecipeController(recipeService, new ObjectMapper()).deleteRecipe("PaneerLababdar").getBody();
         });
         verify(recipeService, times(1)).deleteRecipe(any());
         assertEquals(HttpStatusCode.valueOf(404), ex.getStatusCode());
@@ -171,7 +291,7 @@ public class RecipeControllerTest {
         doThrow(new RuntimeException("Internal Error")).when(recipeService).deleteRecipe(any());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).deleteRecipe("PaneerLababdar").getBody();
+            new RecipeController(recipeService, new ObjectMapper()).deleteRecipe("PaneerLababdar").getBody();
         });
         verify(recipeService, times(1)).deleteRecipe(any());
         assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
@@ -187,7 +307,7 @@ public class RecipeControllerTest {
 
         when(recipeService.updateRecipe(any(), any())).thenReturn(recipe);
 
-        ResponseEntity<Recipe> storedRecipe = new RecipeController(recipeService).updateRecipe("PaneerLababdar", recipe);
+        ResponseEntity<Recipe> storedRecipe = new RecipeController(recipeService, new ObjectMapper()).updateRecipe("PaneerLababdar", recipe);
 
         verify(recipeService, times(1)).updateRecipe(any(), any());
         assertEquals(HttpStatus.OK, storedRecipe.getStatusCode());
@@ -203,7 +323,7 @@ public class RecipeControllerTest {
         doThrow(RecipeNotFoundException.class).when(recipeService).updateRecipe(any(), any());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).updateRecipe("PaneerLababdar", recipe);
+            new RecipeController(recipeService, new ObjectMapper()).updateRecipe("PaneerLababdar", recipe);
         });
 
         verify(recipeService, times(1)).updateRecipe(any(), any());
@@ -220,7 +340,7 @@ public class RecipeControllerTest {
         doThrow(RuntimeException.class).when(recipeService).updateRecipe(any(), any());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-            new RecipeController(recipeService).updateRecipe("PaneerLababdar", recipe);
+            new RecipeController(recipeService, new ObjectMapper()).updateRecipe("PaneerLababdar", recipe);
         });
 
         verify(recipeService, times(1)).updateRecipe(any(), any());
@@ -228,4 +348,106 @@ public class RecipeControllerTest {
         assertEquals("Internal Error", ex.getReason());
 
     }
+
+    @Test
+    public void testDeleteRecipesByFilter() {
+        when(recipeService.deleteRecipesWithFilter(any())).thenReturn(2L);
+
+        ResponseEntity<RecipeCount> response = new RecipeController(recipeService, new ObjectMapper())
+                .deleteRecipesByFilter(Map.of("isVegetarian", "false"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new RecipeCount(2), response.getBody());
+    }
+
+    @Test
+    public void testDeleteRecipesByFilterWhenNoFilter() {
+        when(recipeService.deleteRecipesWithFilter(any())).thenThrow(new InvalidRequestException("Filter is required"));
+
+        assertThrows(InvalidRequestException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).deleteRecipesByFilter(Map.of());
+        });
+    }
+
+    @Test
+    public void testUpdateRecipesByFilter() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(6).build();
+        when(recipeService.updateRecipesWithFilter(any(), any())).thenReturn(3L);
+
+        ResponseEntity<RecipeCount> response = new RecipeController(recipeService, new ObjectMapper())
+                .updateRecipesByFilter(Map.of("ingredient", "Chicken"), recipe);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new RecipeCount(3), response.getBody());
+    }
+
+    @Test
+    public void testUpdateRecipesByFilterWhenError() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(6).build();
+        when(recipeService.updateRecipesWithFilter(any(), any())).thenThrow(new RuntimeException("Internal Error"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).updateRecipesByFilter(Map.of("ingredient", "Chicken"), recipe);
+        });
+        assertEquals(HttpStatusCode.valueOf(500), ex.getStatusCode());
+    }
+
+    @Test
+    public void testUpdateRecipeByNameWhenRenamedToExistingRecipe() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenCurry").build();
+        doThrow(new RecipeAlreadyExistException("Recipe Already Exist")).when(recipeService).updateRecipe(any(), any());
+
+        assertThrows(RecipeAlreadyExistException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).updateRecipe("ChickenTikka", recipe);
+        });
+    }
+
+    @Test
+    public void testPatchRecipeShouldReturnNewETag() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        Recipe updated = TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenTikka").withServing(10).build();
+        when(recipeService.updateRecipe("ChickenTikka", recipe, "\"abc-1\"")).thenReturn(updated);
+        when(recipeService.eTag(updated, null)).thenReturn("\"abc-2\"");
+
+        ResponseEntity<Recipe> response = new RecipeController(recipeService, new ObjectMapper())
+                .patchRecipe("ChickenTikka", "\"abc-1\"", recipe);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"abc-2\"", response.getHeaders().getETag());
+        assertEquals(updated, response.getBody());
+    }
+
+    @Test
+    public void testPatchRecipeWithoutIfMatchShouldRequirePrecondition() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).patchRecipe("ChickenTikka", null, recipe);
+        });
+        assertEquals(HttpStatus.PRECONDITION_REQUIRED, ex.getStatusCode());
+        verifyNoInteractions(recipeService);
+    }
+
+    @Test
+    public void testPatchRecipeWhenModifiedShouldFailPrecondition() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        doThrow(new PreconditionFailedException("Recipe Modified")).when(recipeService).updateRecipe(any(), any(), any());
+
+        assertThrows(PreconditionFailedException.class, () -> {
+            new RecipeController(recipeService, new ObjectMapper()).patchRecipe("ChickenTikka", "\"abc-1\"", recipe);
+        });
+    }
+
+    @Test
+    public void testGetRecipeFacets() {
+        RecipeFacets facets = new RecipeFacets(2, Map.of("true", 2L), Map.of(4, 2L),
+                List.of(new RecipeFacets.IngredientCount("Paneer", 2)));
+        when(recipeService.getRecipeFacets(Map.of("isVegetarian", "true"), 5)).thenReturn(facets);
+
+        ResponseEntity<RecipeFacets> response = new RecipeController(recipeService, new ObjectMapper())
+                .getRecipeFacets(5, Map.of("isVegetarian", "true", "top", "5"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(facets, response.getBody());
+    }
 }
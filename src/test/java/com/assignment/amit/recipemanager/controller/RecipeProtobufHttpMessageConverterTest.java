@@ -0,0 +1,104 @@
+package com.assignment.amit.recipemanager.controller;
+
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecipeProtobufHttpMessageConverterTest {
+    private static final Type RECIPE_LIST = new ParameterizedTypeReference<List<Recipe>>() {
+    }.getType();
+
+    private final RecipeProtobufHttpMessageConverter converter = new RecipeProtobufHttpMessageConverter();
+
+    @Test
+    public void testWriteAndReadRecipesShouldKeepMissingFieldsNull() throws IOException {
+        List<Recipe> recipes = List.of(
+                new Recipe("PaneerLababdar", List.of(new Ingredient("Paneer", 2), new Ingredient("Crème", 0)), 4,
+                        "Start with frying the paneer", "true", null, null),
+                new Recipe("ChickenTikka", null, null, null, "false", null, null));
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(recipes, RECIPE_LIST, RecipeProtobufHttpMessageConverter.PROTOBUF, output);
+        Object read = converter.read(RECIPE_LIST, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertEquals(recipes, read);
+        assertEquals("recipemanager.RecipeList", output.getHeaders().getFirst(RecipeProtobufHttpMessageConverter.MESSAGE_HEADER));
+    }
+
+    @Test
+    public void testWrittenRecipeShouldFollowTheSchema() throws Exception {
+        Recipe recipe = new Recipe("PaneerLababdar", List.of(new Ingredient("Paneer", 2)), 4, null, "true", null, null);
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        converter.write(recipe, Recipe.class, RecipeProtobufHttpMessageConverter.PROTOBUF, output);
+        DynamicMessage message = DynamicMessage.parseFrom(schema().findMessageTypeByName("Recipe"), output.getBodyAsBytes());
+
+        Map<String, Object> fields = message.getAllFields().entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().getName(), Map.Entry::getValue));
+        assertEquals("PaneerLababdar", fields.get("recipe_name"));
+        assertEquals(4, fields.get("servings"));
+        assertEquals("true", fields.get("is_vegetarian"));
+        assertFalse(fields.containsKey("instructions"));
+        DynamicMessage ingredient = (DynamicMessage) ((List<?>) fields.get("ingredients")).get(0);
+        assertEquals("Paneer", ingredient.getField(ingredient.getDescriptorForType().findFieldByName("name")));
+        assertEquals(2, ingredient.getField(ingredient.getDescriptorForType().findFieldByName("quantity")));
+    }
+
+    @Test
+    public void testConverterShouldOnlyHandleRecipes() {
+        MediaType protobuf = RecipeProtobufHttpMessageConverter.PROTOBUF;
+
+        assertTrue(converter.canWrite(RECIPE_LIST, List.class, protobuf));
+        assertTrue(converter.canWrite(Recipe.class, Recipe.class, protobuf));
+        assertTrue(converter.canRead(RECIPE_LIST, null, protobuf));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<List<String>>() {
+        }.getType(), List.class, protobuf));
+        assertFalse(converter.canWrite(Map.class, Map.class, protobuf));
+        assertFalse(converter.canWrite(Recipe.class, Recipe.class, MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Descriptor of proto/recipe.proto, built by hand as the build does not run protoc.
+     */
+    private static Descriptors.FileDescriptor schema() throws Descriptors.DescriptorValidationException {
+        DescriptorProto ingredient = DescriptorProto.newBuilder().setName("Ingredient")
+                .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("quantity", 2, FieldDescriptorProto.Type.TYPE_INT32))
+                .build();
+        DescriptorProto recipe = DescriptorProto.newBuilder().setName("Recipe")
+                .addField(field("recipe_name", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("ingredients", 2, FieldDescriptorProto.Type.TYPE_MESSAGE).toBuilder()
+                        .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED).setTypeName(".recipemanager.Ingredient"))
+                .addField(field("servings", 3, FieldDescriptorProto.Type.TYPE_INT32))
+                .addField(field("instructions", 4, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("is_vegetarian", 5, FieldDescriptorProto.Type.TYPE_STRING))
+                .build();
+        FileDescriptorProto file = FileDescriptorProto.newBuilder().setName("recipe.proto").setPackage("recipemanager")
+                .setSyntax("proto3").addMessageType(ingredient).addMessageType(recipe).build();
+        return Descriptors.FileDescriptor.buildFrom(file, new Descriptors.FileDescriptor[0]);
+    }
+
+    private static FieldDescriptorProto field(String name, int number, FieldDescriptorProto.Type type) {
+        return FieldDescriptorProto.newBuilder().setName(name).setNumber(number).setType(type)
+                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL).build();
+    }
+}
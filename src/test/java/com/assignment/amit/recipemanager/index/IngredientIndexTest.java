@@ -0,0 +1,125 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.IngredientEntity;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.query.FilterCondition;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IngredientIndexTest {
+    @Mock
+    MongoTemplate mongoTemplate;
+
+    private final ObjectId chickenTikka = new ObjectId("000000000000000000000001");
+    private final ObjectId paneerLababdar = new ObjectId("000000000000000000000002");
+    private final ObjectId dalMakhani = new ObjectId("000000000000000000000003");
+    private IngredientIndex ingredientIndex;
+
+    @BeforeEach
+    public void setUp() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getIngredientIndex().setEnabled(true);
+        ingredientIndex = new IngredientIndex(mongoTemplate, properties);
+        when(mongoTemplate.getCollectionName(RecipeEntity.class)).thenReturn("recipeEntity");
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("recipeEntity"))).thenReturn(Stream.of(
+                recipe(chickenTikka, "ChickenTikka", "Chicken", "Onion"),
+                recipe(paneerLababdar, "PaneerLababdar", "Paneer", "Onion"),
+                recipe(dalMakhani, "DalMakhani", "Lentils", "Butter")));
+        ingredientIndex.load();
+    }
+
+    @Test
+    public void testShouldCombineIngredientConditions() {
+        assertEquals(List.of(chickenTikka, paneerLababdar), ids("Onion"));
+        assertEquals(List.of(paneerLababdar, dalMakhani), ids("!Chicken"));
+        assertEquals(List.of(chickenTikka, dalMakhani), ids("Chicken|Butter"));
+        assertEquals(List.of(dalMakhani), ids("!Chicken|Paneer"));
+        assertEquals(List.of(paneerLababdar), ids("Onion", "!Chicken"));
+        assertEquals(List.of(), ids("Saffron"));
+    }
+
+    @Test
+    public void testShouldReturnIdsAfterCursorUpToMax() {
+        List<FilterCondition> conditions = conditions("!Saffron");
+
+        assertEquals(List.of(chickenTikka, paneerLababdar), ingredientIndex.match(conditions, null, 2).orElseThrow());
+        assertEquals(List.of(dalMakhani), ingredientIndex.match(conditions, paneerLababdar, 2).orElseThrow());
+        assertEquals(List.of(paneerLababdar, dalMakhani),
+                ingredientIndex.match(conditions, new ObjectId("000000000000000000000001"), 5).orElseThrow());
+    }
+
+    @Test
+    public void testShouldApplyWrites() {
+        ObjectId palakPaneer = new ObjectId("000000000000000000000004");
+        ingredientIndex.put(entity(palakPaneer, "PalakPaneer", "Paneer", "Spinach"));
+        ingredientIndex.put(entity(chickenTikka, "ChickenTikka", "Chicken", "Yogurt"));
+        ingredientIndex.remove("DalMakhani");
+
+        assertEquals(List.of(paneerLababdar, palakPaneer), ids("Paneer"));
+        assertEquals(List.of(paneerLababdar), ids("Onion"));
+        assertEquals(List.of(chickenTikka), ids("Yogurt"));
+        assertEquals(List.of(), ids("Butter"));
+    }
+
+    @Test
+    public void testShouldKeepIdOrderWhenIdsAreNotAddedInOrder() {
+        ObjectId older = new ObjectId("000000000000000000000000");
+        ingredientIndex.remove("PaneerLababdar");
+        ingredientIndex.put(entity(older, "PalakPaneer", "Paneer"));
+        ingredientIndex.put(entity(paneerLababdar, "PaneerLababdar", "Paneer"));
+
+        assertEquals(List.of(older, paneerLababdar), ids("Paneer"));
+        assertEquals(List.of(paneerLababdar, dalMakhani), ingredientIndex.match(conditions("!Saffron"), chickenTikka, 5).orElseThrow());
+    }
+
+    @Test
+    public void testShouldNotAnswerWhenDisabled() {
+        IngredientIndex disabled = new IngredientIndex(mongoTemplate, new RecipeProperties());
+        disabled.put(entity(chickenTikka, "ChickenTikka", "Chicken"));
+
+        assertTrue(disabled.match(conditions("Chicken"), null, 10).isEmpty());
+    }
+
+    @Test
+    public void testShouldNotAnswerRangeConditions() {
+        assertTrue(ingredientIndex.match(conditions("gt:Chicken"), null, 10).isEmpty());
+    }
+
+    private List<ObjectId> ids(String... conditions) {
+        return ingredientIndex.match(conditions(conditions), null, 10).orElseThrow();
+    }
+
+    private static List<FilterCondition> conditions(String... conditions) {
+        FilterQueryCompiler filterQueryCompiler = new FilterQueryCompiler(new RecipeProperties());
+        return Stream.of(conditions).flatMap(condition -> filterQueryCompiler.parse("ingredient", condition).stream()).toList();
+    }
+
+    private static Document recipe(ObjectId id, String recipeName, String... ingredients) {
+        return new Document("_id", id).append("recipeName", recipeName)
+                .append("ingredients", Stream.of(ingredients).map(name -> new Document("name", name)).toList());
+    }
+
+    private static RecipeEntity entity(ObjectId id, String recipeName, String... ingredients) {
+        return new RecipeEntity(id.toHexString(), recipeName, 2,
+                Stream.of(ingredients).map(name -> new IngredientEntity(name, 1)).toList(), "", "true", 0L);
+    }
+}
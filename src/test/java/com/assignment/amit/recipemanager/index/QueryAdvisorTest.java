@@ -0,0 +1,126 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.QueryShapeReport;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class QueryAdvisorTest {
+    @Mock
+    MongoTemplate mongoTemplate;
+    @Mock
+    MongoDatabase mongoDatabase;
+
+    @Test
+    public void testShouldGroupQueriesByShape() {
+        QueryAdvisor queryAdvisor = new QueryAdvisor(mongoTemplate, new RecipeProperties());
+
+        queryAdvisor.record(servingsPage(4, null), Duration.ofMillis(20));
+        queryAdvisor.record(servingsPage(2, new ObjectId()), Duration.ofMillis(250));
+        queryAdvisor.record(servingsPage(6, null), Duration.ofMillis(30));
+
+        verifyNoInteractions(mongoTemplate);
+        stubExplain(new Document("stage", "LIMIT").append("inputStage", new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN").append("indexName", "servings_id"))));
+        List<QueryShapeReport> report = queryAdvisor.report();
+
+        assertEquals(2, report.size());
+        QueryShapeReport withCursor = report.get(0);
+        assertEquals("{\"servings\": \"?\", \"_id\": {\"$gt\": \"?\"}} sort {\"_id\": 1}", withCursor.shape());
+        assertEquals(1, withCursor.slowCount());
+        QueryShapeReport firstPage = report.get(1);
+        assertEquals("{\"servings\": \"?\"} sort {\"_id\": 1}", firstPage.shape());
+        assertEquals(2, firstPage.count());
+        assertEquals(0, firstPage.slowCount());
+        assertEquals(25, firstPage.averageMillis(), 0.01);
+        assertEquals(30, firstPage.maxMillis(), 0.01);
+        assertEquals(List.of("LIMIT", "FETCH", "IXSCAN"), firstPage.stages());
+        assertEquals(List.of("servings_id"), firstPage.indexes());
+        assertFalse(firstPage.collectionScan());
+        assertNull(firstPage.suggestedIndex());
+    }
+
+    @Test
+    public void testShouldSuggestIndexForCollectionScan() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getSearch().setRegexEnabled(true);
+        QueryAdvisor queryAdvisor = new QueryAdvisor(mongoTemplate, properties);
+        Query query = new FilterQueryCompiler(properties).compile(Map.of("instructions", "oven", "isVegetarian", "false", "ingredient", "!Chicken"))
+                .with(Sort.by(Sort.Direction.ASC, "_id")).limit(101);
+        queryAdvisor.record(query, Duration.ofMillis(5));
+        ArgumentCaptor<Document> explainCaptor = stubExplain(new Document("stage", "COLLSCAN"));
+
+        QueryShapeReport report = queryAdvisor.report().get(0);
+        queryAdvisor.report();
+
+        assertTrue(report.collectionScan());
+        assertEquals("{\"isVegetarian\": 1, \"_id\": 1, \"ingredients.name\": 1, \"instructions\": 1}", report.suggestedIndex());
+        Document find = explainCaptor.getValue().get("explain", Document.class);
+        assertEquals("recipeEntity", find.getString("find"));
+        assertEquals(101, find.getInteger("limit"));
+        verify(mongoDatabase, times(1)).runCommand(explainCaptor.getValue());
+    }
+
+    @Test
+    public void testShouldNotRecordWhenDisabledOrFull() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getQueryAdvisor().setMaxShapes(1);
+        QueryAdvisor queryAdvisor = new QueryAdvisor(mongoTemplate, properties);
+        RecipeProperties disabledProperties = new RecipeProperties();
+        disabledProperties.getQueryAdvisor().setEnabled(false);
+        QueryAdvisor disabled = new QueryAdvisor(mongoTemplate, disabledProperties);
+
+        queryAdvisor.record(servingsPage(4, null), Duration.ofMillis(1));
+        queryAdvisor.record(servingsPage(4, new ObjectId()), Duration.ofMillis(1));
+        disabled.record(servingsPage(4, null), Duration.ofMillis(1));
+        QueryAdvisor uncompiled = new QueryAdvisor(mongoTemplate, new RecipeProperties());
+        uncompiled.record(Query.query(Criteria.where("servings").is(4)), Duration.ofMillis(1));
+
+        assertEquals(1, queryAdvisor.shapeCount());
+        assertEquals(0, uncompiled.shapeCount());
+        assertTrue(disabled.report().isEmpty());
+    }
+
+    private Query servingsPage(int servings, ObjectId after) {
+        Query query = new FilterQueryCompiler(new RecipeProperties()).compile(Map.of("servings", String.valueOf(servings)));
+        if (after != null) {
+            query.addCriteria(Criteria.where("_id").gt(after));
+        }
+        return query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(101);
+    }
+
+    private ArgumentCaptor<Document> stubExplain(Document winningPlan) {
+        ArgumentCaptor<Document> explainCaptor = ArgumentCaptor.forClass(Document.class);
+        when(mongoTemplate.getCollectionName(RecipeEntity.class)).thenReturn("recipeEntity");
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoDatabase.runCommand(explainCaptor.capture()))
+                .thenReturn(new Document("queryPlanner", new Document("winningPlan", winningPlan)));
+        return explainCaptor;
+    }
+}
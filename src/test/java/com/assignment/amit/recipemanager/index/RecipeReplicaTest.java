@@ -0,0 +1,127 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.IngredientEntity;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the replica against an in-process server with an oplog, standing in for a replica set. The writes are made
+ * with another template, as by another instance.
+ */
+public class RecipeReplicaTest {
+    private MongoServer mongoServer;
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private RecipeProperties properties;
+    private RecipeReplica recipeReplica;
+
+    @BeforeEach
+    public void setUp() {
+        MemoryBackend backend = new MemoryBackend();
+        backend.enableOplog();
+        mongoServer = new MongoServer(backend);
+        mongoServer.bind();
+        mongoClient = MongoClients.create(mongoServer.getConnectionString());
+        mongoTemplate = new MongoTemplate(mongoClient, "replica");
+        mongoTemplate.insert(recipe("ChickenTikka", "Chicken"));
+        mongoTemplate.insert(recipe("PaneerLababdar", "Paneer"));
+        properties = new RecipeProperties();
+        properties.getReplica().setEnabled(true);
+        properties.getReplica().setMaxAwaitTime(Duration.ofMillis(50));
+        recipeReplica = new RecipeReplica(new MongoTemplate(mongoClient, "replica"), properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recipeReplica.shutdown();
+        mongoClient.close();
+        mongoServer.shutdownNow();
+    }
+
+    @Test
+    public void testShouldLoadSnapshotAndFollowChanges() {
+        recipeReplica.onApplicationReady();
+        await(recipeReplica::isCurrent);
+        assertEquals("Chicken", recipeReplica.get("ChickenTikka").ingredients().get(0).name());
+
+        mongoTemplate.insert(recipe("DalMakhani", "Lentils"));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("recipeName").is("ChickenTikka")),
+                new Update().set("servings", 6).inc("version", 1), RecipeEntity.class);
+        mongoTemplate.remove(Query.query(Criteria.where("recipeName").is("PaneerLababdar")), RecipeEntity.class);
+        await(() -> Objects.isNull(recipeReplica.get("PaneerLababdar")));
+
+        assertEquals(6, recipeReplica.get("ChickenTikka").servings());
+        assertEquals(1L, recipeReplica.get("ChickenTikka").version());
+        assertEquals(List.of("ChickenTikka", "DalMakhani"),
+                recipeReplica.find(recipe -> true, null, 10).stream().map(Recipe::recipeName).toList());
+    }
+
+    @Test
+    public void testShouldNotReplaceRecipeWithOlderVersion() {
+        recipeReplica.onApplicationReady();
+        await(recipeReplica::isCurrent);
+        RecipeEntity updated = mongoTemplate.findOne(Query.query(Criteria.where("recipeName").is("ChickenTikka")), RecipeEntity.class);
+        updated.setServings(8);
+        updated.setVersion(5L);
+        recipeReplica.put(updated);
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("recipeName").is("ChickenTikka")),
+                new Update().set("servings", 2).inc("version", 1), RecipeEntity.class);
+        mongoTemplate.insert(recipe("DalMakhani", "Lentils"));
+        await(() -> Objects.nonNull(recipeReplica.get("DalMakhani")));
+
+        assertEquals(8, recipeReplica.get("ChickenTikka").servings());
+        recipeReplica.remove("DalMakhani");
+        assertNull(recipeReplica.get("DalMakhani"));
+    }
+
+    @Test
+    public void testShouldStopAnsweringWhenStreamLags() {
+        properties.getReplica().setMaxStaleness(Duration.ofMillis(200));
+        recipeReplica.onApplicationReady();
+        await(recipeReplica::isCurrent);
+
+        mongoServer.shutdownNow();
+
+        await(() -> !recipeReplica.isCurrent());
+        assertFalse(recipeReplica.isCurrent());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static RecipeEntity recipe(String recipeName, String ingredientName) {
+        return new RecipeEntity(null, recipeName, 4, List.of(new IngredientEntity(ingredientName, 1)), "Cook", "true", 0L);
+    }
+}
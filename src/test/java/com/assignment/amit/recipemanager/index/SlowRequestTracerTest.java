@@ -0,0 +1,148 @@
+package com.assignment.amit.recipemanager.index;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.model.SlowRequestReport;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SlowRequestTracerTest {
+    @Mock
+    MongoTemplate mongoTemplate;
+    @Mock
+    MongoDatabase mongoDatabase;
+
+    @Test
+    public void testShouldKeepSlowRequestWithQueryShapeAndTimeSplit() {
+        RecipeProperties properties = properties(Duration.ZERO, 10);
+        properties.getQueryAdvisor().setEnabled(false);
+        SlowRequestTracer tracer = new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties);
+        Query query = new FilterQueryCompiler(properties).compile(Map.of("servings", "4"))
+                .with(Sort.by(Sort.Direction.ASC, "_id")).limit(101);
+
+        tracer.start();
+        tracer.recordQuery(Query.query(Criteria.where("_id").is("1")), Duration.ofMillis(1).toNanos(), 1);
+        tracer.recordQuery(query, Duration.ofMillis(40).toNanos(), 3);
+        tracer.recordMapping(Duration.ofMillis(2).toNanos());
+        tracer.startSerialization();
+        tracer.finish(200, () -> "GET /recipes?servings=?");
+        ArgumentCaptor<Document> explainCaptor = stubExplain(new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "COLLSCAN")))
+                .append("executionStats", new Document("totalDocsExamined", 5000).append("totalKeysExamined", 0)));
+        SlowRequestReport report = tracer.report().get(0);
+        tracer.report();
+
+        assertEquals("GET /recipes?servings=?", report.request());
+        assertEquals(200, report.status());
+        assertEquals(2, report.queries());
+        assertEquals(41, report.mongoMillis(), 0.01);
+        assertEquals(2, report.mappingMillis(), 0.01);
+        assertTrue(report.totalMillis() >= report.serializationMillis());
+        assertEquals("{\"servings\": \"?\"} sort {\"_id\": 1}", report.shape());
+        assertFalse(report.queryTruncated());
+        assertEquals(4, report.returned());
+        assertEquals(5000, report.docsExamined());
+        assertEquals(0, report.keysExamined());
+        assertEquals(List.of("COLLSCAN"), report.stages());
+        assertEquals("executionStats", explainCaptor.getValue().getString("verbosity"));
+        assertEquals(1000L, explainCaptor.getValue().get("explain", Document.class).get("maxTimeMS"));
+        assertEquals(101, explainCaptor.getValue().get("explain", Document.class).get("limit"));
+        assertEquals(new Document("servings", 4), explainCaptor.getValue().get("explain", Document.class).get("filter"));
+        verify(mongoDatabase, times(1)).runCommand(explainCaptor.getValue());
+    }
+
+    @Test
+    public void testShouldCutLongListsOfSlowestQuery() {
+        RecipeProperties properties = properties(Duration.ZERO, 10);
+        properties.getSlowRequests().setMaxExplainedValues(2);
+        SlowRequestTracer tracer = new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties);
+        Query query = new Query(Criteria.where("name").in("Pasta", "Pizza", "Salad").and("servings").is(4));
+
+        tracer.start();
+        tracer.recordQuery(query, Duration.ofMillis(40).toNanos(), 3);
+        tracer.finish(200, () -> "GET /recipes?names=?");
+        ArgumentCaptor<Document> explainCaptor = stubExplain(new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "COLLSCAN"))));
+        SlowRequestReport report = tracer.report().get(0);
+
+        assertTrue(report.queryTruncated());
+        assertEquals(new Document("name", new Document("$in", List.of("Pasta", "Pizza"))).append("servings", 4),
+                explainCaptor.getValue().get("explain", Document.class).get("filter"));
+        assertEquals(List.of("COLLSCAN"), report.stages());
+    }
+
+    @Test
+    public void testShouldIgnoreFastAndUntracedRequests() {
+        SlowRequestTracer tracer = newTracer(Duration.ofHours(1), 10);
+        RecipeProperties disabledProperties = new RecipeProperties();
+        disabledProperties.getSlowRequests().setEnabled(false);
+        disabledProperties.getSlowRequests().setThreshold(Duration.ZERO);
+        SlowRequestTracer disabled = new SlowRequestTracer(new QueryAdvisor(mongoTemplate, disabledProperties), disabledProperties);
+
+        tracer.recordQuery(new Query(), 1, 1);
+        tracer.start();
+        tracer.finish(200, () -> "GET /recipes");
+        disabled.start();
+        disabled.finish(200, () -> "GET /recipes");
+
+        assertTrue(tracer.report().isEmpty());
+        assertTrue(disabled.report().isEmpty());
+    }
+
+    @Test
+    public void testShouldOverwriteOldestSlowRequestWhenFull() {
+        SlowRequestTracer tracer = newTracer(Duration.ZERO, 2);
+
+        for (String request : List.of("GET /recipes/{recipeName}", "GET /recipes?cursor=?", "GET /recipes/facets")) {
+            tracer.start();
+            tracer.finish(200, () -> request);
+        }
+
+        assertEquals(List.of("GET /recipes/facets", "GET /recipes?cursor=?"),
+                tracer.report().stream().map(SlowRequestReport::request).toList());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private SlowRequestTracer newTracer(Duration threshold, int capacity) {
+        RecipeProperties properties = properties(threshold, capacity);
+        return new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties);
+    }
+
+    private static RecipeProperties properties(Duration threshold, int capacity) {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getSlowRequests().setThreshold(threshold);
+        properties.getSlowRequests().setCapacity(capacity);
+        return properties;
+    }
+
+    private ArgumentCaptor<Document> stubExplain(Document explained) {
+        ArgumentCaptor<Document> explainCaptor = ArgumentCaptor.forClass(Document.class);
+        when(mongoTemplate.getCollectionName(RecipeEntity.class)).thenReturn("recipeEntity");
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoDatabase.runCommand(explainCaptor.capture())).thenReturn(explained);
+        return explainCaptor;
+    }
+}
@@ -0,0 +1,71 @@
+package com.assignment.amit.recipemanager.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.util.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoggingTurboFiltersTest {
+    private final LoggerContext context = new LoggerContext();
+    private final ListAppender<ILoggingEvent> written = new ListAppender<>();
+
+    @AfterEach
+    public void cleanup() {
+        MDC.clear();
+    }
+
+    @Test
+    public void testShouldLogDebugOfSampledRequestsOnly() {
+        RequestSamplingTurboFilter sampling = new RequestSamplingTurboFilter();
+        context.addTurboFilter(sampling);
+        Logger logger = logger();
+
+        logger.debug("startup");
+        MDC.put(RequestSamplingTurboFilter.SAMPLED_KEY, "true");
+        logger.debug("sampled request");
+        MDC.put(RequestSamplingTurboFilter.SAMPLED_KEY, "false");
+        logger.debug("other request");
+        logger.trace("disabled anyway");
+        logger.warn("other request warning");
+
+        assertEquals(java.util.List.of("startup", "sampled request", "other request warning"),
+                written.list.stream().map(ILoggingEvent::getFormattedMessage).toList());
+        assertEquals(1, sampling.getSuppressedCount());
+    }
+
+    @Test
+    public void testShouldRateLimitErrorsByMessagePattern() throws InterruptedException {
+        ErrorRateLimitTurboFilter rateLimit = new ErrorRateLimitTurboFilter();
+        rateLimit.setMaxPerInterval(3);
+        rateLimit.setInterval(Duration.buildByMilliseconds(200));
+        context.addTurboFilter(rateLimit);
+        Logger logger = logger();
+
+        IntStream.range(0, 10).forEach(index -> logger.error("Recipe Not found in the system with name = {}", "recipe" + index));
+        IntStream.range(0, 2).forEach(index -> logger.error("Error While processing request ", new IllegalStateException()));
+        IntStream.range(0, 5).forEach(index -> logger.info("Request received"));
+        Thread.sleep(250);
+        logger.error("Recipe Not found in the system with name = {}", "recipe");
+
+        assertEquals(3 + 2 + 5 + 1, written.list.size());
+        assertEquals(7, rateLimit.getSuppressedCount());
+    }
+
+    private Logger logger() {
+        written.setContext(context);
+        written.start();
+        Logger logger = context.getLogger("recipes");
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(written);
+        return logger;
+    }
+}
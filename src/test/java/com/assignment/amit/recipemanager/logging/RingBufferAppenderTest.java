@@ -0,0 +1,127 @@
+package com.assignment.amit.recipemanager.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferAppenderTest {
+    private final LoggerContext context = new LoggerContext();
+
+    @BeforeEach
+    public void setUp() {
+        context.setMDCAdapter(MDC.getMDCAdapter());
+    }
+
+    @Test
+    public void testShouldWriteEventsInOrderFromBackgroundThread() {
+        ListAppender<ILoggingEvent> target = start(new ListAppender<>());
+        RingBufferAppender appender = ringBuffer(target, 1024);
+        Logger logger = logger(appender);
+
+        IntStream.range(0, 500).forEach(index -> logger.info("recipe {}", index));
+        appender.stop();
+
+        assertEquals(500, target.list.size());
+        assertEquals("recipe 0", target.list.get(0).getFormattedMessage());
+        assertEquals("recipe 499", target.list.get(499).getFormattedMessage());
+        assertEquals(0, appender.getDroppedCount());
+        assertFalse(target.isStarted());
+    }
+
+    @Test
+    public void testShouldDropAndCountEventsWhenFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ListAppender<ILoggingEvent> written = new ListAppender<>();
+        AppenderBase<ILoggingEvent> slowDisk = start(new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                written.doAppend(event);
+            }
+        });
+        start(written);
+        RingBufferAppender appender = ringBuffer(slowDisk, 4);
+        Logger logger = logger(appender);
+
+        logger.info("first");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        IntStream.range(0, 10).forEach(index -> logger.info("recipe {}", index));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        appender.stop();
+
+        assertEquals(6, appender.getDroppedCount());
+        assertEquals(5, written.list.size());
+        assertTrue(elapsedMillis < 1000);
+    }
+
+    @Test
+    public void testShouldKeepAllEventsOfConcurrentProducers() throws InterruptedException {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1 << 16);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        for (int producer = 0; producer < 4; producer++) {
+            int offset = producer * 10_000;
+            producers.submit(() -> IntStream.range(offset, offset + 10_000).forEach(buffer::offer));
+        }
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+
+        boolean[] seen = new boolean[40_000];
+        for (int index = 0; index < 40_000; index++) {
+            seen[buffer.poll()] = true;
+        }
+
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+        assertEquals(List.of(), IntStream.range(0, seen.length).filter(index -> !seen[index]).boxed().toList());
+    }
+
+    private <A extends AppenderBase<ILoggingEvent>> A start(A appender) {
+        appender.setContext(context);
+        appender.start();
+        return appender;
+    }
+
+    private RingBufferAppender ringBuffer(AppenderBase<ILoggingEvent> target, int capacity) {
+        RingBufferAppender appender = new RingBufferAppender();
+        appender.setContext(context);
+        appender.setName("ring");
+        appender.setCapacity(capacity);
+        appender.addAppender(target);
+        appender.start();
+        return appender;
+    }
+
+    private Logger logger(RingBufferAppender appender) {
+        Logger logger = context.getLogger("recipes");
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+        return logger;
+    }
+}
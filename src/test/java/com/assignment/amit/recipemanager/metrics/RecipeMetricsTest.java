@@ -0,0 +1,55 @@
+package com.assignment.amit.recipemanager.metrics;
+
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecipeMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RecipeMetrics recipeMetrics = new RecipeMetrics(registry);
+
+    @Test
+    public void testShouldTimeOperationsByOutcome() {
+        recipeMetrics.time("getRecipe", () -> "recipe");
+        recipeMetrics.time("getRecipe", () -> "recipe");
+        assertThrows(RecipeNotFoundException.class, () -> recipeMetrics.time("getRecipe", () -> {
+            throw new RecipeNotFoundException("Recipe Not available");
+        }));
+        assertThrows(IllegalStateException.class, () -> recipeMetrics.time("deleteRecipe", () -> {
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(2, registry.get(RecipeMetrics.OPERATION_TIMER).tags("operation", "getRecipe", "outcome", "ok").timer().count());
+        assertEquals(1, registry.get(RecipeMetrics.OPERATION_TIMER).tags("operation", "getRecipe", "outcome", "not-found").timer().count());
+        assertEquals(1, registry.get(RecipeMetrics.OPERATION_TIMER).tags("operation", "deleteRecipe", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void testShouldRecordResultSizes() {
+        recipeMetrics.recordResultSize("getAllRecipesWithFiler", 3);
+        recipeMetrics.recordResultSize("getAllRecipesWithFiler", 5);
+
+        var summary = registry.get(RecipeMetrics.RESULT_SIZE).tags("operation", "getAllRecipesWithFiler").summary();
+        assertEquals(2, summary.count());
+        assertEquals(8, summary.totalAmount());
+    }
+
+    @Test
+    public void testShouldCountDocumentsOfMongoReplies() {
+        BsonArray batch = new BsonArray(List.of(new BsonDocument(), new BsonDocument()));
+
+        assertEquals(2, MongoDocumentMetrics.documentCount("find", new BsonDocument("cursor", new BsonDocument("firstBatch", batch))));
+        assertEquals(2, MongoDocumentMetrics.documentCount("getMore", new BsonDocument("cursor", new BsonDocument("nextBatch", batch))));
+        assertEquals(4, MongoDocumentMetrics.documentCount("delete", new BsonDocument("n", new BsonInt32(4))));
+        assertEquals(1, MongoDocumentMetrics.documentCount("findAndModify", new BsonDocument("value", new BsonDocument())));
+        assertEquals(-1, MongoDocumentMetrics.documentCount("ping", new BsonDocument("ok", new BsonInt32(1))));
+    }
+}
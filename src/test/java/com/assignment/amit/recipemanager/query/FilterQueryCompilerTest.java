@@ -0,0 +1,158 @@
+package com.assignment.amit.recipemanager.query;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.model.Ingredient;
+import com.assignment.amit.recipemanager.model.Recipe;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilterQueryCompilerTest {
+    private final FilterQueryCompiler filterQueryCompiler = new FilterQueryCompiler(new RecipeProperties());
+
+    @Test
+    public void testShouldConvertValuesToFieldType() {
+        Query query = filterQueryCompiler.compile(Map.of("servings", "12", "isVegetarian", "true", "recipeName", "7", "version", "3"));
+
+        assertEquals(new Document("servings", 12).append("isVegetarian", "true").append("recipeName", "7").append("version", 3L),
+                query.getQueryObject());
+    }
+
+    @Test
+    public void testShouldCompileOperators() {
+        Query query = filterQueryCompiler.compile(Map.of("servings", "gte:2,lte:6", "ingredient", "nin:Chicken|Fish",
+                "recipeName", "!ChickenTikka"));
+
+        Document expected = new Document("servings", new Document("$gte", 2).append("$lte", 6))
+                .append("ingredients.name", new Document("$nin", List.of("Chicken", "Fish")))
+                .append("recipeName", new Document("$ne", "ChickenTikka"));
+        assertEquals(expected, query.getQueryObject());
+    }
+
+    @Test
+    public void testShouldApplyIngredientNameAndQuantityToSameIngredient() {
+        Query sameIngredient = filterQueryCompiler.compile(Map.of("ingredient", "Chicken", "quantity", "gt:2"));
+        Query anyIngredient = filterQueryCompiler.compile(Map.of("ingredients.quantity", "in:1|2"));
+
+        assertEquals(new Document("ingredients", new Document("$elemMatch",
+                new Document("name", "Chicken").append("quantity", new Document("$gt", 2)))), sameIngredient.getQueryObject());
+        assertEquals(new Document("ingredients.quantity", new Document("$in", List.of(1, 2))), anyIngredient.getQueryObject());
+    }
+
+    @Test
+    public void testCompiledQueryShouldKeepShapeOfFilterAndAddedConditions() {
+        CompiledQuery firstPage = filterQueryCompiler.compile(Map.of("servings", "gte:2", "ingredient", "Chicken"));
+        CompiledQuery otherValues = filterQueryCompiler.compile(Map.of("servings", "gte:8", "ingredient", "Paneer"));
+        CompiledQuery nextPage = filterQueryCompiler.compile(Map.of("servings", "gte:2", "ingredient", "Chicken"));
+        nextPage.addCriteria(Criteria.where("_id").gt(new ObjectId()));
+
+        assertEquals(firstPage.shape(), otherValues.shape());
+        assertNotEquals(firstPage.shape(), nextPage.shape());
+        assertTrue(nextPage.getQueryObject().containsKey("_id"));
+    }
+
+    @Test
+    public void testPredicateShouldMatchAsTheQuery() {
+        Recipe chickenTikka = new Recipe("ChickenTikka", List.of(new Ingredient("Chicken", 1), new Ingredient("Onion", 3)),
+                4, "Grill in the oven", "false", "000000000000000000000001", 0L);
+        Recipe paneerLababdar = new Recipe("PaneerLababdar", List.of(new Ingredient("Paneer", 2)), null, null, "true",
+                "000000000000000000000002", 0L);
+        Recipe plainRice = new Recipe("PlainRice", null, 2, null, "true", "000000000000000000000003", 0L);
+        List<Recipe> recipes = List.of(chickenTikka, paneerLababdar, plainRice);
+
+        assertEquals(List.of(chickenTikka, plainRice), matching(recipes, Map.of("servings", "gte:2,lte:6")));
+        assertEquals(List.of(paneerLababdar, plainRice), matching(recipes, Map.of("servings", "!4")));
+        assertEquals(List.of(paneerLababdar, plainRice), matching(recipes, Map.of("ingredient", "nin:Chicken|Fish")));
+        assertEquals(List.of(chickenTikka), matching(recipes, Map.of("ingredients.quantity", "gt:2,lt:2")));
+        assertEquals(List.of(), matching(recipes, Map.of("ingredient", "Chicken", "quantity", "gt:2")));
+        assertEquals(List.of(chickenTikka), matching(recipes, Map.of("ingredient", "!Chicken", "quantity", "gt:2")));
+        assertEquals(List.of(paneerLababdar), matching(recipes, Map.of("isVegetarian", "true", "recipeName", "gt:P,lt:PaneerZ")));
+        assertEquals(List.of(chickenTikka), matching(recipes, Map.of("ingredient1", "Chicken", "ingredient2", "Onion")));
+        assertEquals(List.of(plainRice), matching(recipes, Map.of("ingredient", "!Chicken", "ingredient2", "!Paneer")));
+        assertEquals(List.of(), matching(recipes, Map.of("ingredient1", "Chicken", "ingredient2", "Onion", "quantity", "gt:2")));
+        assertEquals(List.of(chickenTikka), matching(recipes, Map.of("ingredient1", "Onion", "ingredient2", "Chicken", "quantity", "gt:2")));
+        assertTrue(filterQueryCompiler.predicate(Map.of("q", "oven")).isEmpty());
+        assertTrue(filterQueryCompiler.predicate(Map.of("instructions", "oven")).isEmpty());
+        assertTrue(filterQueryCompiler.predicate(Map.of("cuisine", "Indian")).isEmpty());
+    }
+
+    private List<Recipe> matching(List<Recipe> recipes, Map<String, String> filterMap) {
+        return recipes.stream().filter(filterQueryCompiler.predicate(filterMap).orElseThrow()).toList();
+    }
+
+    @Test
+    public void testShouldSearchInstructionsWithTextIndexUnlessRegexEnabled() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getSearch().setRegexEnabled(true);
+
+        Query textQuery = filterQueryCompiler.compile(Map.of("q", "oven", "instructions", "fry"));
+        Query regexQuery = new FilterQueryCompiler(properties).compile(Map.of("q", "oven", "instructions", "fry.*"));
+
+        assertTrue(FilterQueryCompiler.isTextSearch(textQuery));
+        assertEquals(new Document("$search", "fry oven"), textQuery.getQueryObject().get("$text"));
+        assertEquals(new Document("$meta", "textScore"), textQuery.getSortObject().get("score"));
+        assertEquals(new Document("$regex", "fry.*"), regexQuery.getQueryObject().get("instructions"));
+        assertEquals(new Document("$search", "oven"), regexQuery.getQueryObject().get("$text"));
+        assertEquals(properties.getSearch().getRegexTimeout().toMillis(), regexQuery.getMeta().getMaxTimeMsec());
+    }
+
+    @Test
+    public void testShouldKeepAllConditionsOfKeysOnSameField() {
+        Document both = filterQueryCompiler.compile(Map.of("ingredient1", "Tomato", "ingredient2", "Onion")).getQueryObject();
+        Document neither = filterQueryCompiler.compile(Map.of("ingredient", "!Tomato", "ingredient2", "!Onion")).getQueryObject();
+        Document sameIngredient = filterQueryCompiler.compile(Map.of("ingredient1", "Tomato", "ingredient2", "Onion", "quantity", "gt:2"))
+                .getQueryObject();
+
+        assertEquals(Set.of("Tomato", "Onion"), Set.of(both.get("ingredients.name"),
+                both.getList("$and", Document.class).get(0).get("ingredients.name", Document.class).get("$eq")));
+        assertEquals(Set.of("Tomato", "Onion"), Set.of(neither.get("ingredients.name", Document.class).get("$ne"),
+                neither.getList("$and", Document.class).get(0).get("ingredients.name", Document.class).get("$ne")));
+        Document element = sameIngredient.get("ingredients", Document.class).get("$elemMatch", Document.class);
+        assertEquals(new Document("$gt", 2), element.get("quantity"));
+        assertEquals(Set.of("Tomato", "Onion"), Set.of(element.get("name"),
+                sameIngredient.getList("$and", Document.class).get(0).get("ingredients.name", Document.class).get("$eq")));
+    }
+
+    @Test
+    public void testShouldRejectInvalidFilters() {
+        assertThrows(InvalidRequestException.class, () -> filterQueryCompiler.compile(Map.of("servings", "gte:four")));
+        assertThrows(InvalidRequestException.class, () -> filterQueryCompiler.compile(Map.of("$where", "true")));
+    }
+
+    @Test
+    public void testShouldCompileOnceByShape() {
+        Query first = filterQueryCompiler.compile(Map.of("servings", "gte:2", "ingredient", "Chicken"));
+        Query second = filterQueryCompiler.compile(Map.of("servings", "gte:4", "ingredient", "Paneer"));
+        assertEquals(1, filterQueryCompiler.compiledShapeCount());
+        filterQueryCompiler.compile(Map.of("servings", "lt:4", "ingredient", "Paneer"));
+
+        assertEquals(2, filterQueryCompiler.compiledShapeCount());
+        Query unknown = filterQueryCompiler.compile(Map.of("servings", "gte:2", "colour", "red"));
+
+        assertEquals(2, filterQueryCompiler.compiledShapeCount());
+        assertEquals(new Document("servings", new Document("$gte", 2)).append("colour", "red"), unknown.getQueryObject());
+        assertEquals(new Document("servings", new Document("$gte", 2)).append("ingredients.name", "Chicken"), first.getQueryObject());
+        assertEquals(new Document("servings", new Document("$gte", 4)).append("ingredients.name", "Paneer"), second.getQueryObject());
+        assertFalse(FilterQueryCompiler.isTextSearch(second));
+    }
+
+    @Test
+    public void testShouldParseConditions() {
+        assertEquals(List.of(new FilterCondition("ingredients.name", FilterOperator.IN, List.of("Chicken", "Fish")),
+                        new FilterCondition("ingredients.name", FilterOperator.NE, List.of("Paneer"))),
+                filterQueryCompiler.parse("ingredients", "Chicken|Fish,ne:Paneer"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.assignment.amit.recipemanager.service;
+
+import com.assignment.amit.recipemanager.config.RecipeProperties;
+import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
+import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
+import com.assignment.amit.recipemanager.testsupport.TestUtil;
+import com.assignment.amit.recipemanager.util.RecipeUtil;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveRecipeServiceTest {
+    @Mock
+    ReactiveMongoTemplate mongoTemplate;
+
+    private ReactiveRecipeService newRecipeService(RecipeProperties properties) {
+        return new ReactiveRecipeService(mongoTemplate, properties, new FilterQueryCompiler(properties));
+    }
+
+    @Test
+    public void shouldReportDuplicateRecipeOnAdd() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withServing(5).build();
+        when(mongoTemplate.save(any(RecipeEntity.class))).thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+
+        StepVerifier.create(newRecipeService(new RecipeProperties()).addRecipe(recipe))
+                .verifyError(RecipeAlreadyExistException.class);
+    }
+
+    @Test
+    public void shouldReturnNotFoundWhenRecipeMissing() {
+        when(mongoTemplate.findOne(any(Query.class), eq(RecipeEntity.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(newRecipeService(new RecipeProperties()).getRecipe("PaneerLababdar", null))
+                .verifyError(RecipeNotFoundException.class);
+    }
+
+    @Test
+    public void shouldReturnPageWithNextCursorWhenMoreRecipesMatch() {
+        List<RecipeEntity> entities = IntStream.range(0, 3).mapToObj(i -> {
+            RecipeEntity entity = RecipeUtil.mapToRecipeEntity(TestUtil.TestRecipeBuilder.newBuilder().withName("Recipe" + i).build());
+            entity.setId(new ObjectId().toHexString());
+            return entity;
+        }).toList();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(RecipeEntity.class))).thenReturn(Flux.fromIterable(entities));
+
+        StepVerifier.create(newRecipeService(new RecipeProperties()).getRecipesWithFilter(Map.of("isVegetarian", "true"), null, 2, null))
+                .expectNextMatches(page -> page.recipes().size() == 2
+                        && RecipeUtil.encodeCursor(entities.get(1).getId()).equals(page.next()))
+                .verifyComplete();
+        Assertions.assertEquals(3, query.getValue().getLimit());
+    }
+
+    @Test
+    public void shouldRejectInvalidRequestsAsErrorSignals() {
+        ReactiveRecipeService recipeService = newRecipeService(new RecipeProperties());
+
+        StepVerifier.create(recipeService.getRecipesWithFilter(Map.of(), null, 0, null)).verifyError(InvalidRequestException.class);
+        StepVerifier.create(recipeService.deleteRecipesWithFilter(Map.of())).verifyError(InvalidRequestException.class);
+        StepVerifier.create(recipeService.streamRecipesWithFilter(Map.of(), "unknown")).verifyError(InvalidRequestException.class);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void shouldStreamRecipesAsRequested() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getStreaming().setBatchSize(2);
+        RecipeEntity entity = RecipeUtil.mapToRecipeEntity(TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").build());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(RecipeEntity.class))).thenReturn(Flux.just(entity, entity, entity));
+
+        StepVerifier.create(newRecipeService(properties).streamRecipesWithFilter(Map.of(), null), 1)
+                .expectNextCount(1)
+                .thenRequest(2)
+                .expectNextCount(2)
+                .verifyComplete();
+        Assertions.assertEquals(2, query.getValue().getMeta().getCursorBatchSize());
+    }
+
+    @Test
+    public void shouldReturnNotFoundWhenDeletingMissingRecipe() {
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(Mono.just(DeleteResult.acknowledged(0)));
+
+        StepVerifier.create(newRecipeService(new RecipeProperties()).deleteRecipe("PaneerLababdar"))
+                .verifyError(RecipeNotFoundException.class);
+    }
+
+    @Test
+    public void shouldFailPreconditionWhenRecipeModifiedSinceRead() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        String id = new ObjectId().toHexString();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.exists(any(Query.class), eq(RecipeEntity.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(newRecipeService(new RecipeProperties()).updateRecipe("PaneerLababdar", recipe, "\"" + id + "-3\""))
+                .verifyError(PreconditionFailedException.class);
+        Assertions.assertEquals(3L, query.getValue().getQueryObject().get("version"));
+        Assertions.assertEquals(id, query.getValue().getQueryObject().get("_id"));
+    }
+}
@@ -1,25 +1,73 @@
 package com.assignment.amit.recipemanager.service;
 
+import com.assignment.amit.recipemanager.cache.RecipeCache;
+import com.assignment.amit.recipemanager.cache.RecipeQueryCache;
+import com.assignment.amit.recipemanager.config.RecipeProperties;
 import com.assignment.amit.recipemanager.entity.RecipeEntity;
+import com.assignment.amit.recipemanager.exceptions.InvalidRequestException;
+import com.assignment.amit.recipemanager.exceptions.PreconditionFailedException;
+import com.assignment.amit.recipemanager.exceptions.RecipeAlreadyExistException;
 import com.assignment.amit.recipemanager.exceptions.RecipeNotFoundException;
+import com.assignment.amit.recipemanager.index.IngredientIndex;
+import com.assignment.amit.recipemanager.index.QueryAdvisor;
+import com.assignment.amit.recipemanager.index.RecipeReplica;
+import com.assignment.amit.recipemanager.index.SlowRequestTracer;
+import com.assignment.amit.recipemanager.metrics.RecipeMetrics;
+import com.assignment.amit.recipemanager.model.CacheStatistics;
 import com.assignment.amit.recipemanager.model.Ingredient;
 import com.assignment.amit.recipemanager.model.Recipe;
+import com.assignment.amit.recipemanager.model.RecipeBatchResult;
+import com.assignment.amit.recipemanager.model.RecipeFacets;
+import com.assignment.amit.recipemanager.model.RecipePage;
+import com.assignment.amit.recipemanager.query.FilterCondition;
+import com.assignment.amit.recipemanager.query.FilterOperator;
+import com.assignment.amit.recipemanager.query.FilterQueryCompiler;
 import com.assignment.amit.recipemanager.testsupport.TestUtil;
 import com.assignment.amit.recipemanager.util.RecipeUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
-
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -27,6 +75,14 @@ import static org.mockito.Mockito.*;
 public class RecipeServiceTest {
     @Mock
     MongoTemplate mongoTemplate;
+
+    private RecipeService newRecipeService(RecipeProperties properties) {
+        return new RecipeService(mongoTemplate, properties, new RecipeCache(properties), new RecipeQueryCache(properties),
+                new IngredientIndex(mongoTemplate, properties), new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+    }
+
     @Test
     public void shouldAddRecipeInDB() {
         List<Ingredient> ingredient = List.of(TestUtil.TestIngredientBuilder.newBuilder().withName("Coriander").withQuantity(2).build());
@@ -34,7 +90,7 @@ public class RecipeServiceTest {
                 .withServing(5).withInstructions("Start with frying the paneer").build();
         RecipeEntity rEntity = RecipeUtil.mapToRecipeEntity(recipe);
         when(mongoTemplate.save(any())).thenReturn(rEntity);
-        RecipeService service = new RecipeService(mongoTemplate);
+        RecipeService service = newRecipeService(new RecipeProperties());
         Recipe recipeReturned = service.addRecipe(recipe);
         Assertions.assertEquals(recipe, recipeReturned);
     }
@@ -48,7 +104,7 @@ public class RecipeServiceTest {
         RecipeEntity rEntity = RecipeUtil.mapToRecipeEntity(recipe);
 
         when(mongoTemplate.findAll(any())).thenReturn(List.of(rEntity));
-        RecipeService service = new RecipeService(mongoTemplate);
+        RecipeService service = newRecipeService(new RecipeProperties());
         List<Recipe> recipeReturned = service.getAllRecipes();
         Assertions.assertEquals(1, recipeReturned.size());
     }
@@ -62,7 +118,7 @@ public class RecipeServiceTest {
         RecipeEntity rEntity = RecipeUtil.mapToRecipeEntity(recipe);
 
         when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(rEntity);
-        RecipeService service = new RecipeService(mongoTemplate);
+        RecipeService service = newRecipeService(new RecipeProperties());
         Recipe recipeReturned = service.getRecipe("1");
         Assertions.assertEquals(recipeReturned, recipe);
     }
@@ -77,7 +133,7 @@ public class RecipeServiceTest {
 
         when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(null);
         assertThrows(RecipeNotFoundException.class, () -> {
-            new RecipeService(mongoTemplate).getRecipe("1");
+            newRecipeService(new RecipeProperties()).getRecipe("1");
         });
     }
 
@@ -89,9 +145,10 @@ public class RecipeServiceTest {
 
         RecipeEntity rEntity = RecipeUtil.mapToRecipeEntity(recipe);
 
-        when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(rEntity);
-        new RecipeService(mongoTemplate).deleteRecipe("1");
-        verify(mongoTemplate, times(1)).findOne(any(), eq(RecipeEntity.class));
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(1));
+        newRecipeService(new RecipeProperties()).deleteRecipe("1");
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(RecipeEntity.class));
+        verifyNoMoreInteractions(mongoTemplate);
 
     }
 
@@ -104,11 +161,12 @@ public class RecipeServiceTest {
         RecipeEntity rEntity = RecipeUtil.mapToRecipeEntity(recipe);
 
 
-        when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(null);
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(0));
         assertThrows(RecipeNotFoundException.class, () -> {
-            new RecipeService(mongoTemplate).deleteRecipe("1");
+            newRecipeService(new RecipeProperties()).deleteRecipe("1");
         });
-        verify(mongoTemplate, times(1)).findOne(any(), eq(RecipeEntity.class));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(RecipeEntity.class));
+        verifyNoMoreInteractions(mongoTemplate);
 
     }
 
@@ -125,7 +183,7 @@ public class RecipeServiceTest {
         filterCriteria.put("serving", "5");
 
         when(mongoTemplate.find(any(), any())).thenReturn(List.of(rEntity));
-        List<Recipe> returnRecipe = new RecipeService(mongoTemplate).getAllRecipesWithFiler(filterCriteria);
+        List<Recipe> returnRecipe = newRecipeService(new RecipeProperties()).getAllRecipesWithFiler(filterCriteria);
         assertEquals(1, returnRecipe.size());
         verify(mongoTemplate, times(1)).find(any(), any());
 
@@ -145,7 +203,7 @@ public class RecipeServiceTest {
         filterCriteria.put("search", "frying");
 
         when(mongoTemplate.find(any(), any())).thenReturn(List.of(rEntity));
-        List<Recipe> returnRecipe = new RecipeService(mongoTemplate).getAllRecipesWithFiler(filterCriteria);
+        List<Recipe> returnRecipe = newRecipeService(new RecipeProperties()).getAllRecipesWithFiler(filterCriteria);
         assertEquals(1, returnRecipe.size());
         verify(mongoTemplate, times(1)).find(any(), any());
 
@@ -162,9 +220,612 @@ public class RecipeServiceTest {
         Map<String, String> filterCriteria = new HashMap<>();
 
         when(mongoTemplate.find(any(), any())).thenReturn(List.of(rEntity));
-        List<Recipe> returnRecipe = new RecipeService(mongoTemplate).getAllRecipesWithFiler(filterCriteria);
+        List<Recipe> returnRecipe = newRecipeService(new RecipeProperties()).getAllRecipesWithFiler(filterCriteria);
         assertEquals(1, returnRecipe.size());
         verify(mongoTemplate, times(1)).find(any(), any());
 
     }
+
+    @Test
+    public void testGetRecipesPageShouldReturnNextCursorWhenMoreRecipesAvailable() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getPagination().setDefaultPageSize(2);
+        List<RecipeEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecipeEntity entity = RecipeUtil.mapToRecipeEntity(TestUtil.TestRecipeBuilder.newBuilder().withName("Recipe" + i)
+                    .withIngredients(List.of()).withServing(2).build());
+            entity.setId(new ObjectId().toHexString());
+            entities.add(entity);
+        }
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(entities);
+
+        RecipePage page = newRecipeService(properties).getRecipesWithFilter(new HashMap<>(), null, null);
+
+        assertEquals(2, page.recipes().size());
+        assertEquals(entities.get(1).getId(), RecipeUtil.decodeCursor(page.next()).toHexString());
+        assertEquals(3, queryCaptor.getValue().getLimit());
+    }
+
+    @Test
+    public void testGetRecipesPageShouldStartAfterCursorAndCapLimit() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getPagination().setMaxPageSize(10);
+        String lastId = new ObjectId().toHexString();
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of());
+
+        RecipePage page = newRecipeService(properties)
+                .getRecipesWithFilter(new HashMap<>(), RecipeUtil.encodeCursor(lastId), 500);
+
+        assertNull(page.next());
+        assertEquals(11, queryCaptor.getValue().getLimit());
+        assertEquals(new ObjectId(lastId), queryCaptor.getValue().getQueryObject().get("_id", Document.class).get("$gt"));
+    }
+
+    @Test
+    public void testGetRecipesPageShouldRejectInvalidCursor() {
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).getRecipesWithFilter(new HashMap<>(), "not-a-cursor", null);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testStreamRecipesShouldReadFromCursor() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        when(mongoTemplate.stream(any(), eq(RecipeEntity.class))).thenReturn(Stream.of(RecipeUtil.mapToRecipeEntity(recipe)));
+        List<Recipe> streamed = new ArrayList<>();
+
+        newRecipeService(new RecipeProperties()).streamRecipesWithFilter(Map.of("isVegetarian", "true"), streamed::add);
+
+        assertEquals(List.of(recipe), streamed);
+        verify(mongoTemplate, never()).find(any(), any());
+    }
+
+    @Test
+    public void testAddRecipesShouldBulkInsertInChunksAndReportDuplicates() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getBatch().setChunkSize(2);
+        List<Recipe> recipes = List.of(
+                TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of()).build(),
+                TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenTikka").withIngredients(List.of()).build(),
+                TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenCurry").withIngredients(List.of()).build());
+        BulkOperations firstChunk = mock(BulkOperations.class);
+        BulkOperations secondChunk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RecipeEntity.class)).thenReturn(firstChunk, secondChunk);
+        MongoBulkWriteException duplicate = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)), null, new ServerAddress(), Set.of());
+        when(firstChunk.execute()).thenThrow(new BulkOperationException("duplicate key", duplicate));
+
+        List<RecipeBatchResult> results = newRecipeService(properties).addRecipes(recipes);
+
+        assertEquals(List.of(new RecipeBatchResult("PaneerLababdar", RecipeBatchResult.Status.CREATED),
+                new RecipeBatchResult("ChickenTikka", RecipeBatchResult.Status.DUPLICATE),
+                new RecipeBatchResult("ChickenCurry", RecipeBatchResult.Status.CREATED)), results);
+        verify(firstChunk).insert(argThat((List<?> chunk) -> chunk.size() == 2));
+        verify(secondChunk).insert(argThat((List<?> chunk) -> chunk.size() == 1));
+        verify(mongoTemplate, never()).save(any());
+    }
+
+    @Test
+    public void testAddRecipesShouldRejectBatchOverMaxSize() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getBatch().setMaxSize(1);
+        List<Recipe> recipes = List.of(
+                TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of()).build(),
+                TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenTikka").withIngredients(List.of()).build());
+
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(properties).addRecipes(recipes);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testDeleteRecipesByFilterShouldDeleteOnServer() {
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(3));
+
+        long deleted = newRecipeService(new RecipeProperties()).deleteRecipesWithFilter(Map.of("isVegetarian", "false"));
+
+        assertEquals(3, deleted);
+        verify(mongoTemplate, never()).find(any(), any());
+    }
+
+    @Test
+    public void testDeleteRecipesByFilterShouldKeepConditionsOfKeysOnSameField() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(query.capture(), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        newRecipeService(new RecipeProperties()).deleteRecipesWithFilter(Map.of("ingredient", "!Tomato", "ingredient2", "!Onion"));
+
+        Document filter = query.getValue().getQueryObject();
+        assertEquals(Set.of("Tomato", "Onion"), Set.of(filter.get("ingredients.name", Document.class).get("$ne"),
+                filter.getList("$and", Document.class).get(0).get("ingredients.name", Document.class).get("$ne")));
+    }
+
+    @Test
+    public void testDeleteRecipesByFilterShouldRequireFilter() {
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).deleteRecipesWithFilter(Map.of());
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testUpdateRecipesByFilterShouldSetOnlyNonEmptyValues() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withServing(6).build();
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateMulti(any(Query.class), updateCaptor.capture(), eq(RecipeEntity.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        long updated = newRecipeService(new RecipeProperties()).updateRecipesWithFilter(Map.of("ingredient", "Chicken"), recipe);
+
+        assertEquals(2, updated);
+        assertEquals(new Document("$set", new Document("servings", 6)).append("$inc", new Document("version", 1)),
+                updateCaptor.getValue().getUpdateObject());
+    }
+
+    @Test
+    public void testUpdateRecipeIfMatchShouldCompareAndSetVersion() {
+        String id = new ObjectId().toHexString();
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(queryCaptor.capture(), updateCaptor.capture(), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(new RecipeEntity(id, "ChickenTikka", 10, List.of(), "Marinate", "false", 4L));
+
+        Recipe updated = newRecipeService(new RecipeProperties()).updateRecipe("ChickenTikka", update, "\"" + id + "-3\"");
+
+        assertEquals(4L, updated.version());
+        assertEquals(new Document("recipeName", "ChickenTikka").append("_id", id).append("version", 3L),
+                queryCaptor.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("servings", 10)).append("$inc", new Document("version", 1)),
+                updateCaptor.getValue().getUpdateObject());
+        verifyNoMoreInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testUpdateRecipeIfMatchWhenModifiedShouldFailPrecondition() {
+        String id = new ObjectId().toHexString();
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(RecipeEntity.class))).thenReturn(true).thenReturn(false);
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        assertThrows(PreconditionFailedException.class, () -> service.updateRecipe("ChickenTikka", update, "\"" + id + "-3\""));
+        assertThrows(RecipeNotFoundException.class, () -> service.updateRecipe("ChickenTikka", update, "\"" + id + "-3\""));
+    }
+
+    @Test
+    public void testUpdateRecipeIfMatchShouldOnlyCompareTagsOfWholeRecipes() {
+        String id = new ObjectId().toHexString();
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(queryCaptor.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(new RecipeEntity(id, "ChickenTikka", 10, List.of(), "Marinate", "false", 1L));
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        assertThrows(PreconditionFailedException.class,
+                () -> service.updateRecipe("ChickenTikka", update, "W/\"" + id + "-3\", \"" + id + "-3-1f\""));
+        service.updateRecipe("ChickenTikka", update, "W/\"" + id + "-3\", \"" + id + "-0\"");
+        service.updateRecipe("ChickenTikka", update, "*");
+
+        assertEquals(new Document("recipeName", "ChickenTikka").append("_id", id)
+                .append("version", new Document("$in", Arrays.asList(0L, null))), queryCaptor.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("recipeName", "ChickenTikka"), queryCaptor.getAllValues().get(1).getQueryObject());
+    }
+
+    @Test
+    public void testUpdateRecipesByFilterShouldRejectRename() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").build();
+
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).updateRecipesWithFilter(Map.of("ingredient", "Chicken"), recipe);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testUpdateRecipeShouldSetFieldsInSingleFindAndModify() {
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        Recipe saved = TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenTikka").withIngredients(List.of())
+                .withServing(10).withInstructions("Marinate").build();
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        when(mongoTemplate.findAndModify(queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq(RecipeEntity.class)))
+                .thenReturn(RecipeUtil.mapToRecipeEntity(saved));
+
+        Recipe updated = newRecipeService(new RecipeProperties()).updateRecipe("ChickenTikka", update);
+
+        assertEquals(saved, updated);
+        assertEquals(new Document("recipeName", "ChickenTikka"), queryCaptor.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("servings", 10)).append("$inc", new Document("version", 1)),
+                updateCaptor.getValue().getUpdateObject());
+        Assertions.assertTrue(optionsCaptor.getValue().isReturnNew());
+        verifyNoMoreInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testUpdateRecipeShouldRaiseExceptionWhenNotExist() {
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withServing(10).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(null);
+
+        assertThrows(RecipeNotFoundException.class, () -> {
+            newRecipeService(new RecipeProperties()).updateRecipe("ChickenTikka", update);
+        });
+    }
+
+    @Test
+    public void testUpdateRecipeShouldRaiseExceptionWhenRenamedToExistingRecipe() {
+        Recipe update = TestUtil.TestRecipeBuilder.newBuilder().withName("ChickenCurry").build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key"));
+
+        assertThrows(RecipeAlreadyExistException.class, () -> {
+            newRecipeService(new RecipeProperties()).updateRecipe("ChickenTikka", update);
+        });
+    }
+
+    @Test
+    public void testGetRecipeShouldBeServedFromCacheAfterFirstRead() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(RecipeUtil.mapToRecipeEntity(recipe));
+        RecipeProperties properties = new RecipeProperties();
+        RecipeCache recipeCache = new RecipeCache(properties);
+        RecipeService service = new RecipeService(mongoTemplate, properties, recipeCache, new RecipeQueryCache(properties),
+                new IngredientIndex(mongoTemplate, properties), new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+
+        Recipe first = service.getRecipe("PaneerLababdar");
+        Recipe second = service.getRecipe("PaneerLababdar");
+
+        Assertions.assertSame(first, second);
+        verify(mongoTemplate, times(1)).findOne(any(), eq(RecipeEntity.class));
+        assertEquals(new CacheStatistics(1, 1, 0, 1), recipeCache.statistics());
+    }
+
+    @Test
+    public void testGetRecipeShouldNotCacheMissingRecipe() {
+        when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(null);
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        assertThrows(RecipeNotFoundException.class, () -> service.getRecipe("PaneerLababdar"));
+        assertThrows(RecipeNotFoundException.class, () -> service.getRecipe("PaneerLababdar"));
+
+        verify(mongoTemplate, times(2)).findOne(any(), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testWritesShouldInvalidateCachedRecipe() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withServing(5).withInstructions("Start with frying the paneer").build();
+        when(mongoTemplate.findOne(any(), eq(RecipeEntity.class))).thenReturn(RecipeUtil.mapToRecipeEntity(recipe));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RecipeEntity.class)))
+                .thenReturn(RecipeUtil.mapToRecipeEntity(recipe));
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(1));
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        service.getRecipe("PaneerLababdar");
+        service.updateRecipe("PaneerLababdar", TestUtil.TestRecipeBuilder.newBuilder().withServing(6).build());
+        service.getRecipe("PaneerLababdar");
+        service.deleteRecipe("PaneerLababdar");
+        service.getRecipe("PaneerLababdar");
+
+        verify(mongoTemplate, times(3)).findOne(any(), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testGetRecipesPageShouldBeCachedByNormalizedFilter() {
+        when(mongoTemplate.find(any(Query.class), eq(RecipeEntity.class))).thenReturn(List.of());
+        RecipeService service = newRecipeService(new RecipeProperties());
+        Map<String, String> filter = new LinkedHashMap<>();
+        filter.put("ingredient", "Chicken");
+        filter.put("servings", "4");
+        Map<String, String> sameFilter = new LinkedHashMap<>();
+        sameFilter.put("servings", "4");
+        sameFilter.put("ingredients", "Chicken");
+
+        RecipePage first = service.getRecipesWithFilter(filter, null, null);
+        RecipePage second = service.getRecipesWithFilter(sameFilter, null, null);
+        service.getRecipesWithFilter(filter, null, 10);
+
+        Assertions.assertSame(first, second);
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testWritesShouldInvalidateCachedPages() {
+        when(mongoTemplate.find(any(Query.class), eq(RecipeEntity.class))).thenReturn(List.of());
+        when(mongoTemplate.remove(any(Query.class), eq(RecipeEntity.class))).thenReturn(DeleteResult.acknowledged(1));
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        service.getRecipesWithFilter(Map.of("isVegetarian", "true"), null, null);
+        service.deleteRecipe("PaneerLababdar");
+        service.getRecipesWithFilter(Map.of("isVegetarian", "true"), null, null);
+
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testCachedPagesShouldBeEvictedBySize() {
+        RecipeProperties properties = new RecipeProperties();
+        properties.getQueryCache().setMaximumWeight(DataSize.ofKilobytes(8));
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withInstructions("x".repeat(1000)).build();
+        when(mongoTemplate.find(any(Query.class), eq(RecipeEntity.class)))
+                .thenAnswer(invocation -> List.of(RecipeUtil.mapToRecipeEntity(recipe)));
+        RecipeQueryCache recipeQueryCache = new RecipeQueryCache(properties);
+        RecipeService service = new RecipeService(mongoTemplate, properties, new RecipeCache(properties), recipeQueryCache,
+                new IngredientIndex(mongoTemplate, properties), new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+
+        for (int servings = 0; servings < 100; servings++) {
+            service.getRecipesWithFilter(Map.of("servings", String.valueOf(servings)), null, null);
+        }
+
+        Assertions.assertTrue(recipeQueryCache.statistics().size() < 10);
+    }
+
+    @Test
+    public void testSearchShouldUseTextIndexRankedByRelevance() {
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of());
+
+        RecipePage page = newRecipeService(new RecipeProperties())
+                .getRecipesWithFilter(Map.of("q", "oven", "ingredient", "Chicken"), null, 5);
+
+        Query query = queryCaptor.getValue();
+        assertNull(page.next());
+        assertEquals(new Document("$search", "oven"), query.getQueryObject().get("$text"));
+        Assertions.assertTrue(query.getSortObject().containsKey("score"));
+        assertEquals(5, query.getLimit());
+    }
+
+    @Test
+    public void testInstructionsFilterShouldBeTextSearchUnlessRegexEnabled() {
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of());
+        RecipeProperties regexEnabled = new RecipeProperties();
+        regexEnabled.getSearch().setRegexEnabled(true);
+
+        newRecipeService(new RecipeProperties()).getAllRecipesWithFiler(Map.of("instructions", "oven.*"));
+        newRecipeService(regexEnabled).getAllRecipesWithFiler(Map.of("instructions", "oven.*"));
+
+        Query textQuery = queryCaptor.getAllValues().get(0);
+        Query regexQuery = queryCaptor.getAllValues().get(1);
+        assertEquals(new Document("$search", "oven.*"), textQuery.getQueryObject().get("$text"));
+        assertNull(regexQuery.getQueryObject().get("$text"));
+        assertEquals(regexEnabled.getSearch().getRegexTimeout().toMillis(), regexQuery.getMeta().getMaxTimeMsec());
+    }
+
+    @Test
+    public void testSearchShouldRejectCursor() {
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).getRecipesWithFilter(Map.of("q", "oven"),
+                    RecipeUtil.encodeCursor(new ObjectId().toHexString()), null);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testIngredientFilterShouldFetchMatchingIdsFromIngredientIndex() {
+        List<ObjectId> ids = List.of(new ObjectId(), new ObjectId());
+        IngredientIndex ingredientIndex = mock(IngredientIndex.class);
+        when(ingredientIndex.match(List.of(new FilterCondition("ingredients.name", FilterOperator.NE, List.of("Chicken"))), null, 10001))
+                .thenReturn(Optional.of(ids));
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of());
+        RecipeProperties properties = new RecipeProperties();
+        RecipeService service = new RecipeService(mongoTemplate, properties, new RecipeCache(properties),
+                new RecipeQueryCache(properties), ingredientIndex, new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+
+        service.getRecipesWithFilter(Map.of("ingredient", "!Chicken", "servings", "4"), null, 10);
+
+        Document queryObject = queryCaptor.getValue().getQueryObject();
+        assertEquals(new Document("$in", ids), queryObject.get("_id"));
+        assertEquals(new Document("$ne", "Chicken"), queryObject.get("ingredients.name"));
+        assertEquals(4, queryObject.get("servings"));
+        assertEquals(11, queryCaptor.getValue().getLimit());
+    }
+
+    @Test
+    public void testIngredientIndexPageShouldContinueAfterLastCandidateWhenRecipesWereDeleted() {
+        List<ObjectId> ids = List.of(new ObjectId(), new ObjectId(), new ObjectId());
+        IngredientIndex ingredientIndex = mock(IngredientIndex.class);
+        when(ingredientIndex.match(List.of(new FilterCondition("ingredients.name", FilterOperator.EQ, List.of("Paneer"))), null, 3))
+                .thenReturn(Optional.of(ids));
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        RecipeEntity remaining = new RecipeEntity(ids.get(0).toHexString(), "PaneerLababdar", 4, null, null, "true", 0L);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of(remaining));
+        RecipeProperties properties = new RecipeProperties();
+        RecipeService service = new RecipeService(mongoTemplate, properties, new RecipeCache(properties),
+                new RecipeQueryCache(properties), ingredientIndex, new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+
+        RecipePage page = service.getRecipesWithFilter(Map.of("ingredient", "Paneer"), null, 2);
+
+        Document queryObject = queryCaptor.getValue().getQueryObject();
+        assertEquals(new Document("$in", ids.subList(0, 2)), queryObject.get("_id"));
+        assertEquals("Paneer", queryObject.get("ingredients.name"));
+        assertEquals(List.of("PaneerLababdar"), page.recipes().stream().map(Recipe::recipeName).toList());
+        assertEquals(RecipeUtil.encodeCursor(ids.get(1).toHexString()), page.next());
+    }
+
+    @Test
+    public void testIngredientFilterShouldNotQueryDatabaseWhenIndexMatchesNothing() {
+        IngredientIndex ingredientIndex = mock(IngredientIndex.class);
+        when(ingredientIndex.match(List.of(new FilterCondition("ingredients.name", FilterOperator.EQ, List.of("Saffron"))), null, 11))
+                .thenReturn(Optional.of(List.of()));
+        RecipeProperties properties = new RecipeProperties();
+        RecipeService service = new RecipeService(mongoTemplate, properties, new RecipeCache(properties),
+                new RecipeQueryCache(properties), ingredientIndex, new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), new RecipeReplica(mongoTemplate, properties));
+
+        RecipePage page = service.getRecipesWithFilter(Map.of("ingredient", "Saffron"), null, 10);
+
+        Assertions.assertTrue(page.recipes().isEmpty());
+        assertNull(page.next());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private RecipeService newRecipeService(RecipeProperties properties, RecipeReplica recipeReplica) {
+        return new RecipeService(mongoTemplate, properties, new RecipeCache(properties), new RecipeQueryCache(properties),
+                new IngredientIndex(mongoTemplate, properties), new QueryAdvisor(mongoTemplate, properties), new FilterQueryCompiler(properties),
+                new RecipeMetrics(new SimpleMeterRegistry()),
+                new SlowRequestTracer(new QueryAdvisor(mongoTemplate, properties), properties), recipeReplica);
+    }
+
+    @Test
+    public void testReadsShouldBeServedFromCurrentReplica() {
+        Recipe chickenTikka = new Recipe("ChickenTikka", List.of(new Ingredient("Chicken", 1)), 4, "Grill", "false",
+                new ObjectId().toHexString(), 2L);
+        Recipe paneerLababdar = new Recipe("PaneerLababdar", List.of(new Ingredient("Paneer", 2)), 4, "Fry", "true",
+                new ObjectId().toHexString(), 0L);
+        RecipeReplica recipeReplica = mock(RecipeReplica.class);
+        when(recipeReplica.isCurrent()).thenReturn(true);
+        when(recipeReplica.get("ChickenTikka")).thenReturn(chickenTikka);
+        when(recipeReplica.find(any(), isNull(), eq(2))).thenAnswer(invocation -> Stream.of(chickenTikka, paneerLababdar)
+                .filter(invocation.<Predicate<Recipe>>getArgument(0)).toList());
+        RecipeService service = newRecipeService(new RecipeProperties(), recipeReplica);
+
+        assertEquals(chickenTikka, service.getRecipe("ChickenTikka"));
+        assertEquals("\"" + chickenTikka.id() + "-2\"", service.getRecipeETag("ChickenTikka", null));
+        assertEquals(new Recipe(null, null, 4, null, null, chickenTikka.id(), 2L), service.getRecipe("ChickenTikka", "servings"));
+        assertThrows(RecipeNotFoundException.class, () -> service.getRecipe("DalMakhani"));
+        RecipePage page = service.getRecipesWithFilter(Map.of("servings", "4"), null, 1);
+        assertEquals(List.of(chickenTikka), page.recipes());
+        assertEquals(RecipeUtil.encodeCursor(chickenTikka.id()), page.next());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testReadsShouldGoToDatabaseWhenReplicaLagsOrCanNotFilter() {
+        RecipeEntity entity = new RecipeEntity(new ObjectId().toHexString(), "ChickenTikka", 4, null, "Grill in the oven", "false", 0L);
+        RecipeReplica recipeReplica = mock(RecipeReplica.class);
+        when(recipeReplica.isCurrent()).thenReturn(false, true);
+        when(mongoTemplate.findOne(any(Query.class), eq(RecipeEntity.class))).thenReturn(entity);
+        when(mongoTemplate.find(any(Query.class), eq(RecipeEntity.class))).thenReturn(List.of(entity));
+        RecipeService service = newRecipeService(new RecipeProperties(), recipeReplica);
+
+        assertEquals("ChickenTikka", service.getRecipe("ChickenTikka").recipeName());
+        assertEquals(1, service.getAllRecipesWithFiler(Map.of("q", "oven")).size());
+        verify(recipeReplica, never()).get(any());
+        verify(recipeReplica, never()).find(any(), any(), anyInt());
+    }
+
+    @Test
+    public void testGetRecipesWithFieldsShouldProjectQuery() {
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        RecipeEntity projected = new RecipeEntity(new ObjectId().toHexString(), "PaneerLababdar", null, null, null, "true", 3L);
+        when(mongoTemplate.find(queryCaptor.capture(), eq(RecipeEntity.class))).thenReturn(List.of(projected));
+
+        RecipePage page = newRecipeService(new RecipeProperties())
+                .getRecipesWithFilter(Map.of("servings", "4"), null, 10, "recipeName, isVegetarian");
+
+        assertEquals(new Document("isVegetarian", 1).append("recipeName", 1).append("version", 1),
+                queryCaptor.getValue().getFieldsObject());
+        assertEquals(List.of(new Recipe("PaneerLababdar", null, null, null, "true", projected.getId(), 3L)), page.recipes());
+    }
+
+    @Test
+    public void testGetRecipeETagShouldReadVersionOnlyOrCachedRecipe() {
+        String id = new ObjectId().toHexString();
+        RecipeEntity entity = new RecipeEntity(id, "PaneerLababdar", 4, List.of(), "Start with frying the paneer", "true", 2L);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findOne(queryCaptor.capture(), eq(RecipeEntity.class)))
+                .thenReturn(new RecipeEntity(id, null, null, null, null, null, 2L))
+                .thenReturn(entity);
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        String eTag = service.getRecipeETag("PaneerLababdar", null);
+        Recipe recipe = service.getRecipe("PaneerLababdar");
+        String cachedETag = service.getRecipeETag("PaneerLababdar", null);
+
+        assertEquals("\"" + id + "-2\"", eTag);
+        assertEquals(eTag, cachedETag);
+        assertEquals(eTag, service.eTag(recipe, null));
+        assertNotEquals(eTag, service.getRecipeETag("PaneerLababdar", "servings"));
+        assertThrows(InvalidRequestException.class, () -> service.getRecipeETag("PaneerLababdar", "version"));
+        assertEquals(new Document("version", 1), queryCaptor.getAllValues().get(0).getFieldsObject());
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testGetRecipeETagWhenNotFound() {
+        when(mongoTemplate.findOne(any(Query.class), eq(RecipeEntity.class))).thenReturn(null);
+
+        assertThrows(RecipeNotFoundException.class, () -> {
+            newRecipeService(new RecipeProperties()).getRecipeETag("PaneerLababdar", null);
+        });
+    }
+
+    @Test
+    public void testGetRecipesWithUnknownFieldShouldFail() {
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).getRecipesWithFilter(Map.of(), null, null, "recipeName,calories");
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testGetRecipeWithFieldsShouldProjectCachedRecipeOrQuery() {
+        Recipe recipe = TestUtil.TestRecipeBuilder.newBuilder().withName("PaneerLababdar").withIngredients(List.of())
+                .withServing(4).withInstructions("Start with frying the paneer").build();
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findOne(queryCaptor.capture(), eq(RecipeEntity.class)))
+                .thenReturn(new RecipeEntity(null, "PaneerLababdar", 4, null, null, null, null))
+                .thenReturn(RecipeUtil.mapToRecipeEntity(recipe));
+        RecipeService service = newRecipeService(new RecipeProperties());
+
+        Recipe projected = service.getRecipe("PaneerLababdar", "servings,recipeName");
+        service.getRecipe("PaneerLababdar");
+        Recipe projectedFromCache = service.getRecipe("PaneerLababdar", "servings,recipeName");
+
+        assertEquals(new Recipe("PaneerLababdar", null, 4, null, null, null, null), projected);
+        assertEquals(projected, projectedFromCache);
+        assertEquals(new Document("recipeName", 1).append("servings", 1).append("version", 1), queryCaptor.getAllValues().get(0).getFieldsObject());
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testGetRecipeFacetsShouldRunOneFacetAggregation() {
+        Document facets = new Document("total", List.of(new Document("count", 3)))
+                .append("isVegetarian", List.of(new Document("_id", "true").append("count", 1), new Document("_id", "false").append("count", 2)))
+                .append("servings", List.of(new Document("_id", 2).append("count", 1), new Document("_id", 4).append("count", 2)))
+                .append("topIngredients", List.of(new Document("_id", "Coriander").append("count", 3)));
+        ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+        when(mongoTemplate.getCollectionName(RecipeEntity.class)).thenReturn("recipeEntity");
+        when(mongoTemplate.aggregate(aggregationCaptor.capture(), eq("recipeEntity"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(facets), new Document()));
+
+        RecipeFacets recipeFacets = newRecipeService(new RecipeProperties()).getRecipeFacets(Map.of("servings", "gte:2"), 500);
+
+        assertEquals(new RecipeFacets(3, Map.of("false", 2L, "true", 1L), Map.of(2, 1L, 4, 2L),
+                List.of(new RecipeFacets.IngredientCount("Coriander", 3))), recipeFacets);
+        List<Document> pipeline = aggregationCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(new Document("$match", new Document("servings", new Document("$gte", 2))), pipeline.get(0));
+        Document facet = pipeline.get(2).get("$facet", Document.class);
+        assertEquals(new Document("$limit", 100L), facet.getList("topIngredients", Document.class).get(3));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(RecipeEntity.class));
+    }
+
+    @Test
+    public void testGetRecipeFacetsShouldRejectInvalidTop() {
+        assertThrows(InvalidRequestException.class, () -> {
+            newRecipeService(new RecipeProperties()).getRecipeFacets(Map.of(), 0);
+        });
+        verifyNoInteractions(mongoTemplate);
+    }
 }
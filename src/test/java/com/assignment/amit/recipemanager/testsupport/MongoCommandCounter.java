@@ -0,0 +1,28 @@
+package com.assignment.amit.recipemanager.testsupport;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the name of every command sent to mongo, to assert on the round trips made by a request.
+ */
+public class MongoCommandCounter implements CommandListener {
+    private final Queue<String> commands = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        commands.add(event.getCommandName());
+    }
+
+    public List<String> getCommands() {
+        return List.copyOf(commands);
+    }
+
+    public void reset() {
+        commands.clear();
+    }
+}
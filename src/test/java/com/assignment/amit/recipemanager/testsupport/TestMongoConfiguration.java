@@ -1,17 +1,27 @@
 package com.assignment.amit.recipemanager.testsupport;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.utility.DockerImageName;
 
+/**
+ * Mongo container of the integration tests. Only active with the integration profile, so applications started
+ * from the test classpath by the benchmarks do not pick it up.
+ */
 @Configuration
+@Profile("integration")
 public class TestMongoConfiguration {
     @Value("${spring.test.mongo.docker.image}")
     private String mongoDbImage;
@@ -24,10 +34,36 @@ public class TestMongoConfiguration {
         return container;
     }
 
+    @Bean
+    public MongoCommandCounter mongoCommandCounter(){
+        return new MongoCommandCounter();
+    }
+
+    @Primary
+    @Bean
+    @Profile("!reactive")
+    @DependsOn("testMongoContainer")
+    public MongoClient testMongoClient(final @Qualifier("testMongoContainer") MongoDBContainer container,
+                                       final MongoCommandCounter mongoCommandCounter,
+                                       final ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers){
+        MongoClientSettings.Builder settings = MongoClientSettings.builder();
+        // the customizers of the application, e.g. the pool settings and the command metrics, the container
+        // replaces the connection string they set
+        customizers.orderedStream().forEach(customizer -> customizer.customize(settings));
+        return MongoClients.create(settings
+                .applyConnectionString(new ConnectionString(container.getReplicaSetUrl("testdatabase")))
+                .addCommandListener(mongoCommandCounter)
+                .build());
+    }
+
     @Primary
     @Bean
+    @Profile("reactive")
     @DependsOn("testMongoContainer")
-    public MongoClient testMongoClient(final @Qualifier("testMongoContainer") MongoDBContainer container){
-        return MongoClients.create(container.getReplicaSetUrl("testdatabase"));
+    public com.mongodb.reactivestreams.client.MongoClient testReactiveMongoClient(
+            final @Qualifier("testMongoContainer") MongoDBContainer container) {
+        return com.mongodb.reactivestreams.client.MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(container.getReplicaSetUrl("testdatabase")))
+                .build());
     }
 }
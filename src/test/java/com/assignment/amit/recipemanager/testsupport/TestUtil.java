@@ -49,7 +49,7 @@ public class TestUtil {
             public Recipe build() {
                 return new Recipe(this.name,
                         this.ingredients, this.servings,
-                        this.instructions, this.isVegeterian);
+                        this.instructions, this.isVegeterian, null, null);
             }
             public TestRecipeBuilder withId(String id){
                 this.id = id;